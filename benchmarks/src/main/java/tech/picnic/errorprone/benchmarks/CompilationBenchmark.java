@@ -0,0 +1,285 @@
+package tech.picnic.errorprone.benchmarks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSortedSet.toImmutableSortedSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.naturalOrder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.common.io.Resources;
+import com.google.errorprone.ErrorProneJavaCompiler;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.scanner.ScannerSupplier;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.picnic.errorprone.refaster.runner.CodeTransformers;
+import tech.picnic.errorprone.refaster.runner.Refaster;
+
+/**
+ * Benchmarks the compilation of a representative corpus of source files, with Error Prone Support's
+ * Refaster rule collections and bug checkers enabled in isolation.
+ *
+ * <p>The {@link #baseline() baseline} compiles the corpus without Error Prone. Each other benchmark
+ * compiles the corpus using Error Prone, with either {@link Refaster} restricted to a single rule
+ * collection, or with a single {@link BugChecker} enabled.
+ *
+ * <p>To run all benchmarks and report the overhead of each rule collection and bug checker relative
+ * to the baseline, execute {@link #main(String[])}. Any JMH command line options are honoured; use
+ * e.g. {@code -p ruleCollection=StringRules,TimeRules} to benchmark only a subset of rule
+ * collections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+      "--add-opens=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED"
+    })
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("Nopen" /* JMH generates subclasses of this class. */)
+@Warmup(iterations = 3, time = 2)
+public class CompilationBenchmark {
+  static final String RULE_COLLECTION_PARAM = "ruleCollection";
+  static final String BUG_CHECKER_PARAM = "bugChecker";
+
+  private static final String BUG_CHECKER_PACKAGE = "tech.picnic.errorprone.bugpatterns";
+  private static final ImmutableList<String> CORPUS =
+      ImmutableList.of("AssertionUsage.java", "CollectionUsage.java", "ReactiveUsage.java");
+  private static final ImmutableList<String> ERROR_PRONE_OPTIONS =
+      ImmutableList.of(
+          "-XDcompilePolicy=simple", "--should-stop=ifError=FLOW", "-XepAllErrorsAsWarnings");
+
+  private final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+  private ImmutableList<JavaFileObject> sources = ImmutableList.of();
+  private Path outputDirectory = Path.of("");
+
+  /**
+   * Runs all benchmarks and reports the overhead of each rule collection and bug checker relative
+   * to the baseline.
+   *
+   * @param args JMH command line options.
+   * @throws CommandLineOptionException If the command line options cannot be parsed.
+   * @throws RunnerException If the benchmarks cannot be run.
+   */
+  @SuppressWarnings("SystemOut" /* The report is meant for human consumption. */)
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+    if (commandLineOptions.getIncludes().isEmpty()) {
+      options.include(CompilationBenchmark.class.getName());
+    }
+    if (!commandLineOptions.getParameter(RULE_COLLECTION_PARAM).hasValue()) {
+      options.param(RULE_COLLECTION_PARAM, getRuleCollections().toArray(String[]::new));
+    }
+    if (!commandLineOptions.getParameter(BUG_CHECKER_PARAM).hasValue()) {
+      options.param(
+          BUG_CHECKER_PARAM,
+          getBugCheckers().stream().map(Class::getSimpleName).toArray(String[]::new));
+    }
+
+    Collection<RunResult> results = new Runner(options.build()).run();
+    System.out.print(CompilationOverheadReport.format(results));
+  }
+
+  /**
+   * Loads the corpus and verifies that it compiles.
+   *
+   * @throws IOException If the corpus cannot be loaded or the output directory cannot be created.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    sources = CORPUS.stream().map(CompilationBenchmark::loadSource).collect(toImmutableList());
+    outputDirectory = Files.createTempDirectory("compilation-benchmark");
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    checkState(
+        compile(javac, ImmutableList.of(), diagnostics),
+        "Corpus does not compile: %s",
+        diagnostics.getDiagnostics());
+  }
+
+  /**
+   * Removes any compilation output.
+   *
+   * @throws IOException If the compilation output cannot be removed.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    MoreFiles.deleteRecursively(outputDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  /**
+   * Compiles the corpus without Error Prone.
+   *
+   * @return Whether compilation succeeded.
+   */
+  @Benchmark
+  public boolean baseline() {
+    return compile(javac, ImmutableList.of(), diagnostic -> {});
+  }
+
+  /**
+   * Compiles the corpus using Error Prone, with only the given Refaster rule collection enabled.
+   *
+   * @param ruleCollection The Refaster rule collection to enable.
+   * @return Whether compilation succeeded.
+   */
+  @Benchmark
+  public boolean refasterRuleCollection(RuleCollection ruleCollection) {
+    return compile(ruleCollection.compiler, ruleCollection.options, diagnostic -> {});
+  }
+
+  /**
+   * Compiles the corpus using Error Prone, with only the given {@link BugChecker} enabled.
+   *
+   * @param bugChecker The {@link BugChecker} to enable.
+   * @return Whether compilation succeeded.
+   */
+  @Benchmark
+  public boolean bugChecker(SingleBugChecker bugChecker) {
+    return compile(bugChecker.compiler, ERROR_PRONE_OPTIONS, diagnostic -> {});
+  }
+
+  private boolean compile(
+      JavaCompiler compiler,
+      ImmutableList<String> options,
+      DiagnosticListener<? super JavaFileObject> diagnosticListener) {
+    return compiler
+        .getTask(
+            /* out= */ null,
+            /* fileManager= */ null,
+            diagnosticListener,
+            ImmutableList.<String>builder()
+                .add("-d", outputDirectory.toString())
+                .addAll(options)
+                .build(),
+            /* classes= */ null,
+            sources)
+        .call();
+  }
+
+  private static SimpleJavaFileObject loadSource(String fileName) {
+    String source;
+    try {
+      source =
+          Resources.toString(
+              Resources.getResource(CompilationBenchmark.class, "corpus/" + fileName), UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Can't load '%s'", fileName), e);
+    }
+
+    return new SimpleJavaFileObject(
+        URI.create("string:///tech/picnic/errorprone/benchmarks/corpus/" + fileName),
+        JavaFileObject.Kind.SOURCE) {
+      @Override
+      public String getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+  }
+
+  /** Returns the names of all Refaster rule collections on the classpath. */
+  private static ImmutableSortedSet<String> getRuleCollections() {
+    return CodeTransformers.getAllCodeTransformers().keySet().stream()
+        .map(ruleName -> ruleName.substring(0, ruleName.indexOf('$')))
+        .collect(toImmutableSortedSet(naturalOrder()));
+  }
+
+  /** Returns all {@link BugChecker}s defined by Error Prone Support. */
+  private static ImmutableList<Class<? extends BugChecker>> getBugCheckers() {
+    return ServiceLoader.load(BugChecker.class).stream()
+        .map(ServiceLoader.Provider::type)
+        .filter(type -> type.getPackageName().equals(BUG_CHECKER_PACKAGE))
+        .collect(toImmutableList());
+  }
+
+  /** The Refaster rule collection to be benchmarked. */
+  @State(Scope.Benchmark)
+  @SuppressWarnings("Nopen" /* JMH generates subclasses of this class. */)
+  public static class RuleCollection {
+    @Param({"AssertJRules", "CollectionRules", "ReactorRules", "StringRules"})
+    private String ruleCollection = "";
+
+    private JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private ImmutableList<String> options = ImmutableList.of();
+
+    /** Configures Error Prone to apply only the selected rule collection. */
+    @Setup
+    public void setUp() {
+      compiler = new ErrorProneJavaCompiler(ScannerSupplier.fromBugCheckerClasses(Refaster.class));
+      options =
+          ImmutableList.<String>builder()
+              .addAll(ERROR_PRONE_OPTIONS)
+              .add(
+                  String.format(
+                      "-XepOpt:%s=%s\\$.*", Refaster.INCLUDED_RULES_PATTERN_FLAG, ruleCollection))
+              .build();
+    }
+  }
+
+  /** The {@link BugChecker} to be benchmarked. */
+  @State(Scope.Benchmark)
+  @SuppressWarnings("Nopen" /* JMH generates subclasses of this class. */)
+  public static class SingleBugChecker {
+    @Param({"LexicographicalAnnotationAttributeListing", "StaticImport"})
+    private String bugChecker = "";
+
+    private JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /** Configures Error Prone to apply only the selected {@link BugChecker}. */
+    @Setup
+    public void setUp() {
+      ImmutableList<Class<? extends BugChecker>> bugCheckers =
+          getBugCheckers().stream()
+              .filter(type -> type.getSimpleName().equals(bugChecker))
+              .collect(toImmutableList());
+      checkArgument(!bugCheckers.isEmpty(), "Unknown bug checker '%s'", bugChecker);
+      compiler = new ErrorProneJavaCompiler(ScannerSupplier.fromBugCheckerClasses(bugCheckers));
+    }
+  }
+}
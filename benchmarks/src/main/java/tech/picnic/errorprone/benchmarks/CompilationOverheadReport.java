@@ -0,0 +1,72 @@
+package tech.picnic.errorprone.benchmarks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Comparator.comparingDouble;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+/**
+ * Summarizes {@link CompilationBenchmark} results by reporting the overhead of each benchmarked
+ * rule collection and bug checker relative to the baseline compilation.
+ */
+final class CompilationOverheadReport {
+  private CompilationOverheadReport() {}
+
+  /**
+   * Formats the overhead of each of the given benchmark results relative to the baseline result.
+   *
+   * @param results The results of a {@link CompilationBenchmark} run, including the baseline.
+   * @return A human-readable report, listing the largest overhead first.
+   */
+  static String format(Collection<RunResult> results) {
+    Result<?> baseline =
+        results.stream()
+            .filter(r -> r.getParams().getBenchmark().endsWith(".baseline"))
+            .map(RunResult::getPrimaryResult)
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("No baseline result"));
+    checkArgument(baseline.getScore() > 0, "Baseline score must be positive");
+
+    ImmutableList<RunResult> measurements =
+        results.stream()
+            .filter(r -> getSubject(r.getParams()).isPresent())
+            .sorted(comparingDouble((RunResult r) -> r.getPrimaryResult().getScore()).reversed())
+            .collect(toImmutableList());
+
+    StringBuilder report = new StringBuilder();
+    report.append(
+        String.format(
+            Locale.ROOT,
+            "Compilation overhead relative to the baseline (%.3f %s):%n",
+            baseline.getScore(),
+            baseline.getScoreUnit()));
+    for (RunResult measurement : measurements) {
+      double score = measurement.getPrimaryResult().getScore();
+      report.append(
+          String.format(
+              Locale.ROOT,
+              "  %-60s %+10.3f %s (%+.1f%%)%n",
+              getSubject(measurement.getParams()).orElseThrow(),
+              score - baseline.getScore(),
+              measurement.getPrimaryResult().getScoreUnit(),
+              100 * (score - baseline.getScore()) / baseline.getScore()));
+    }
+    return report.toString();
+  }
+
+  private static Optional<String> getSubject(BenchmarkParams params) {
+    return Optional.ofNullable(params.getParam(CompilationBenchmark.RULE_COLLECTION_PARAM))
+        .map(ruleCollection -> "Refaster rule collection " + ruleCollection)
+        .or(
+            () ->
+                Optional.ofNullable(params.getParam(CompilationBenchmark.BUG_CHECKER_PARAM))
+                    .map(bugChecker -> "Bug checker " + bugChecker));
+  }
+}
@@ -0,0 +1,168 @@
+package tech.picnic.errorprone.benchmarks;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableRangeSet.toImmutableRangeSet;
+import static java.util.function.Predicate.not;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import com.google.errorprone.fixes.Replacement;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.matchers.Description;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.JCDiagnostic.SimpleDiagnosticPosition;
+import com.sun.tools.javac.util.Position;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tech.picnic.errorprone.refaster.runner.NonOverlappingMatchSelector;
+
+/**
+ * Compares the performance of {@link NonOverlappingMatchSelector} with that of the {@link
+ * RangeSet}-based implementation that preceded it, on a compilation unit with a high match density.
+ *
+ * <p>To run this benchmark, execute {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+    })
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@SuppressWarnings("Nopen" /* JMH generates subclasses of this class. */)
+public class NonOverlappingMatchSelectorBenchmark {
+  private static final EndPosTable END_POSITIONS = new NoEndPositions();
+
+  /** The number of source code locations matched by more than one rule. */
+  @Param({"100", "1000", "10000"})
+  private int matchSites;
+
+  private ImmutableList<Description> matches = ImmutableList.of();
+
+  /**
+   * Runs this benchmark.
+   *
+   * @param args Ignored.
+   * @throws RunnerException If the benchmark cannot be run.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(NonOverlappingMatchSelectorBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+
+  /**
+   * Creates matches resembling those of overlapping Refaster rules: at each site, a rule that
+   * rewrites a full expression competes with rules that rewrite part of said expression.
+   */
+  @Setup
+  public void setUp() {
+    matches =
+        IntStream.range(0, matchSites)
+            .map(site -> 100 * site)
+            .boxed()
+            .flatMap(
+                offset ->
+                    Stream.of(
+                        match(SuggestedFix.replace(offset + 10, offset + 20, "y")),
+                        match(SuggestedFix.replace(offset, offset + 40, "x")),
+                        match(SuggestedFix.replace(offset, offset + 40, "xx")),
+                        match(SuggestedFix.replace(offset + 40, offset + 60, "z"))))
+            .collect(toImmutableList());
+  }
+
+  /**
+   * Selects matches using {@link NonOverlappingMatchSelector}.
+   *
+   * @return The selected matches.
+   */
+  @Benchmark
+  public ImmutableList<Description> select() {
+    return NonOverlappingMatchSelector.select(matches, END_POSITIONS);
+  }
+
+  /**
+   * Selects matches using the original {@link RangeSet}-based implementation, which computes the
+   * replacements of each match up to three times.
+   *
+   * @return The selected matches.
+   */
+  @Benchmark
+  public ImmutableList<Description> selectUsingRangeSet() {
+    ImmutableList<Description> byReplacementSize =
+        ImmutableList.sortedCopyOf(
+            Comparator.<Description>comparingInt(
+                    d -> getReplacements(d).mapToInt(Replacement::length).sum())
+                .reversed()
+                .thenComparingInt(
+                    d -> getReplacements(d).mapToInt(r -> r.replaceWith().length()).sum()),
+            matches);
+
+    RangeSet<Integer> replacedSections = TreeRangeSet.create();
+    ImmutableList.Builder<Description> selected = ImmutableList.builder();
+    for (Description description : byReplacementSize) {
+      ImmutableRangeSet<Integer> ranges =
+          getReplacements(description)
+              .map(Replacement::range)
+              .filter(not(Range::isEmpty))
+              .collect(toImmutableRangeSet());
+      if (ranges.asRanges().stream().noneMatch(replacedSections::intersects)) {
+        selected.add(description);
+        replacedSections.addAll(ranges);
+      }
+    }
+    return selected.build();
+  }
+
+  private static Stream<Replacement> getReplacements(Description description) {
+    return description.fixes.stream().flatMap(fix -> fix.getReplacements(END_POSITIONS).stream());
+  }
+
+  private static Description match(SuggestedFix fix) {
+    return Description.builder(new SimpleDiagnosticPosition(0), "Rule", "", "Message")
+        .addFix(fix)
+        .build();
+  }
+
+  /** An {@link EndPosTable} for use with fixes that explicitly specify their end positions. */
+  private static final class NoEndPositions implements EndPosTable {
+    @Override
+    public int getEndPos(JCTree tree) {
+      return Position.NOPOS;
+    }
+
+    @Override
+    public void storeEnd(JCTree tree, int endpos) {}
+
+    @Override
+    public int replaceTree(JCTree oldtree, JCTree newtree) {
+      return Position.NOPOS;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package tech.picnic.errorprone.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.reflect.ClassPath;
+import com.google.common.reflect.ClassPath.ResourceInfo;
+import com.google.errorprone.CodeTransformer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import tech.picnic.errorprone.refaster.RefasterRuleFormat;
+
+/**
+ * Reports the heap retained by all Refaster rules on the classpath once deserialized, both with and
+ * without canonicalization of the names, types and identifiers they reference.
+ *
+ * <p>Each measurement deserializes all rules, and compares the heap usage after a garbage
+ * collection with the heap usage prior to deserialization. The reported sizes are therefore
+ * approximations, but as all rules are retained simultaneously, they are representative of the
+ * footprint of a compiler that applies all Refaster rules.
+ *
+ * <p>As deserialized rules reference {@code javac} internals, this class must be run with the same
+ * {@code --add-exports} and {@code --add-opens} flags as {@link CompilationBenchmark}.
+ */
+public final class RuleFootprintReport {
+  private static final int GC_ROUNDS = 3;
+
+  private RuleFootprintReport() {}
+
+  /**
+   * Measures and reports the heap retained by all Refaster rules on the classpath.
+   *
+   * @param args Ignored.
+   * @throws ClassNotFoundException If a rule references a class that cannot be loaded.
+   * @throws IOException If a rule cannot be read.
+   */
+  @SuppressWarnings("SystemOut" /* The report is meant for human consumption. */)
+  public static void main(String[] args) throws ClassNotFoundException, IOException {
+    ImmutableList<byte[]> rules = loadRules();
+
+    /* Load all classes referenced by the rules, such that they don't skew the measurements. */
+    measureRetainedHeap(rules, Interners.newWeakInterner());
+
+    long withoutInterning = measureRetainedHeap(rules, object -> object);
+    long withInterning = measureRetainedHeap(rules, Interners.newWeakInterner());
+    System.out.printf(
+        Locale.ROOT,
+        "Heap retained by %d Refaster rules:%n"
+            + "  %-20s %,12d bytes%n"
+            + "  %-20s %,12d bytes (%+.1f%%)%n",
+        rules.size(),
+        "Without interning",
+        withoutInterning,
+        "With interning",
+        withInterning,
+        100.0 * (withInterning - withoutInterning) / withoutInterning);
+  }
+
+  private static ImmutableList<byte[]> loadRules() throws IOException {
+    ImmutableList.Builder<byte[]> rules = ImmutableList.builder();
+    for (ResourceInfo resource :
+        ClassPath.from(RuleFootprintReport.class.getClassLoader()).getResources()) {
+      if (resource.getResourceName().endsWith(".refaster")) {
+        rules.add(resource.asByteSource().read());
+      }
+    }
+    return rules.build();
+  }
+
+  private static long measureRetainedHeap(ImmutableList<byte[]> rules, Interner<Object> interner)
+      throws ClassNotFoundException, IOException {
+    long before = getUsedHeap();
+
+    List<CodeTransformer> transformers = new ArrayList<>(rules.size());
+    try {
+      for (byte[] rule : rules) {
+        CodeTransformer transformer =
+            RefasterRuleFormat.read(new ByteArrayInputStream(rule), interner);
+        /* Retrieving the rule's annotations forces its deserialization. */
+        transformer.annotations();
+        transformers.add(transformer);
+      }
+
+      return getUsedHeap() - before;
+    } finally {
+      Reference.reachabilityFence(transformers);
+    }
+  }
+
+  private static long getUsedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < GC_ROUNDS; i++) {
+      memory.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
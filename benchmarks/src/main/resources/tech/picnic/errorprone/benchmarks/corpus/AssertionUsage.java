@@ -0,0 +1,56 @@
+package tech.picnic.errorprone.benchmarks.corpus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+final class AssertionUsage {
+  @Test
+  void junitAssertions() {
+    List<String> values = ImmutableList.of("foo", "bar");
+    assertEquals(2, values.size());
+    assertTrue(values.contains("foo"));
+    assertFalse(values.isEmpty());
+    assertNotNull(values.get(0));
+    assertNull(Optional.empty().orElse(null));
+    assertThrows(IllegalStateException.class, () -> { throw new IllegalStateException(); });
+  }
+
+  @Test
+  void assertJAssertions() {
+    List<String> values = ImmutableList.of("foo", "bar");
+    assertThat(values.size()).isEqualTo(2);
+    assertThat(values.isEmpty()).isFalse();
+    assertThat(values.contains("foo")).isTrue();
+    assertThat(values.get(0).equals("foo")).isTrue();
+    assertThat(values.get(0).length()).isEqualTo(3);
+    assertThat(values.get(1).isEmpty()).isFalse();
+    assertThat(values.get(1).startsWith("b")).isTrue();
+
+    Map<String, Integer> map = ImmutableMap.of("foo", 1);
+    assertThat(map.containsKey("foo")).isTrue();
+    assertThat(map.get("foo")).isEqualTo(1);
+    assertThat(map.size()).isEqualTo(1);
+    assertThat(map.isEmpty()).isFalse();
+
+    Optional<String> optional = Optional.of("foo");
+    assertThat(optional.isPresent()).isTrue();
+    assertThat(optional.get()).isEqualTo("foo");
+    assertThat(optional.orElseThrow()).isNotNull();
+
+    assertThat(1.0 == 1.0).isTrue();
+    assertThat(1L < 2L).isTrue();
+    assertThat((Object) null == null).isTrue();
+  }
+}
@@ -0,0 +1,99 @@
+package tech.picnic.errorprone.benchmarks.corpus;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+final class CollectionUsage {
+  private static final Pattern WORD = Pattern.compile("\\w+");
+
+  List<String> copies(Collection<String> values) {
+    List<String> result = new ArrayList<>();
+    result.addAll(values);
+    return java.util.Collections.unmodifiableList(result);
+  }
+
+  ImmutableList<String> immutableCopies(List<String> values) {
+    ImmutableSet<String> set = ImmutableSet.copyOf(values);
+    return ImmutableList.copyOf(set.stream().sorted().collect(Collectors.toList()));
+  }
+
+  Map<String, Integer> lengths(Set<String> values) {
+    Map<String, Integer> lengths = new HashMap<>();
+    for (String value : values) {
+      if (!lengths.containsKey(value)) {
+        lengths.put(value, value.length());
+      }
+    }
+    return ImmutableMap.copyOf(lengths);
+  }
+
+  boolean isEmpty(Collection<?> values, String string) {
+    return values.size() == 0 || string.length() == 0 || values.stream().count() == 0;
+  }
+
+  Optional<String> first(List<String> values) {
+    return values.stream().filter(Objects::nonNull).findFirst().map(Function.identity());
+  }
+
+  String orDefault(Optional<String> value) {
+    return value.isPresent() ? value.get() : "default";
+  }
+
+  int sum(int[] values) {
+    return IntStream.of(values).boxed().mapToInt(Integer::intValue).sum();
+  }
+
+  long count(Stream<String> values) {
+    return values.filter(s -> !s.isEmpty()).collect(Collectors.counting());
+  }
+
+  List<String> sorted(String... values) {
+    List<String> list = Arrays.asList(values);
+    list.sort(Comparator.comparing(s -> s));
+    return list.stream().sorted(Comparator.reverseOrder()).collect(Collectors.toUnmodifiableList());
+  }
+
+  Set<Integer> emptySet() {
+    return java.util.Collections.emptySet();
+  }
+
+  boolean matches(String input) {
+    return WORD.matcher(input).matches() && input.toCharArray().length > 0;
+  }
+
+  String concatenate(List<String> values) {
+    return values.stream().collect(Collectors.joining("")) + String.valueOf(values.size());
+  }
+
+  boolean isZero(BigDecimal value) {
+    return value.compareTo(BigDecimal.ZERO) == 0 && value.signum() == 0;
+  }
+
+  Instant later(Instant instant) {
+    return instant.plus(Duration.ofSeconds(0)).atOffset(ZoneOffset.UTC).toInstant();
+  }
+
+  Duration duration(long millis) {
+    return Duration.ofMillis(millis).plus(Duration.ZERO);
+  }
+}
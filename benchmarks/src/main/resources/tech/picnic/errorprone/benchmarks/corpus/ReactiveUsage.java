@@ -0,0 +1,39 @@
+package tech.picnic.errorprone.benchmarks.corpus;
+
+import com.google.common.collect.ImmutableList;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+final class ReactiveUsage {
+  Mono<String> emptyIfAbsent(Optional<String> value) {
+    return value.map(Mono::just).orElse(Mono.empty());
+  }
+
+  Flux<Integer> lengths(List<String> values) {
+    return Flux.fromIterable(values).flatMap(v -> Mono.just(v.length())).map(Function.identity());
+  }
+
+  Mono<ImmutableList<String>> collect(Flux<String> values) {
+    return values.collectList().map(ImmutableList::copyOf).switchIfEmpty(Mono.empty());
+  }
+
+  Mono<Void> thenEmpty(Mono<String> value) {
+    return value.then(Mono.empty()).then();
+  }
+
+  Flux<String> delayed(Flux<String> values) {
+    return values.delayElements(Duration.ZERO).concatMap(Flux::just).filter(s -> true);
+  }
+
+  Mono<String> orDefault(Mono<String> value) {
+    return value.switchIfEmpty(Mono.just("default")).flatMap(Mono::just);
+  }
+
+  Flux<String> concatenation(Mono<String> first, Mono<String> second) {
+    return Flux.concat(first, second).flatMapSequential(Flux::just, 1);
+  }
+}
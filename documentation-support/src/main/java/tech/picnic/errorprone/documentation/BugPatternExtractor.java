@@ -38,6 +38,11 @@ public final class BugPatternExtractor implements Extractor<BugPatternDocumentat
     return "bugpattern";
   }
 
+  @Override
+  public boolean isApplicable(ClassTree tree, VisitorState state) {
+    return ASTHelpers.hasAnnotation(tree, BugPattern.class.getName(), state);
+  }
+
   @Override
   public Optional<BugPatternDocumentation> tryExtract(ClassTree tree, VisitorState state) {
     ClassSymbol symbol = ASTHelpers.getSymbol(tree);
@@ -15,6 +15,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.auto.service.AutoService;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.annotations.Immutable;
 import com.google.errorprone.matchers.Matcher;
@@ -42,6 +43,9 @@ import tech.picnic.errorprone.documentation.BugPatternTestExtractor.BugPatternTe
 @AutoService(Extractor.class)
 @SuppressWarnings("rawtypes" /* See https://github.com/google/auto/issues/870. */)
 public final class BugPatternTestExtractor implements Extractor<BugPatternTestCases> {
+  private static final ImmutableSet<String> TEST_HELPER_TYPE_NAMES =
+      ImmutableSet.of("BugCheckerRefactoringTestHelper", "CompilationTestHelper");
+
   /** Instantiates a new {@link BugPatternTestExtractor} instance. */
   public BugPatternTestExtractor() {}
 
@@ -50,6 +54,24 @@ public final class BugPatternTestExtractor implements Extractor<BugPatternTestCa
     return "bugpattern-test";
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only classes in compilation units whose source code mentions one of the supported test
+   * helpers by name are considered. This covers regular, wildcard and static imports, as well as
+   * references by fully qualified name.
+   */
+  @Override
+  public boolean isApplicable(ClassTree tree, VisitorState state) {
+    CharSequence sourceCode = state.getSourceCode();
+    if (sourceCode == null) {
+      return true;
+    }
+
+    String source = sourceCode.toString();
+    return TEST_HELPER_TYPE_NAMES.stream().anyMatch(source::contains);
+  }
+
   @Override
   public Optional<BugPatternTestCases> tryExtract(ClassTree tree, VisitorState state) {
     BugPatternTestCollector collector = new BugPatternTestCollector();
@@ -9,12 +9,17 @@ import com.sun.source.util.Plugin;
 import com.sun.tools.javac.api.BasicJavacTask;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A compiler {@link Plugin} that analyzes and extracts relevant information for documentation
  * purposes from processed files.
+ *
+ * <p>By default the information extracted from each class is written to a separate file. When
+ * passed {@code -XoutputFormat=stream}, all information extracted during a compilation is instead
+ * written to a single file of newline-delimited JSON records.
  */
 // XXX: Find a better name for this class; it doesn't generate documentation per se.
 @AutoService(Plugin.class)
@@ -22,6 +27,9 @@ public final class DocumentationGenerator implements Plugin {
   @VisibleForTesting static final String OUTPUT_DIRECTORY_FLAG = "-XoutputDirectory";
   private static final Pattern OUTPUT_DIRECTORY_FLAG_PATTERN =
       Pattern.compile(Pattern.quote(OUTPUT_DIRECTORY_FLAG) + "=(.*)");
+  @VisibleForTesting static final String OUTPUT_FORMAT_FLAG = "-XoutputFormat";
+  private static final Pattern OUTPUT_FORMAT_FLAG_PATTERN =
+      Pattern.compile(Pattern.quote(OUTPUT_FORMAT_FLAG) + "=(.*)");
 
   /** Instantiates a new {@link DocumentationGenerator} instance. */
   public DocumentationGenerator() {}
@@ -33,11 +41,15 @@ public final class DocumentationGenerator implements Plugin {
 
   @Override
   public void init(JavacTask javacTask, String... args) {
-    checkArgument(args.length == 1, "Precisely one path must be provided");
+    checkArgument(
+        args.length == 1 || args.length == 2,
+        "Precisely one path and optionally an output format must be provided");
 
     javacTask.addTaskListener(
         new DocumentationGeneratorTaskListener(
-            ((BasicJavacTask) javacTask).getContext(), getOutputPath(args[0])));
+            ((BasicJavacTask) javacTask).getContext(),
+            getOutputPath(args[0]),
+            args.length == 2 ? getOutputFormat(args[1]) : OutputFormat.FILES));
   }
 
   @VisibleForTesting
@@ -53,4 +65,29 @@ public final class DocumentationGenerator implements Plugin {
       throw new IllegalArgumentException(String.format("Invalid path '%s'", path), e);
     }
   }
+
+  @VisibleForTesting
+  static OutputFormat getOutputFormat(String formatArg) {
+    Matcher matcher = OUTPUT_FORMAT_FLAG_PATTERN.matcher(formatArg);
+    checkArgument(
+        matcher.matches(), "'%s' must be of the form '%s=<value>'", formatArg, OUTPUT_FORMAT_FLAG);
+
+    String format = matcher.group(1);
+    try {
+      return OutputFormat.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Invalid output format '%s'", format), e);
+    }
+  }
+
+  /** The manner in which extracted documentation information is written to disk. */
+  enum OutputFormat {
+    /** Writes the information extracted from each class to a separate JSON file. */
+    FILES,
+    /**
+     * Writes all information extracted during a compilation to a single file, as newline-delimited
+     * JSON.
+     */
+    STREAM
+  }
 }
@@ -1,6 +1,12 @@
 package tech.picnic.errorprone.documentation;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.VisitorState;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
@@ -9,17 +15,37 @@ import com.sun.source.util.TaskEvent.Kind;
 import com.sun.source.util.TaskListener;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.api.JavacTrees;
+import com.sun.tools.javac.main.Option;
 import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.stream.Stream;
+import javax.lang.model.element.TypeElement;
 import javax.tools.JavaFileObject;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.documentation.DocumentationGenerator.OutputFormat;
 
 /**
  * A {@link TaskListener} that identifies and extracts relevant content for documentation generation
  * and writes it to disk.
+ *
+ * <p>In {@link OutputFormat#STREAM stream} mode, all content extracted during a compilation is
+ * written by a background thread to a single newline-delimited JSON file, named after the
+ * compilation's class output directory. Each line holds one {@link ExtractedRecord}.
+ *
+ * <p>Extraction is skipped for classes whose source code, resolved annotation values and the code
+ * of the extractors applied to them did not change since a previous compilation; see {@link
+ * ExtractionIndex}. In stream mode the records previously extracted from such classes are emitted
+ * again.
  */
 // XXX: Find a better name for this class; it doesn't generate documentation per se.
 final class DocumentationGeneratorTaskListener implements TaskListener {
@@ -30,23 +56,38 @@ final class DocumentationGeneratorTaskListener implements TaskListener {
               ServiceLoader.load(
                   Extractor.class, DocumentationGeneratorTaskListener.class.getClassLoader()));
 
+  private static final @Nullable String EXTRACTOR_DIGEST = computeExtractorDigest();
+
   private final Context context;
   private final Path docsPath;
+  private final OutputFormat outputFormat;
+  private @Nullable JsonLinesWriter recordWriter;
+  private @Nullable ExtractionIndex extractionIndex;
 
-  DocumentationGeneratorTaskListener(Context context, Path path) {
+  DocumentationGeneratorTaskListener(Context context, Path path, OutputFormat outputFormat) {
     this.context = context;
     this.docsPath = path;
+    this.outputFormat = outputFormat;
   }
 
   @Override
   public void started(TaskEvent taskEvent) {
     if (taskEvent.getKind() == Kind.ANALYZE) {
       createDocsDirectory();
+      if (extractionIndex == null && EXTRACTOR_DIGEST != null) {
+        extractionIndex = ExtractionIndex.load(docsPath);
+      }
     }
   }
 
   @Override
   public void finished(TaskEvent taskEvent) {
+    if (taskEvent.getKind() == Kind.COMPILATION) {
+      closeRecordWriter();
+      storeExtractionIndex();
+      return;
+    }
+
     if (taskEvent.getKind() != Kind.ANALYZE) {
       return;
     }
@@ -58,17 +99,36 @@ final class DocumentationGeneratorTaskListener implements TaskListener {
       return;
     }
 
+    String key = sourceFile.toUri() + "#" + taskEvent.getTypeElement().getQualifiedName();
+    @Nullable String digest = computeDigest(sourceFile, taskEvent.getTypeElement());
+    Optional<ImmutableList<String>> previousRecords =
+        extractionIndex == null || digest == null
+            ? Optional.empty()
+            : extractionIndex.getRecords(key, digest);
+    if (previousRecords.isPresent()) {
+      if (outputFormat == OutputFormat.STREAM) {
+        previousRecords.orElseThrow().forEach(getRecordWriter()::write);
+      }
+      return;
+    }
+
     VisitorState state =
         VisitorState.createForUtilityPurposes(context)
             .withPath(new TreePath(new TreePath(compilationUnit), classTree));
 
+    ImmutableList.Builder<String> records = ImmutableList.builder();
     for (Extractor<?> extractor : EXTRACTORS) {
-      extractor
-          .tryExtract(classTree, state)
-          .ifPresent(
-              data ->
-                  writeToFile(
-                      extractor.identifier(), getSimpleClassName(sourceFile.toUri()), data));
+      if (extractor.isApplicable(classTree, state)) {
+        extractor
+            .tryExtract(classTree, state)
+            .flatMap(
+                data -> write(extractor.identifier(), getSimpleClassName(sourceFile.toUri()), data))
+            .ifPresent(records::add);
+      }
+    }
+
+    if (extractionIndex != null && digest != null) {
+      extractionIndex.putRecords(key, digest, records.build());
     }
   }
 
@@ -81,11 +141,162 @@ final class DocumentationGeneratorTaskListener implements TaskListener {
     }
   }
 
+  /** Writes the given data, and returns the emitted record if it may need to be reproduced. */
+  private <T> Optional<String> write(String identifier, String className, T data) {
+    return switch (outputFormat) {
+      case FILES -> {
+        writeToFile(identifier, className, data);
+        yield Optional.empty();
+      }
+      case STREAM -> {
+        String record =
+            Json.toJson(
+                new AutoValue_DocumentationGeneratorTaskListener_ExtractedRecord(
+                    identifier, className, data));
+        getRecordWriter().write(record);
+        yield Optional.of(record);
+      }
+    };
+  }
+
   private <T> void writeToFile(String identifier, String className, T data) {
     Json.write(docsPath.resolve(String.format("%s-%s.json", identifier, className)), data);
   }
 
+  private JsonLinesWriter getRecordWriter() {
+    if (recordWriter == null) {
+      recordWriter = JsonLinesWriter.create(docsPath.resolve(getStreamFileName()));
+    }
+    return recordWriter;
+  }
+
+  /**
+   * Returns the name of the file to which content is streamed, derived from the class output
+   * directory so that distinct compilations of the same module do not overwrite each other's
+   * output, while recompilations do.
+   */
+  private String getStreamFileName() {
+    String classOutputDirectory = Options.instance(context).get(Option.D);
+    String name =
+        classOutputDirectory == null
+            ? "docs"
+            : Path.of(classOutputDirectory).getFileName().toString();
+    return name + ".ndjson";
+  }
+
+  private void closeRecordWriter() {
+    if (recordWriter != null) {
+      recordWriter.close();
+      recordWriter = null;
+    }
+  }
+
+  private void storeExtractionIndex() {
+    if (extractionIndex != null) {
+      extractionIndex.store();
+      extractionIndex = null;
+    }
+  }
+
+  /**
+   * Computes a digest of the given source file's content, the resolved values of the annotations on
+   * the given type, the code of all extractors and the output format, or returns {@code null} if
+   * the location of the extractors' code cannot be determined.
+   *
+   * <p>Annotation values are included as they may reference constants declared in other source
+   * files, as is the case for the {@code link} attribute of most {@code @BugPattern} annotations.
+   */
+  private @Nullable String computeDigest(JavaFileObject sourceFile, TypeElement typeElement) {
+    if (EXTRACTOR_DIGEST == null) {
+      return null;
+    }
+
+    try {
+      return Hashing.sha256()
+          .newHasher()
+          .putString(EXTRACTOR_DIGEST, UTF_8)
+          .putByte((byte) 0)
+          .putString(outputFormat.name(), UTF_8)
+          .putByte((byte) 0)
+          .putString(sourceFile.getCharContent(true), UTF_8)
+          .putByte((byte) 0)
+          .putString(typeElement.getAnnotationMirrors().toString(), UTF_8)
+          .hash()
+          .toString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failure reading '%s'", sourceFile.toUri()), e);
+    }
+  }
+
+  /**
+   * Computes a digest of the identifiers of all extractors and of the content of the JAR files or
+   * directories from which they, and this class, are loaded, or returns {@code null} if any of
+   * these locations cannot be determined.
+   *
+   * <p>Unlike implementation versions, which are identical across snapshot builds, the code itself
+   * reliably reflects changes to the extractors.
+   */
+  private static @Nullable String computeExtractorDigest() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    ImmutableSet.Builder<Class<?>> classes = ImmutableSet.builder();
+    classes.add(DocumentationGeneratorTaskListener.class);
+    for (Extractor<?> extractor : EXTRACTORS) {
+      hasher.putString(extractor.identifier(), UTF_8).putByte((byte) 0);
+      classes.add(extractor.getClass());
+    }
+
+    ImmutableSet.Builder<Path> locations = ImmutableSet.builder();
+    for (Class<?> clazz : classes.build()) {
+      Optional<Path> location = getCodeLocation(clazz);
+      if (location.isEmpty()) {
+        return null;
+      }
+      locations.add(location.orElseThrow());
+    }
+
+    try {
+      for (Path location : locations.build()) {
+        try (Stream<Path> files = Files.walk(location)) {
+          for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+            hasher
+                .putString(location.relativize(file).toString(), UTF_8)
+                .putByte((byte) 0)
+                .putBytes(Files.readAllBytes(file));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to compute extractor digest", e);
+    }
+    return hasher.hash().toString();
+  }
+
+  @SuppressWarnings("java:S1166" /* The caught exception's stack traces are not relevant. */)
+  private static Optional<Path> getCodeLocation(Class<?> clazz) {
+    @Nullable CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(Path.of(codeSource.getLocation().toURI()));
+    } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+      /* The code is not loaded from the default file system. */
+      return Optional.empty();
+    }
+  }
+
   private static String getSimpleClassName(URI path) {
     return Path.of(path).getFileName().toString().replace(".java", "");
   }
+
+  /** A piece of content extracted from a class, as written in stream mode. */
+  @AutoValue
+  abstract static class ExtractedRecord {
+    abstract String identifier();
+
+    abstract String className();
+
+    abstract Object data();
+  }
 }
@@ -0,0 +1,98 @@
+package tech.picnic.errorprone.documentation;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An index of the classes from which documentation content was previously extracted, used to skip
+ * extraction for classes whose source code and extractors did not change since.
+ *
+ * <p>For each class the index tracks a digest of the inputs to the extraction process, along with
+ * the serialized records that were emitted, such that these can be reproduced without repeating the
+ * extraction.
+ */
+// XXX: Entries of classes that no longer exist are never removed.
+final class ExtractionIndex {
+  private static final String FILE_NAME = "extraction-index.json";
+
+  private final Path path;
+  private final Map<String, Entry> entries;
+
+  private ExtractionIndex(Path path, Map<String, Entry> entries) {
+    this.path = path;
+    this.entries = entries;
+  }
+
+  /**
+   * Loads the index stored in the given directory, or creates an empty index if there is none.
+   *
+   * @param directory The directory in which the index is stored.
+   * @return A non-{@code null} {@link ExtractionIndex}.
+   */
+  static ExtractionIndex load(Path directory) {
+    Path path = directory.resolve(FILE_NAME);
+    return new ExtractionIndex(
+        path,
+        Files.exists(path)
+            ? new HashMap<>(Json.read(path, IndexFile.class).entries())
+            : new HashMap<>());
+  }
+
+  /**
+   * Returns the records previously emitted for the given class, provided that they were extracted
+   * from inputs with the given digest.
+   *
+   * @param key The key identifying the class of interest.
+   * @param digest The digest of the current extraction inputs.
+   * @return The previously emitted records, if still valid.
+   */
+  Optional<ImmutableList<String>> getRecords(String key, String digest) {
+    return Optional.ofNullable(entries.get(key))
+        .filter(entry -> entry.digest().equals(digest))
+        .map(Entry::records);
+  }
+
+  /**
+   * Registers the records emitted for the given class.
+   *
+   * @param key The key identifying the class of interest.
+   * @param digest The digest of the inputs from which the records were extracted.
+   * @param records The emitted records.
+   */
+  void putRecords(String key, String digest, ImmutableList<String> records) {
+    entries.put(key, new AutoValue_ExtractionIndex_Entry(digest, records));
+  }
+
+  /**
+   * Writes this index to the directory from which it was loaded, unless no records were emitted at
+   * all and no index was previously stored.
+   */
+  void store() {
+    if (!Files.exists(path) && entries.values().stream().allMatch(e -> e.records().isEmpty())) {
+      return;
+    }
+
+    Json.write(path, new AutoValue_ExtractionIndex_IndexFile(ImmutableMap.copyOf(entries)));
+  }
+
+  @AutoValue
+  @JsonDeserialize(as = AutoValue_ExtractionIndex_IndexFile.class)
+  abstract static class IndexFile {
+    abstract ImmutableMap<String, Entry> entries();
+  }
+
+  @AutoValue
+  @JsonDeserialize(as = AutoValue_ExtractionIndex_Entry.class)
+  abstract static class Entry {
+    abstract String digest();
+
+    abstract ImmutableList<String> records();
+  }
+}
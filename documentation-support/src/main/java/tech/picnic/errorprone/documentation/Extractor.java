@@ -20,9 +20,26 @@ interface Extractor<T> {
    */
   String identifier();
 
+  /**
+   * Tells whether this extractor may be able to extract data from the given {@link ClassTree}.
+   *
+   * <p>This method is evaluated before {@link #tryExtract(ClassTree, VisitorState)}, and should be
+   * cheap to evaluate.
+   *
+   * @param tree The {@link ClassTree} of interest.
+   * @param state A {@link VisitorState} describing the context in which the given {@link ClassTree}
+   *     is found.
+   * @return {@code false} iff {@link #tryExtract(ClassTree, VisitorState)} is certain to yield an
+   *     empty result for the given {@link ClassTree}.
+   */
+  boolean isApplicable(ClassTree tree, VisitorState state);
+
   /**
    * Attempts to extract an instance of type {@link T} using the provided arguments.
    *
+   * <p>This method is only invoked for trees for which {@link #isApplicable(ClassTree,
+   * VisitorState)} holds.
+   *
    * @param tree The {@link ClassTree} to analyze and from which to extract an instance of type
    *     {@link T}.
    * @param state A {@link VisitorState} describing the context in which the given {@link ClassTree}
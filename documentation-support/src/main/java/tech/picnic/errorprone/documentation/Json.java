@@ -38,6 +38,14 @@ final class Json {
     }
   }
 
+  static <T> String toJson(T object) {
+    try {
+      return OBJECT_MAPPER.writeValueAsString(object);
+    } catch (IOException e) {
+      throw failure(e, "Failure serializing '%s'", object);
+    }
+  }
+
   @FormatMethod
   private static UncheckedIOException failure(IOException cause, String format, Object... args) {
     return new UncheckedIOException(String.format(format, args), cause);
@@ -0,0 +1,100 @@
+package tech.picnic.errorprone.documentation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A writer that writes serialized JSON values to a single file, one value per line.
+ *
+ * <p>Values are written by a background thread, in the order in which they are submitted. Once
+ * writing a value fails, subsequently submitted values are ignored; the failure is reported by
+ * {@link #close()}.
+ */
+final class JsonLinesWriter implements AutoCloseable {
+  private final Path path;
+  private final Writer writer;
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("documentation-writer-%d")
+              .build());
+  private CompletableFuture<Void> pendingWrites = CompletableFuture.completedFuture(null);
+
+  private JsonLinesWriter(Path path, Writer writer) {
+    this.path = path;
+    this.writer = writer;
+  }
+
+  /**
+   * Creates a {@link JsonLinesWriter} that writes to the given file, replacing any existing
+   * content.
+   *
+   * @param path The file to write to.
+   * @return A non-{@code null} {@link JsonLinesWriter}.
+   * @throws UncheckedIOException If the file cannot be opened for writing.
+   */
+  static JsonLinesWriter create(Path path) {
+    try {
+      return new JsonLinesWriter(path, Files.newBufferedWriter(path, UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failure opening '%s'", path), e);
+    }
+  }
+
+  /**
+   * Schedules the given serialized JSON value to be written as a single line.
+   *
+   * @param json The JSON value to write; must not contain line breaks.
+   */
+  void write(String json) {
+    pendingWrites = pendingWrites.thenRunAsync(() -> writeLine(json), executor);
+  }
+
+  /**
+   * Waits for all scheduled values to be written, and closes the underlying file.
+   *
+   * @throws UncheckedIOException If any value could not be written, or if the file could not be
+   *     closed.
+   */
+  @Override
+  public void close() {
+    try {
+      pendingWrites.whenCompleteAsync((result, failure) -> closeWriter(), executor).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException cause) {
+        throw cause;
+      }
+      throw e;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void writeLine(String line) {
+    try {
+      writer.write(line);
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failure writing to '%s'", path), e);
+    }
+  }
+
+  private void closeWriter() {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(String.format("Failure closing '%s'", path), e);
+    }
+  }
+}
@@ -52,11 +52,12 @@ public final class RefasterRuleCollectionTestExtractor implements Extractor<Refa
   }
 
   @Override
-  public Optional<RefasterTestCases> tryExtract(ClassTree tree, VisitorState state) {
-    if (!IS_REFASTER_RULE_COLLECTION_TEST_CASE.matches(tree, state)) {
-      return Optional.empty();
-    }
+  public boolean isApplicable(ClassTree tree, VisitorState state) {
+    return IS_REFASTER_RULE_COLLECTION_TEST_CASE.matches(tree, state);
+  }
 
+  @Override
+  public Optional<RefasterTestCases> tryExtract(ClassTree tree, VisitorState state) {
     URI sourceFile = state.getPath().getCompilationUnit().getSourceFile().toUri();
     return Optional.of(
         RefasterTestCases.create(
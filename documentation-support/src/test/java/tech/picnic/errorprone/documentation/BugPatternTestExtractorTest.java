@@ -549,6 +549,49 @@ final class BugPatternTestExtractorTest {
                             "A.java", "class A {}\n", "class A { /* This is a change. */ }\n"))))));
   }
 
+  @Test
+  void wildcardImportAndFullyQualifiedReference(@TempDir Path outputDirectory) {
+    Compilation.compileWithDocumentationGenerator(
+        outputDirectory,
+        "WildcardImportAndFullyQualifiedReferenceTest.java",
+        "import com.google.errorprone.*;",
+        "import com.google.errorprone.bugpatterns.BugChecker;",
+        "",
+        "final class WildcardImportAndFullyQualifiedReferenceTest {",
+        "  private static class TestChecker extends BugChecker {}",
+        "",
+        "  void m() {",
+        "    CompilationTestHelper.newInstance(TestChecker.class, getClass())",
+        "        .addSourceLines(\"A.java\", \"// BUG: Diagnostic contains:\", \"class A {}\")",
+        "        .doTest();",
+        "",
+        "    com.google.errorprone.BugCheckerRefactoringTestHelper.newInstance(",
+        "            TestChecker.class, getClass())",
+        "        .addInputLines(\"A.java\", \"class A {}\")",
+        "        .addOutputLines(\"A.java\", \"class A { /* This is a change. */ }\")",
+        "        .doTest();",
+        "  }",
+        "}");
+
+    verifyGeneratedFileContent(
+        outputDirectory,
+        "WildcardImportAndFullyQualifiedReferenceTest",
+        BugPatternTestCases.create(
+            URI.create("file:///WildcardImportAndFullyQualifiedReferenceTest.java"),
+            "WildcardImportAndFullyQualifiedReferenceTest",
+            ImmutableList.of(
+                BugPatternTestCase.create(
+                    "WildcardImportAndFullyQualifiedReferenceTest.TestChecker",
+                    ImmutableList.of(
+                        IdentificationTestEntry.create(
+                            "A.java", "// BUG: Diagnostic contains:\nclass A {}\n"))),
+                BugPatternTestCase.create(
+                    "WildcardImportAndFullyQualifiedReferenceTest.TestChecker",
+                    ImmutableList.of(
+                        ReplacementTestEntry.create(
+                            "A.java", "class A {}\n", "class A { /* This is a change. */ }\n"))))));
+  }
+
   private static void verifyGeneratedFileContent(
       Path outputDirectory, String testClass, BugPatternTestCases expected) {
     assertThat(outputDirectory.resolve(String.format("bugpattern-test-%s.json", testClass)))
@@ -77,13 +77,14 @@ final class DocumentationGeneratorTaskListenerTest {
 
   @Test
   void excessArguments(@TempDir Path outputDirectory) {
-    String actualOutputDirectory = outputDirectory.toAbsolutePath() + " extra-arg";
+    String actualOutputDirectory =
+        outputDirectory.toAbsolutePath() + " -XoutputFormat=stream extra-arg";
     assertThatThrownBy(
             () ->
                 Compilation.compileWithDocumentationGenerator(
                     actualOutputDirectory, "A.java", "package pkg;"))
         .isInstanceOf(IllegalArgumentException.class)
-        .hasMessage("Precisely one path must be provided");
+        .hasMessage("Precisely one path and optionally an output format must be provided");
   }
 
   @Test
@@ -109,6 +110,52 @@ final class DocumentationGeneratorTaskListenerTest {
             """);
   }
 
+  @Test
+  void streamingExtraction(@TempDir Path outputDirectory) {
+    Compilation.compileWithDocumentationGenerator(
+        outputDirectory.toAbsolutePath() + " -XoutputFormat=stream",
+        "DocumentationGeneratorTaskListenerTestClass.java",
+        "class DocumentationGeneratorTaskListenerTestClass {}");
+
+    assertThat(outputDirectory.resolve("docs.ndjson"))
+        .content(UTF_8)
+        .isEqualTo(
+            """
+            {"identifier":"documentation-generator-task-listener-test",\
+            "className":"DocumentationGeneratorTaskListenerTestClass",\
+            "data":{"className":"DocumentationGeneratorTaskListenerTestClass",\
+            "path":["CLASS: DocumentationGeneratorTaskListenerTestClass","COMPILATION_UNIT"]}}
+            """);
+  }
+
+  @Test
+  void streamingExtractionReusesPreviousRecords(@TempDir Path outputDirectory) throws IOException {
+    String options = outputDirectory.toAbsolutePath() + " -XoutputFormat=stream";
+    Compilation.compileWithDocumentationGenerator(
+        options,
+        "DocumentationGeneratorTaskListenerTestClass.java",
+        "class DocumentationGeneratorTaskListenerTestClass {}");
+
+    /* Tamper with the index, such that any reused records are recognizable. */
+    Path index = outputDirectory.resolve("extraction-index.json");
+    Files.writeString(
+        index, Files.readString(index, UTF_8).replace("COMPILATION_UNIT", "REUSED"), UTF_8);
+
+    Compilation.compileWithDocumentationGenerator(
+        options,
+        "DocumentationGeneratorTaskListenerTestClass.java",
+        "class DocumentationGeneratorTaskListenerTestClass {}");
+    assertThat(outputDirectory.resolve("docs.ndjson")).content(UTF_8).contains("\"REUSED\"");
+
+    Compilation.compileWithDocumentationGenerator(
+        options,
+        "DocumentationGeneratorTaskListenerTestClass.java",
+        "final class DocumentationGeneratorTaskListenerTestClass {}");
+    assertThat(outputDirectory.resolve("docs.ndjson"))
+        .content(UTF_8)
+        .contains("\"COMPILATION_UNIT\"");
+  }
+
   @Immutable
   @AutoService(Extractor.class)
   @SuppressWarnings("rawtypes" /* See https://github.com/google/auto/issues/870. */)
@@ -118,10 +165,16 @@ final class DocumentationGeneratorTaskListenerTest {
       return "documentation-generator-task-listener-test";
     }
 
+    @Override
+    public boolean isApplicable(ClassTree tree, VisitorState state) {
+      return tree.getSimpleName()
+          .toString()
+          .contains(DocumentationGeneratorTaskListenerTest.class.getSimpleName());
+    }
+
     @Override
     public Optional<ExtractionParameters> tryExtract(ClassTree tree, VisitorState state) {
       return Optional.of(tree.getSimpleName().toString())
-          .filter(n -> n.contains(DocumentationGeneratorTaskListenerTest.class.getSimpleName()))
           .map(
               className ->
                   new AutoValue_DocumentationGeneratorTaskListenerTest_ExtractionParameters(
@@ -3,12 +3,15 @@ package tech.picnic.errorprone.documentation;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static tech.picnic.errorprone.documentation.DocumentationGenerator.OUTPUT_DIRECTORY_FLAG;
+import static tech.picnic.errorprone.documentation.DocumentationGenerator.OUTPUT_FORMAT_FLAG;
 
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.Locale;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import tech.picnic.errorprone.documentation.DocumentationGenerator.OutputFormat;
 
 final class DocumentationGeneratorTest {
   @ParameterizedTest
@@ -26,6 +29,29 @@ final class DocumentationGeneratorTest {
         .hasMessage("'%s' must be of the form '%s=<value>'", pathArg, OUTPUT_DIRECTORY_FLAG);
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"files", "stream", "STREAM"})
+  void getOutputFormat(String format) {
+    assertThat(DocumentationGenerator.getOutputFormat(OUTPUT_FORMAT_FLAG + '=' + format))
+        .isEqualTo(OutputFormat.valueOf(format.toUpperCase(Locale.ROOT)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "-XoutputFormat", "stream", "-XoutputDirectory=stream"})
+  void getOutputFormatWithInvalidArgument(String formatArg) {
+    assertThatThrownBy(() -> DocumentationGenerator.getOutputFormat(formatArg))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'%s' must be of the form '%s=<value>'", formatArg, OUTPUT_FORMAT_FLAG);
+  }
+
+  @Test
+  void getOutputFormatWithInvalidFormat() {
+    assertThatThrownBy(() -> DocumentationGenerator.getOutputFormat(OUTPUT_FORMAT_FLAG + "=xml"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid output format 'xml'");
+  }
+
   @Test
   void getOutputPathWithInvalidPath() {
     String basePath = "path-with-null-char-\0";
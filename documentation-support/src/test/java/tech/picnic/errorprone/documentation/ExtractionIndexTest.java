@@ -0,0 +1,41 @@
+package tech.picnic.errorprone.documentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class ExtractionIndexTest {
+  @Test
+  void emptyIndex(@TempDir Path directory) {
+    assertThat(ExtractionIndex.load(directory).getRecords("foo", "digest")).isEmpty();
+    assertThat(directory).isEmptyDirectory();
+  }
+
+  @Test
+  void roundTrip(@TempDir Path directory) {
+    ExtractionIndex index = ExtractionIndex.load(directory);
+    index.putRecords("foo", "digest-1", ImmutableList.of("{\"a\":1}", "{\"b\":2}"));
+    index.putRecords("bar", "digest-2", ImmutableList.of());
+    index.store();
+
+    ExtractionIndex reloaded = ExtractionIndex.load(directory);
+    assertThat(reloaded.getRecords("foo", "digest-1"))
+        .hasValue(ImmutableList.of("{\"a\":1}", "{\"b\":2}"));
+    assertThat(reloaded.getRecords("foo", "digest-2")).isEmpty();
+    assertThat(reloaded.getRecords("bar", "digest-2")).hasValue(ImmutableList.of());
+    assertThat(reloaded.getRecords("baz", "digest-1")).isEmpty();
+  }
+
+  @Test
+  void overwrite(@TempDir Path directory) {
+    ExtractionIndex index = ExtractionIndex.load(directory);
+    index.putRecords("foo", "digest-1", ImmutableList.of("{\"a\":1}"));
+    index.putRecords("foo", "digest-2", ImmutableList.of("{\"a\":2}"));
+
+    assertThat(index.getRecords("foo", "digest-1")).isEmpty();
+    assertThat(index.getRecords("foo", "digest-2")).hasValue(ImmutableList.of("{\"a\":2}"));
+  }
+}
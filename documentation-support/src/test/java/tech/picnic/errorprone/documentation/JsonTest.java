@@ -35,6 +35,11 @@ final class JsonTest {
         .hasCauseInstanceOf(FileNotFoundException.class);
   }
 
+  @Test
+  void toJson() {
+    assertThat(Json.toJson(TEST_OBJECT)).isEqualTo(TEST_JSON);
+  }
+
   @Test
   void read(@TempDir Path directory) throws IOException {
     Path file = directory.resolve("test.json");
@@ -0,0 +1,489 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import static com.google.errorprone.BugPattern.LinkType.CUSTOM;
+import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
+import static com.google.errorprone.BugPattern.StandardTags.PERFORMANCE;
+import static com.google.errorprone.matchers.Description.NO_MATCH;
+import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
+import static com.google.errorprone.matchers.method.MethodMatchers.staticMethod;
+import static tech.picnic.errorprone.utils.Documentation.BUG_PATTERNS_BASE_URL;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.annotations.Var;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.fixes.SuggestedFixes;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.matchers.Matcher;
+import com.google.errorprone.suppliers.Supplier;
+import com.google.errorprone.suppliers.Suppliers;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree.JCLambda;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A {@link BugChecker} that flags {@link Stream} pipelines over boxed numbers that can instead be
+ * expressed in terms of an {@link IntStream}, {@link LongStream} or {@link DoubleStream}.
+ *
+ * <p>Starting from a terminal operation on a {@code Stream<Integer>}, {@code Stream<Long>} or
+ * {@code Stream<Double>}, this check walks the pipeline back to the earliest point from which all
+ * operations can be performed on the associated primitive stream. There, elements are converted
+ * to their primitive form: a boxing {@link Stream#map} invocation becomes e.g. {@link
+ * Stream#mapToInt}, a redundant {@link IntStream#boxed()} invocation is dropped, and in other cases
+ * an explicit unboxing operation is introduced. The pipeline is only flagged if this avoids the
+ * boxing of intermediate values or the comparison of boxed values.
+ *
+ * <p>NB: The suggested pipeline throws a {@link NullPointerException} if it encounters a {@code
+ * null} element, while in some cases the original pipeline does not.
+ */
+// XXX: Also support `Stream#mapToObj`-based boxing points and `min`/`max` terminal operations. The
+// latter return a primitive `Optional` variant, so usages of the result may need to be updated as
+// well.
+@AutoService(BugChecker.class)
+@BugPattern(
+    summary = "Prefer primitive streams over streams of boxed numbers",
+    link = BUG_PATTERNS_BASE_URL + "BoxedStreamPipeline",
+    linkType = CUSTOM,
+    severity = SUGGESTION,
+    tags = PERFORMANCE)
+public final class BoxedStreamPipeline extends BugChecker implements MethodInvocationTreeMatcher {
+  private static final long serialVersionUID = 1L;
+  private static final Supplier<Type> STREAM =
+      Suppliers.typeFromString(Stream.class.getCanonicalName());
+  private static final Matcher<ExpressionTree> STREAM_OPERATION =
+      instanceMethod().onDescendantOf(STREAM);
+  private static final Matcher<ExpressionTree> TERMINAL_OPERATION =
+      instanceMethod()
+          .onDescendantOf(STREAM)
+          .namedAnyOf(
+              "allMatch",
+              "anyMatch",
+              "collect",
+              "count",
+              "forEach",
+              "forEachOrdered",
+              "noneMatch",
+              "reduce",
+              "toArray",
+              "toList");
+  private static final Matcher<ExpressionTree> MAP =
+      instanceMethod().onDescendantOf(STREAM).named("map");
+  private static final Matcher<ExpressionTree> BOXED =
+      instanceMethod()
+          .onDescendantOfAny(
+              IntStream.class.getCanonicalName(),
+              LongStream.class.getCanonicalName(),
+              DoubleStream.class.getCanonicalName())
+          .named("boxed");
+  private static final Matcher<ExpressionTree> SUMMING_COLLECTOR =
+      staticMethod()
+          .onClass(Collectors.class.getCanonicalName())
+          .namedAnyOf("summingDouble", "summingInt", "summingLong");
+  private static final ImmutableSet<Tree.Kind> PRIMITIVE_UNARY_OPERATORS =
+      ImmutableSet.of(Tree.Kind.BITWISE_COMPLEMENT, Tree.Kind.UNARY_MINUS, Tree.Kind.UNARY_PLUS);
+
+  /** Instantiates a new {@link BoxedStreamPipeline} instance. */
+  public BoxedStreamPipeline() {}
+
+  @Override
+  public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
+    if (!TERMINAL_OPERATION.matches(tree, state)) {
+      return NO_MATCH;
+    }
+
+    ExpressionTree receiver = ASTHelpers.getReceiver(tree);
+    if (receiver == null) {
+      return NO_MATCH;
+    }
+
+    return getElementType(ASTHelpers.getType(receiver), state)
+        .flatMap(elementType -> suggestPrimitiveStream(tree, receiver, elementType, state))
+        .map(fix -> describeMatch(tree, fix))
+        .orElse(NO_MATCH);
+  }
+
+  private static Optional<SuggestedFix> suggestPrimitiveStream(
+      MethodInvocationTree terminalOperation,
+      ExpressionTree receiver,
+      NumericType elementType,
+      VisitorState state) {
+    SuggestedFix.Builder fix = SuggestedFix.builder();
+
+    /* Determine whether and how the terminal operation can be performed on a primitive stream. */
+    @Var boolean avoidsBoxing;
+    boolean requiresBoxing;
+    switch (ASTHelpers.getSymbol(terminalOperation).getSimpleName().toString()) {
+      case "reduce" -> {
+        if (terminalOperation.getArguments().size() != 2
+            || !isPrimitiveOperator(terminalOperation.getArguments().get(1), elementType, state)
+            || !isPrimitiveResultCompatible(elementType, state)) {
+          return Optional.empty();
+        }
+        avoidsBoxing = true;
+        requiresBoxing = false;
+      }
+      case "count" -> {
+        avoidsBoxing = false;
+        requiresBoxing = false;
+      }
+      case "allMatch", "anyMatch", "noneMatch" -> {
+        if (!isPrimitiveCompatibleLambda(terminalOperation.getArguments().get(0), state)) {
+          return Optional.empty();
+        }
+        avoidsBoxing = false;
+        requiresBoxing = false;
+      }
+      default -> {
+        avoidsBoxing = isPrimitiveSum(terminalOperation, elementType, state);
+        requiresBoxing = !avoidsBoxing;
+        if (avoidsBoxing) {
+          fix.replace(
+              state.getEndPosition(receiver), state.getEndPosition(terminalOperation), ".sum()");
+        } else {
+          fix.postfixWith(receiver, ".boxed()");
+        }
+      }
+    }
+
+    /* Find the earliest operation from which the pipeline can operate on primitive values. */
+    @Var boolean avoidsBoxedComparisons = false;
+    @Var
+    @Nullable ExpressionTree conversionPoint = receiver;
+    while (conversionPoint instanceof MethodInvocationTree invocation
+        && isPrimitiveCompatibleOperation(invocation, elementType, state)) {
+      String name = ASTHelpers.getSymbol(invocation).getSimpleName().toString();
+      avoidsBoxing |= name.equals("map");
+      avoidsBoxedComparisons |= name.equals("sorted");
+      conversionPoint = ASTHelpers.getReceiver(invocation);
+    }
+
+    if (conversionPoint == null) {
+      return Optional.empty();
+    }
+
+    avoidsBoxing |= convertToPrimitiveStream(conversionPoint, elementType, fix, state);
+
+    /*
+     * If the terminal operation requires boxed values, then the conversion is only worthwhile if
+     * this avoids boxed comparisons.
+     */
+    return (requiresBoxing ? avoidsBoxedComparisons : avoidsBoxing || avoidsBoxedComparisons)
+        ? Optional.of(fix.build())
+        : Optional.empty();
+  }
+
+  /**
+   * Converts the stream produced by the given expression into a primitive stream, and tells whether
+   * doing so avoids the boxing of values.
+   */
+  private static boolean convertToPrimitiveStream(
+      ExpressionTree expression,
+      NumericType elementType,
+      SuggestedFix.Builder fix,
+      VisitorState state) {
+    ExpressionTree receiver =
+        expression instanceof MethodInvocationTree invocation
+            ? ASTHelpers.getReceiver(invocation)
+            : null;
+
+    if (receiver != null
+        && BOXED.matches(expression, state)
+        && isPrimitiveStreamOf(receiver, elementType, state)) {
+      fix.replace(state.getEndPosition(receiver), state.getEndPosition(expression), "");
+      return true;
+    }
+
+    if (receiver != null
+        && MAP.matches(expression, state)
+        && getElementType(ASTHelpers.getType(receiver), state).isEmpty()) {
+      fix.merge(
+          SuggestedFixes.renameMethodInvocation(
+              (MethodInvocationTree) expression, "mapTo" + elementType.streamPrefix(), state));
+      return true;
+    }
+
+    fix.postfixWith(
+        expression,
+        String.format(
+            ".mapTo%s(%s::%sValue)",
+            elementType.streamPrefix(),
+            elementType.boxedType().getSimpleName(),
+            elementType.primitiveType()));
+    return false;
+  }
+
+  private static boolean isPrimitiveCompatibleOperation(
+      MethodInvocationTree invocation, NumericType elementType, VisitorState state) {
+    if (!STREAM_OPERATION.matches(invocation, state)) {
+      return false;
+    }
+
+    ExpressionTree receiver = ASTHelpers.getReceiver(invocation);
+    if (receiver == null
+        || !getElementType(ASTHelpers.getType(receiver), state).equals(Optional.of(elementType))) {
+      return false;
+    }
+
+    List<? extends ExpressionTree> arguments = invocation.getArguments();
+    return switch (ASTHelpers.getSymbol(invocation).getSimpleName().toString()) {
+      case "distinct", "sorted" -> arguments.isEmpty();
+      case "limit", "skip" -> true;
+      case "filter", "map", "peek" -> isPrimitiveCompatibleLambda(arguments.get(0), state);
+      default -> false;
+    };
+  }
+
+  /**
+   * Tells whether the given collector sums the elements of a stream of the given type, in which
+   * case it can be replaced with a primitive stream's {@code sum()} operation.
+   */
+  private static boolean isPrimitiveSum(
+      MethodInvocationTree terminalOperation, NumericType elementType, VisitorState state) {
+    if (!ASTHelpers.getSymbol(terminalOperation).getSimpleName().contentEquals("collect")
+        || terminalOperation.getArguments().size() != 1
+        || !(terminalOperation.getArguments().get(0) instanceof MethodInvocationTree collector)
+        || !SUMMING_COLLECTOR.matches(collector, state)
+        || !ASTHelpers.getSymbol(collector)
+            .getSimpleName()
+            .contentEquals("summing" + elementType.streamPrefix())
+        || !isPrimitiveResultCompatible(elementType, state)) {
+      return false;
+    }
+
+    ExpressionTree mapper = collector.getArguments().get(0);
+    if (mapper instanceof LambdaExpressionTree lambda) {
+      return lambda.getParameters().size() == 1
+          && lambda.getBody() instanceof IdentifierTree identifier
+          && ASTHelpers.getSymbol(lambda.getParameters().get(0))
+              .equals(ASTHelpers.getSymbol(identifier));
+    }
+
+    if (!(mapper instanceof MemberReferenceTree memberReference)) {
+      return false;
+    }
+
+    MethodSymbol method = ASTHelpers.getSymbol(memberReference);
+    return !method.isStatic()
+        && method.getSimpleName().contentEquals(elementType.primitiveType() + "Value");
+  }
+
+  /**
+   * Tells whether the result of the current terminal operation can be changed from a boxed number
+   * to its primitive counterpart.
+   *
+   * <p>This is the case only if the result is assigned to, or returned as, a primitive type to
+   * which the primitive result can be assigned. In other contexts, such as method arguments,
+   * conditional expressions and {@code var} declarations, the change may affect overload resolution
+   * or the type of the enclosing expression.
+   */
+  private static boolean isPrimitiveResultCompatible(NumericType elementType, VisitorState state) {
+    Type targetType = getTargetType(state);
+    Type resultType = state.getTypeFromString(elementType.primitiveType());
+    return targetType != null
+        && resultType != null
+        && targetType.isPrimitive()
+        && state.getTypes().isAssignable(resultType, targetType);
+  }
+
+  /**
+   * Returns the type of the variable to which the current expression is assigned, or the return
+   * type of the method from which it is returned, if any.
+   */
+  private static @Nullable Type getTargetType(VisitorState state) {
+    Tree expression = state.getPath().getLeaf();
+    Tree parent = state.getPath().getParentPath().getLeaf();
+    if (parent instanceof VariableTree variable && variable.getInitializer() == expression) {
+      return ASTHelpers.getType(variable);
+    }
+
+    if (parent instanceof AssignmentTree assignment && assignment.getExpression() == expression) {
+      return ASTHelpers.getType(assignment.getVariable());
+    }
+
+    if (parent instanceof ReturnTree
+        && state.findEnclosing(LambdaExpressionTree.class, MethodTree.class)
+            instanceof MethodTree method) {
+      return ASTHelpers.getSymbol(method).getReturnType();
+    }
+
+    return null;
+  }
+
+  private static boolean isPrimitiveOperator(
+      ExpressionTree operator, NumericType elementType, VisitorState state) {
+    if (operator instanceof MemberReferenceTree memberReference) {
+      MethodSymbol method = ASTHelpers.getSymbol(memberReference);
+      return method.isStatic()
+          && method.getParameters().size() == 2
+          && method.getParameters().stream()
+              .allMatch(param -> param.asType().getTag() == elementType.typeTag())
+          && method.getReturnType().getTag() == elementType.typeTag();
+    }
+
+    return isPrimitiveCompatibleLambda(operator, state);
+  }
+
+  /**
+   * Tells whether the given expression is a lambda expression with implicitly typed parameters that
+   * are only used in contexts in which substituting a boxed number for its primitive counterpart
+   * does not change the program's semantics.
+   */
+  private static boolean isPrimitiveCompatibleLambda(
+      ExpressionTree expression, VisitorState state) {
+    if (!(expression instanceof JCLambda lambda)
+        || lambda.paramKind != JCLambda.ParameterKind.IMPLICIT) {
+      return false;
+    }
+
+    ImmutableSet<Symbol> parameters =
+        lambda.getParameters().stream()
+            .map(ASTHelpers::getSymbol)
+            .collect(ImmutableSet.toImmutableSet());
+
+    return !Boolean.FALSE.equals(
+        new TreeScanner<@Nullable Boolean, @Nullable Tree>() {
+          @Override
+          public @Nullable Boolean scan(Tree tree, @Nullable Tree parent) {
+            if (tree instanceof IdentifierTree && parameters.contains(ASTHelpers.getSymbol(tree))) {
+              return isPrimitiveCompatibleUsage(tree, parent, state);
+            }
+
+            /* Pass the current tree as the parent of the trees scanned next. */
+            return super.scan(tree, tree);
+          }
+
+          @Override
+          public @Nullable Boolean reduce(@Nullable Boolean r1, @Nullable Boolean r2) {
+            return !Boolean.FALSE.equals(r1) && !Boolean.FALSE.equals(r2);
+          }
+        }.scan(lambda.getBody(), lambda));
+  }
+
+  private static boolean isPrimitiveCompatibleUsage(
+      Tree usage, @Nullable Tree parent, VisitorState state) {
+    if (parent instanceof LambdaExpressionTree || parent instanceof ReturnTree) {
+      return true;
+    }
+
+    if (parent instanceof UnaryTree) {
+      return PRIMITIVE_UNARY_OPERATORS.contains(parent.getKind());
+    }
+
+    if (parent instanceof BinaryTree binary) {
+      /* Reference comparisons of boxed numbers don't have primitive counterparts. */
+      ExpressionTree other =
+          binary.getLeftOperand() == usage ? binary.getRightOperand() : binary.getLeftOperand();
+      Type otherType = ASTHelpers.getType(other);
+      return (binary.getKind() != Tree.Kind.EQUAL_TO && binary.getKind() != Tree.Kind.NOT_EQUAL_TO)
+          || (otherType != null && otherType.isPrimitive());
+    }
+
+    if (parent instanceof ArrayAccessTree arrayAccess) {
+      return arrayAccess.getIndex() == usage;
+    }
+
+    return parent instanceof TypeCastTree typeCast
+        && typeCast.getType().getKind() == Tree.Kind.PRIMITIVE_TYPE;
+  }
+
+  private static boolean isPrimitiveStreamOf(
+      ExpressionTree expression, NumericType elementType, VisitorState state) {
+    Type type = ASTHelpers.getType(expression);
+    Type primitiveStreamType =
+        state.getTypeFromString(elementType.primitiveStreamType().getCanonicalName());
+    return type != null
+        && primitiveStreamType != null
+        && ASTHelpers.isSubtype(type, primitiveStreamType, state);
+  }
+
+  private static Optional<NumericType> getElementType(@Nullable Type type, VisitorState state) {
+    Types types = state.getTypes();
+    Type streamType = type == null ? null : types.asSuper(type, STREAM.get(state).tsym);
+    if (streamType == null || streamType.getTypeArguments().size() != 1) {
+      return Optional.empty();
+    }
+
+    Type elementType = types.wildUpperBound(streamType.getTypeArguments().get(0));
+    return NumericType.forTypeTag(types.unboxedType(elementType).getTag());
+  }
+
+  /** The boxed element types of streams that have a primitive stream counterpart. */
+  private enum NumericType {
+    DOUBLE(TypeTag.DOUBLE, Double.class, DoubleStream.class),
+    INT(TypeTag.INT, Integer.class, IntStream.class),
+    LONG(TypeTag.LONG, Long.class, LongStream.class);
+
+    private final TypeTag typeTag;
+    private final Class<?> boxedType;
+    private final Class<?> primitiveStreamType;
+
+    NumericType(TypeTag typeTag, Class<?> boxedType, Class<?> primitiveStreamType) {
+      this.typeTag = typeTag;
+      this.boxedType = boxedType;
+      this.primitiveStreamType = primitiveStreamType;
+    }
+
+    TypeTag typeTag() {
+      return typeTag;
+    }
+
+    Class<?> boxedType() {
+      return boxedType;
+    }
+
+    Class<?> primitiveStreamType() {
+      return primitiveStreamType;
+    }
+
+    /** Returns the name of the primitive type, such as {@code int}. */
+    String primitiveType() {
+      return typeTag.name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Returns the prefix of the associated primitive stream type, such as {@code Int}. */
+    String streamPrefix() {
+      return primitiveStreamType.getSimpleName().replace("Stream", "");
+    }
+
+    static Optional<NumericType> forTypeTag(TypeTag typeTag) {
+      for (NumericType type : values()) {
+        if (type.typeTag == typeTag) {
+          return Optional.of(type);
+        }
+      }
+      return Optional.empty();
+    }
+  }
+}
@@ -5,6 +5,8 @@ import static com.google.errorprone.BugPattern.SeverityLevel.WARNING;
 import static com.google.errorprone.BugPattern.StandardTags.PERFORMANCE;
 import static com.google.errorprone.BugPattern.StandardTags.SIMPLIFICATION;
 import static com.google.errorprone.matchers.Matchers.anyOf;
+import static com.google.errorprone.matchers.Matchers.isPrimitiveOrBoxedPrimitiveType;
+import static com.google.errorprone.matchers.Matchers.isSameType;
 import static com.google.errorprone.matchers.Matchers.isSubtypeOf;
 import static com.google.errorprone.matchers.Matchers.staticMethod;
 import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
@@ -18,6 +20,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Verify;
 import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.annotations.Var;
@@ -27,19 +30,39 @@ import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.matchers.Matcher;
 import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.tree.Tree.Kind;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.VarSymbol;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 import java.util.Collections;
 import java.util.Formattable;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
 import tech.picnic.errorprone.utils.SourceCode;
 
 /**
@@ -52,9 +75,9 @@ import tech.picnic.errorprone.utils.SourceCode;
 // `RedundantStringConversion` checks. Look into deduplicating them.
 // XXX: Should we also simplify e.g. `LOG.error(String.join("sep", arg1, arg2), throwable)`? Perhaps
 // that's too obscure.
-// XXX: This check currently only flags string format expressions that are a direct argument to
-// another format-capable method invocation. Indirect cases, such as where the result is assigned to
-// a variable, are currently not covered.
+// XXX: String format expressions assigned to a local variable are only flagged if all usages of
+// said variable are format-capable method invocation arguments. Consider also flagging cases in
+// which the variable is additionally used elsewhere, but only on some code paths.
 @AutoService(BugChecker.class)
 @BugPattern(
     summary = "String formatting can be deferred",
@@ -68,6 +91,21 @@ public final class EagerStringFormatting extends BugChecker implements MethodInv
   private static final Matcher<ExpressionTree> LOCALE = isSubtypeOf(Locale.class);
   private static final Matcher<ExpressionTree> SLF4J_MARKER = isSubtypeOf("org.slf4j.Marker");
   private static final Matcher<ExpressionTree> THROWABLE = isSubtypeOf(Throwable.class);
+  private static final Matcher<Tree> KNOWN_IMMUTABLE_TYPE =
+      anyOf(
+          isPrimitiveOrBoxedPrimitiveType(),
+          isSubtypeOf(Enum.class),
+          isSameType(String.class),
+          isSameType(BigDecimal.class),
+          isSameType(BigInteger.class),
+          isSameType(UUID.class),
+          isSameType(Duration.class),
+          isSameType(Instant.class),
+          isSameType(LocalDate.class),
+          isSameType(LocalDateTime.class),
+          isSameType(LocalTime.class),
+          isSameType(OffsetDateTime.class),
+          isSameType(ZonedDateTime.class));
   private static final Matcher<ExpressionTree> REQUIRE_NON_NULL_INVOCATION =
       staticMethod().onClass(Objects.class.getCanonicalName()).named("requireNonNull");
   private static final Matcher<ExpressionTree> GUAVA_GUARD_INVOCATION =
@@ -88,6 +126,13 @@ public final class EagerStringFormatting extends BugChecker implements MethodInv
       instanceMethod().onDescendantOf(String.class.getCanonicalName()).named("formatted");
   private static final String MESSAGE_NEVER_NULL_ARGUMENT =
       "String formatting never yields `null` expression";
+  private static final ImmutableSet<Kind> REPEATING_OR_DEFERRING_TREE_KINDS =
+      ImmutableSet.of(
+          Kind.DO_WHILE_LOOP,
+          Kind.ENHANCED_FOR_LOOP,
+          Kind.FOR_LOOP,
+          Kind.LAMBDA_EXPRESSION,
+          Kind.WHILE_LOOP);
 
   /** Instantiates a new {@link EagerStringFormatting} instance. */
   public EagerStringFormatting() {}
@@ -95,10 +140,14 @@ public final class EagerStringFormatting extends BugChecker implements MethodInv
   @Override
   public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
     Tree parent = state.getPath().getParentPath().getLeaf();
+    if (parent instanceof VariableTree variable) {
+      return analyzeLocalVariableContext(tree, variable, state);
+    }
+
     if (!(parent instanceof MethodInvocationTree methodInvocation)) {
       /*
        * Fast path: this isn't a method invocation whose result is an argument to another method
-       * invocation.
+       * invocation, or the initializer of a variable.
        */
       // XXX: This logic assumes that the string format operation isn't redundantly wrapped in
       // parentheses. Similar assumptions likely exist throughout the code base. Investigate how to
@@ -199,6 +248,184 @@ public final class EagerStringFormatting extends BugChecker implements MethodInv
     return describeMatch(context, stringFormat.suggestFlattening("{}", state));
   }
 
+  private Description analyzeLocalVariableContext(
+      MethodInvocationTree tree, VariableTree variable, VisitorState state) {
+    VarSymbol symbol = ASTHelpers.getSymbol(variable);
+    TreePath scope = state.getPath().getParentPath().getParentPath();
+    if (!(symbol.owner instanceof MethodSymbol)
+        || !ASTHelpers.isConsideredFinal(symbol)
+        || !(scope.getLeaf() instanceof BlockTree)) {
+      /*
+       * Fast path: the string format result is not assigned to a local variable, or the variable
+       * may be reassigned.
+       */
+      return Description.NO_MATCH;
+    }
+
+    return StringFormatExpression.tryCreate(tree, state)
+        .map(expr -> analyzeLocalVariableUsages(expr, symbol, variable, scope, state))
+        .orElse(Description.NO_MATCH);
+  }
+
+  private Description analyzeLocalVariableUsages(
+      StringFormatExpression stringFormat,
+      VarSymbol symbol,
+      VariableTree variable,
+      TreePath scope,
+      VisitorState state) {
+    ImmutableList<TreePath> usages = findUsages(symbol, scope);
+    if (usages.isEmpty()
+        || !usages.stream().allMatch(usage -> isDeferrableUsage(usage, scope.getLeaf(), state))) {
+      /*
+       * The string format result is (also) used in a context that does not admit of deferred
+       * formatting.
+       */
+      return Description.NO_MATCH;
+    }
+
+    /*
+     * Moving the string format expression to its usages is behavior preserving only if the values
+     * it depends on cannot change in the meantime.
+     */
+    boolean hasStableInputs =
+        Stream.concat(
+                Stream.of(stringFormat.formatString()),
+                stringFormat.expression().getArguments().stream())
+            .allMatch(arg -> isStable(arg, state));
+
+    SuggestedFix.Builder fix =
+        SuggestedFix.builder().merge(SourceCode.deleteWithTrailingWhitespace(variable, state));
+    for (TreePath usage : usages) {
+      Optional<SuggestedFix> deferral =
+          hasStableInputs
+              ? suggestDeferral(
+                  stringFormat,
+                  (ExpressionTree) usage.getLeaf(),
+                  (MethodInvocationTree) usage.getParentPath().getLeaf(),
+                  state)
+              : Optional.empty();
+      if (deferral.isEmpty()) {
+        return buildDescription(stringFormat.expression())
+            .setMessage(
+                message() + " (but this requires moving it to where the formatted string is used)")
+            .build();
+      }
+      fix.merge(deferral.orElseThrow());
+    }
+
+    return describeMatch(stringFormat.expression(), fix.build());
+  }
+
+  private static ImmutableList<TreePath> findUsages(Symbol symbol, TreePath scope) {
+    ImmutableList.Builder<TreePath> usages = ImmutableList.builder();
+    new TreePathScanner<@Nullable Void, @Nullable Void>() {
+      @Override
+      public @Nullable Void visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+        if (symbol.equals(ASTHelpers.getSymbol(node))) {
+          usages.add(getCurrentPath());
+        }
+        return super.visitIdentifier(node, unused);
+      }
+    }.scan(scope, null);
+    return usages.build();
+  }
+
+  /**
+   * Tells whether the given variable usage is the message argument of a format-capable method
+   * invocation that is evaluated at most once per evaluation of the variable's declaration.
+   */
+  private static boolean isDeferrableUsage(TreePath usage, Tree scope, VisitorState state) {
+    if (!(usage.getParentPath().getLeaf() instanceof MethodInvocationTree context)
+        || !isMessageArgument((ExpressionTree) usage.getLeaf(), context, state)) {
+      return false;
+    }
+
+    for (TreePath path = usage.getParentPath();
+        !path.getLeaf().equals(scope);
+        path = path.getParentPath()) {
+      Tree tree = path.getLeaf();
+      if (REPEATING_OR_DEFERRING_TREE_KINDS.contains(tree.getKind()) || tree instanceof ClassTree) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean isMessageArgument(
+      ExpressionTree argument, MethodInvocationTree context, VisitorState state) {
+    List<? extends ExpressionTree> arguments = context.getArguments();
+    if (REQUIRE_NON_NULL_INVOCATION.matches(context, state)) {
+      return arguments.size() == 2 && arguments.get(1).equals(argument);
+    }
+
+    if (GUAVA_GUARD_INVOCATION.matches(context, state)) {
+      return arguments.size() >= 2 && arguments.get(1).equals(argument);
+    }
+
+    if (SLF4J_LOGGER_INVOCATION.matches(context, state)) {
+      int offset = SLF4J_MARKER.matches(arguments.get(0), state) ? 1 : 0;
+      return arguments.size() > offset && arguments.get(offset).equals(argument);
+    }
+
+    return false;
+  }
+
+  private static Optional<SuggestedFix> suggestDeferral(
+      StringFormatExpression stringFormat,
+      ExpressionTree usage,
+      MethodInvocationTree context,
+      VisitorState state) {
+    if (REQUIRE_NON_NULL_INVOCATION.matches(context, state)) {
+      return Optional.of(
+          SuggestedFix.replace(
+              usage, "() -> " + SourceCode.treeToString(stringFormat.expression(), state)));
+    }
+
+    if (stringFormat.simplifiableFormatString().isEmpty()) {
+      return Optional.empty();
+    }
+
+    List<? extends ExpressionTree> arguments = context.getArguments();
+    if (GUAVA_GUARD_INVOCATION.matches(context, state)) {
+      return arguments.size() == 2
+          ? Optional.of(SuggestedFix.replace(usage, stringFormat.flatten("%s", state)))
+          : Optional.empty();
+    }
+
+    int leftOffset = SLF4J_MARKER.matches(arguments.get(0), state) ? 1 : 0;
+    int rightOffset = THROWABLE.matches(arguments.get(arguments.size() - 1), state) ? 1 : 0;
+    return arguments.size() == leftOffset + 1 + rightOffset
+        ? Optional.of(SuggestedFix.replace(usage, stringFormat.flatten("{}", state)))
+        : Optional.empty();
+  }
+
+  /**
+   * Tells whether the given expression is a compile-time constant, or a reference to a final or
+   * effectively final variable of a type whose instances are known to be immutable.
+   *
+   * <p>The latter restriction ensures that the formatted string does not change if the variable
+   * references e.g. a {@link StringBuilder} or {@link List} that is modified before the formatted
+   * string is used.
+   */
+  private static boolean isStable(Tree tree, VisitorState state) {
+    return ASTHelpers.constValue(tree) != null
+        || (KNOWN_IMMUTABLE_TYPE.matches(tree, state) && isFinalReference(tree));
+  }
+
+  /** Tells whether the given expression is a reference to a final or effectively final variable. */
+  private static boolean isFinalReference(Tree tree) {
+    if (!(ASTHelpers.getSymbol(tree) instanceof VarSymbol symbol)
+        || !ASTHelpers.isConsideredFinal(symbol)) {
+      return false;
+    }
+
+    return tree instanceof IdentifierTree
+        || (tree instanceof MemberSelectTree memberSelect
+            && (ASTHelpers.getSymbol(memberSelect.getExpression()) instanceof ClassSymbol
+                || isFinalReference(memberSelect.getExpression())));
+  }
+
   private static boolean isNonFinalLocalVariable(Tree tree) {
     Symbol symbol = ASTHelpers.getSymbol(tree);
     return symbol instanceof VarSymbol
@@ -233,12 +460,14 @@ public final class EagerStringFormatting extends BugChecker implements MethodInv
     abstract Optional<String> simplifiableFormatString();
 
     private SuggestedFix suggestFlattening(String newPlaceholder, VisitorState state) {
-      return SuggestedFix.replace(
-          expression(),
-          Stream.concat(
-                  Stream.of(deriveFormatStringExpression(newPlaceholder, state)),
-                  arguments().stream().map(arg -> SourceCode.treeToString(arg, state)))
-              .collect(joining(", ")));
+      return SuggestedFix.replace(expression(), flatten(newPlaceholder, state));
+    }
+
+    private String flatten(String newPlaceholder, VisitorState state) {
+      return Stream.concat(
+              Stream.of(deriveFormatStringExpression(newPlaceholder, state)),
+              arguments().stream().map(arg -> SourceCode.treeToString(arg, state)))
+          .collect(joining(", "));
     }
 
     private String deriveFormatStringExpression(String newPlaceholder, VisitorState state) {
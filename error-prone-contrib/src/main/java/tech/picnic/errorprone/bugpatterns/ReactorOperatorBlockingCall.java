@@ -0,0 +1,278 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import static com.google.errorprone.BugPattern.LinkType.CUSTOM;
+import static com.google.errorprone.BugPattern.SeverityLevel.WARNING;
+import static com.google.errorprone.BugPattern.StandardTags.CONCURRENCY;
+import static com.google.errorprone.BugPattern.StandardTags.PERFORMANCE;
+import static com.google.errorprone.matchers.Description.NO_MATCH;
+import static com.google.errorprone.matchers.Matchers.anyOf;
+import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
+import static com.google.errorprone.matchers.method.MethodMatchers.staticMethod;
+import static tech.picnic.errorprone.utils.Documentation.BUG_PATTERNS_BASE_URL;
+
+import com.google.auto.service.AutoService;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.ErrorProneFlags;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.fixes.SuggestedFixes;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.matchers.Matcher;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.utils.Flags;
+import tech.picnic.errorprone.utils.MethodMatcherFactory;
+import tech.picnic.errorprone.utils.SourceCode;
+
+/**
+ * A {@link BugChecker} that flags blocking method invocations inside lambda expressions and method
+ * references passed to {@link reactor.core.publisher.Flux} and {@link reactor.core.publisher.Mono}
+ * operators.
+ *
+ * <p>Such operators are generally invoked on the thread that emits the associated signal, which is
+ * often a non-blocking thread shared with many other pipelines. Blocking such a thread stalls all
+ * of them. Where possible, blocking work should be wrapped in a {@link
+ * reactor.core.publisher.Mono#fromCallable(java.util.concurrent.Callable)} and subscribed to on a
+ * scheduler that supports blocking tasks, such as {@link
+ * reactor.core.scheduler.Schedulers#boundedElastic()}.
+ *
+ * <p>Besides a set of well-known blocking methods, this check flags the methods specified using the
+ * {@code ReactorOperatorBlockingCall:ExtraBlockingMethods} flag.
+ *
+ * <p>NB: If the lambda expression passed to a {@code map} operator yields {@code null}, then the
+ * suggested replacement completes empty, while the original operator signals a {@link
+ * NullPointerException}.
+ */
+// XXX: Operators that are known to be invoked on a thread that supports blocking, such as those
+// following a `publishOn(Schedulers.boundedElastic())` operator, are flagged as well. Consider
+// tracking the scheduler on which each operator is invoked.
+// XXX: Blocking method invocations inside methods invoked from an operator's lambda expression are
+// not flagged.
+@AutoService(BugChecker.class)
+@BugPattern(
+    summary = "Avoid blocking method invocations inside Reactor operators",
+    link = BUG_PATTERNS_BASE_URL + "ReactorOperatorBlockingCall",
+    linkType = CUSTOM,
+    severity = WARNING,
+    tags = {CONCURRENCY, PERFORMANCE})
+public final class ReactorOperatorBlockingCall extends BugChecker
+    implements MethodInvocationTreeMatcher {
+  private static final long serialVersionUID = 1L;
+  private static final String EXTRA_BLOCKING_METHODS_FLAG =
+      "ReactorOperatorBlockingCall:ExtraBlockingMethods";
+  private static final String FLUX = "reactor.core.publisher.Flux";
+  private static final String MONO = "reactor.core.publisher.Mono";
+  private static final Matcher<ExpressionTree> REACTOR_OPERATOR =
+      instanceMethod().onDescendantOfAny(FLUX, MONO);
+  private static final Matcher<ExpressionTree> WELL_KNOWN_BLOCKING_METHODS =
+      anyOf(
+          staticMethod().onClass(Thread.class.getCanonicalName()).named("sleep"),
+          instanceMethod()
+              .onDescendantOfAny(FLUX, MONO)
+              .namedAnyOf("block", "blockFirst", "blockLast", "blockOptional"),
+          instanceMethod().onDescendantOf(Future.class.getCanonicalName()).named("get"),
+          instanceMethod().onDescendantOf(CompletableFuture.class.getCanonicalName()).named("join"),
+          instanceMethod().onDescendantOf(CountDownLatch.class.getCanonicalName()).named("await"),
+          instanceMethod().onDescendantOf(Semaphore.class.getCanonicalName()).named("acquire"),
+          instanceMethod()
+              .onDescendantOf(BlockingQueue.class.getCanonicalName())
+              .namedAnyOf("put", "take"),
+          instanceMethod()
+              .onDescendantOf(Connection.class.getCanonicalName())
+              .namedAnyOf(
+                  "close",
+                  "commit",
+                  "isValid",
+                  "prepareCall",
+                  "prepareStatement",
+                  "releaseSavepoint",
+                  "rollback",
+                  "setAutoCommit",
+                  "setSavepoint",
+                  "setTransactionIsolation"),
+          instanceMethod()
+              .onDescendantOf(Statement.class.getCanonicalName())
+              .namedAnyOf(
+                  "execute",
+                  "executeBatch",
+                  "executeLargeBatch",
+                  "executeLargeUpdate",
+                  "executeQuery",
+                  "executeUpdate",
+                  "getMoreResults"),
+          instanceMethod().onDescendantOf(ResultSet.class.getCanonicalName()).named("next"),
+          instanceMethod()
+              .onDescendantOf(DataSource.class.getCanonicalName())
+              .named("getConnection"),
+          staticMethod().onClass(Files.class.getCanonicalName()),
+          instanceMethod()
+              .onDescendantOfAny(
+                  InputStream.class.getCanonicalName(), Reader.class.getCanonicalName())
+              .namedAnyOf("read", "readAllBytes", "readNBytes", "transferTo"),
+          instanceMethod()
+              .onDescendantOf(BufferedReader.class.getCanonicalName())
+              .named("readLine"));
+
+  private final Matcher<ExpressionTree> blockingMethod;
+
+  /** Instantiates a default {@link ReactorOperatorBlockingCall} instance. */
+  public ReactorOperatorBlockingCall() {
+    this(ErrorProneFlags.empty());
+  }
+
+  /**
+   * Instantiates a customized {@link ReactorOperatorBlockingCall}.
+   *
+   * @param flags Any provided command line flags.
+   */
+  @Inject
+  ReactorOperatorBlockingCall(ErrorProneFlags flags) {
+    blockingMethod = createBlockingMethodMatcher(flags);
+  }
+
+  @Override
+  public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
+    if (!REACTOR_OPERATOR.matches(tree, state)) {
+      return NO_MATCH;
+    }
+
+    for (ExpressionTree argument : tree.getArguments()) {
+      if (argument instanceof MemberReferenceTree && blockingMethod.matches(argument, state)) {
+        state.reportMatch(describeMatch(argument));
+      } else if (argument instanceof LambdaExpressionTree lambdaExpression) {
+        findBlockingMethodInvocation(lambdaExpression.getBody(), state)
+            .ifPresent(
+                invocation -> {
+                  Description.Builder description = buildDescription(invocation);
+                  suggestOffloading(tree, lambdaExpression, state).ifPresent(description::addFix);
+                  state.reportMatch(description.build());
+                });
+      }
+    }
+
+    /* Any violations have been flagged against the offending operator arguments. */
+    return NO_MATCH;
+  }
+
+  /**
+   * Returns the first blocking method invocation that is evaluated as part of the given tree.
+   *
+   * <p>Code inside nested lambda expressions, method references and classes is not evaluated as
+   * part of the enclosing tree, and is thus not inspected.
+   */
+  private Optional<MethodInvocationTree> findBlockingMethodInvocation(
+      Tree tree, VisitorState state) {
+    return Optional.ofNullable(
+        new TreeScanner<@Nullable MethodInvocationTree, @Nullable Void>() {
+          @Override
+          public @Nullable MethodInvocationTree visitMethodInvocation(
+              MethodInvocationTree node, @Nullable Void unused) {
+            return blockingMethod.matches(node, state)
+                ? node
+                : super.visitMethodInvocation(node, unused);
+          }
+
+          @Override
+          public @Nullable MethodInvocationTree visitLambdaExpression(
+              LambdaExpressionTree node, @Nullable Void unused) {
+            return null;
+          }
+
+          @Override
+          public @Nullable MethodInvocationTree visitMemberReference(
+              MemberReferenceTree node, @Nullable Void unused) {
+            return null;
+          }
+
+          @Override
+          public @Nullable MethodInvocationTree visitClass(ClassTree node, @Nullable Void unused) {
+            return null;
+          }
+
+          @Override
+          public @Nullable MethodInvocationTree reduce(
+              @Nullable MethodInvocationTree r1, @Nullable MethodInvocationTree r2) {
+            return r1 != null ? r1 : r2;
+          }
+        }.scan(tree, null));
+  }
+
+  /**
+   * Suggests replacing the given operator with an asynchronous counterpart that performs the work
+   * of the given lambda expression on {@link reactor.core.scheduler.Schedulers#boundedElastic()}.
+   */
+  private static Optional<SuggestedFix> suggestOffloading(
+      MethodInvocationTree operator, LambdaExpressionTree lambdaExpression, VisitorState state) {
+    if (operator.getArguments().size() != 1 || lambdaExpression.getParameters().size() != 1) {
+      return Optional.empty();
+    }
+
+    boolean isFlux =
+        ASTHelpers.isSubtype(
+            ASTHelpers.getReceiverType(operator), state.getTypeFromString(FLUX), state);
+    String replacementOperator;
+    String factoryMethod;
+    switch (ASTHelpers.getSymbol(operator).getSimpleName().toString()) {
+      case "map" -> {
+        replacementOperator = isFlux ? "concatMap" : "flatMap";
+        factoryMethod = "fromCallable";
+      }
+      case "filter" -> {
+        replacementOperator = "filterWhen";
+        factoryMethod = "fromCallable";
+      }
+      case "doOnNext" -> {
+        replacementOperator = "delayUntil";
+        factoryMethod = "fromRunnable";
+      }
+      default -> {
+        return Optional.empty();
+      }
+    }
+
+    SuggestedFix.Builder fix = SuggestedFix.builder();
+    String mono = SuggestedFixes.qualifyType(state, fix, MONO);
+    String schedulers = SuggestedFixes.qualifyType(state, fix, "reactor.core.scheduler.Schedulers");
+    return Optional.of(
+        fix.merge(SuggestedFixes.renameMethodInvocation(operator, replacementOperator, state))
+            .replace(
+                lambdaExpression.getBody(),
+                String.format(
+                    "%s.%s(() -> %s).subscribeOn(%s.boundedElastic())",
+                    mono,
+                    factoryMethod,
+                    SourceCode.treeToString(lambdaExpression.getBody(), state),
+                    schedulers))
+            .build());
+  }
+
+  private static Matcher<ExpressionTree> createBlockingMethodMatcher(ErrorProneFlags flags) {
+    return anyOf(
+        WELL_KNOWN_BLOCKING_METHODS,
+        new MethodMatcherFactory().create(Flags.getSet(flags, EXTRA_BLOCKING_METHODS_FLAG)));
+  }
+}
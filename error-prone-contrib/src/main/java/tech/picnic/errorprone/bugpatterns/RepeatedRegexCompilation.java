@@ -0,0 +1,400 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.errorprone.BugPattern.LinkType.CUSTOM;
+import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
+import static com.google.errorprone.BugPattern.StandardTags.PERFORMANCE;
+import static com.google.errorprone.matchers.Description.NO_MATCH;
+import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
+import static com.google.errorprone.matchers.method.MethodMatchers.staticMethod;
+import static java.util.Objects.requireNonNull;
+import static tech.picnic.errorprone.utils.Documentation.BUG_PATTERNS_BASE_URL;
+
+import com.google.auto.service.AutoService;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.annotations.Var;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.ClassTreeMatcher;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.fixes.SuggestedFixes;
+import com.google.errorprone.fixes.SuggestedFixes.AdditionPosition;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.matchers.Matcher;
+import com.google.errorprone.util.ASTHelpers;
+import com.google.errorprone.util.FindIdentifiers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.utils.SourceCode;
+
+/**
+ * A {@link BugChecker} that flags method invocations that compile the same constant regular
+ * expression every time they are evaluated.
+ *
+ * <p>{@link String#matches(String)}, {@link String#replaceAll(String, String)}, {@link
+ * String#replaceFirst(String, String)}, {@link String#split(String)} and {@link
+ * Pattern#compile(String)} all compile the given regular expression on each invocation. When the
+ * regular expression is a compile-time constant, it is more efficient to compile it once, into a
+ * {@code private static final Pattern} field.
+ *
+ * <p>NB: {@link String#split(String)} does not compile simple single-character regular expressions,
+ * so such invocations are not flagged.
+ */
+// XXX: Regular expressions used inside field initializers and initializer blocks are not flagged.
+// XXX: Consider reusing existing `static final Pattern` fields that compile the same expression.
+@AutoService(BugChecker.class)
+@BugPattern(
+    summary = "Constant regular expressions should be compiled only once",
+    link = BUG_PATTERNS_BASE_URL + "RepeatedRegexCompilation",
+    linkType = CUSTOM,
+    severity = SUGGESTION,
+    tags = PERFORMANCE)
+public final class RepeatedRegexCompilation extends BugChecker implements ClassTreeMatcher {
+  private static final long serialVersionUID = 1L;
+  private static final Matcher<ExpressionTree> STRING_REGEX_METHOD =
+      instanceMethod()
+          .onExactClass(String.class.getCanonicalName())
+          .namedAnyOf("matches", "replaceAll", "replaceFirst", "split");
+  private static final Matcher<ExpressionTree> PATTERN_COMPILE =
+      staticMethod().onClass(Pattern.class.getCanonicalName()).named("compile");
+  private static final String SPLIT_FAST_PATH_EXCLUDED_CHARACTERS = ".$|()[{^?*+\\";
+
+  /** Instantiates a new {@link RepeatedRegexCompilation} instance. */
+  public RepeatedRegexCompilation() {}
+
+  @Override
+  public Description matchClass(ClassTree tree, VisitorState state) {
+    if (tree.getKind() != Tree.Kind.CLASS
+        && tree.getKind() != Tree.Kind.ENUM
+        && tree.getKind() != Tree.Kind.RECORD) {
+      /* Interfaces and annotation types cannot declare private fields. */
+      return NO_MATCH;
+    }
+
+    ImmutableList<RegexUsage> usages = findRegexUsages(tree, state);
+    if (usages.isEmpty()) {
+      return NO_MATCH;
+    }
+
+    SuggestedFix.Builder fix = SuggestedFix.builder();
+    String pattern = SuggestedFixes.qualifyType(state, fix, Pattern.class.getCanonicalName());
+    Set<String> fieldNames = new HashSet<>();
+    for (Tree member : tree.getMembers()) {
+      if (member instanceof VariableTree variable) {
+        fieldNames.add(variable.getName().toString());
+      }
+    }
+    for (RegexUsage usage : usages) {
+      fieldNames.addAll(usage.variablesInScope());
+    }
+
+    Map<String, String> fieldsByCompileArguments = new LinkedHashMap<>();
+    Map<MethodInvocationTree, String> fieldsByInvocation = new LinkedHashMap<>();
+    for (RegexUsage usage : usages) {
+      fieldsByInvocation.put(
+          usage.invocation(),
+          fieldsByCompileArguments.computeIfAbsent(
+              usage.compileArguments(), k -> deriveFieldName(usage.nameHint(), fieldNames)));
+    }
+
+    /*
+     * Usages nested inside other usages, such as in the receiver of a chained `replaceAll`
+     * invocation, are replaced as part of the enclosing usage's replacement.
+     */
+    for (MethodInvocationTree invocation : fieldsByInvocation.keySet()) {
+      if (!isNestedUsage(invocation, fieldsByInvocation.keySet(), state)) {
+        fix.replace(invocation, getReplacement(invocation, fieldsByInvocation, state));
+      }
+    }
+
+    ImmutableList<String> fields =
+        fieldsByCompileArguments.entrySet().stream()
+            .map(
+                e ->
+                    String.format(
+                        "private static final %s %s = %s.compile(%s);",
+                        pattern, e.getValue(), pattern, e.getKey()))
+            .collect(ImmutableList.toImmutableList());
+
+    /* Enum constants must precede all other members. */
+    AdditionPosition position =
+        tree.getKind() == Tree.Kind.ENUM ? AdditionPosition.LAST : AdditionPosition.FIRST;
+    fix.merge(
+        SuggestedFixes.addMembers(
+            tree,
+            state,
+            position,
+            fields.get(0),
+            fields.subList(1, fields.size()).toArray(new String[0])));
+    return describeMatch(usages.get(0).invocation(), fix.build());
+  }
+
+  /**
+   * Returns the regular expression usages inside the methods of the given class, excluding those
+   * inside nested classes, as these are flagged separately, and those inside declarations on which
+   * this check is suppressed.
+   */
+  private ImmutableList<RegexUsage> findRegexUsages(ClassTree tree, VisitorState state) {
+    ImmutableList.Builder<RegexUsage> usages = ImmutableList.builder();
+    for (Tree member : tree.getMembers()) {
+      if (member instanceof MethodTree method
+          && method.getBody() != null
+          && !isSuppressed(method, state)) {
+        String nameHint =
+            ASTHelpers.getSymbol(method).isConstructor()
+                ? CaseFormat.UPPER_CAMEL.to(
+                    CaseFormat.UPPER_UNDERSCORE, tree.getSimpleName().toString())
+                : CaseFormat.LOWER_CAMEL.to(
+                    CaseFormat.UPPER_UNDERSCORE, method.getName().toString());
+        new TreePathScanner<@Nullable Void, @Nullable Void>() {
+          @Override
+          public @Nullable Void visitClass(ClassTree node, @Nullable Void unused) {
+            return null;
+          }
+
+          @Override
+          public @Nullable Void visitVariable(VariableTree node, @Nullable Void unused) {
+            return isSuppressed(node, state) ? null : super.visitVariable(node, unused);
+          }
+
+          @Override
+          public @Nullable Void visitMethodInvocation(
+              MethodInvocationTree node, @Nullable Void unused) {
+            getCompileArguments(node, state)
+                .ifPresent(
+                    arguments ->
+                        usages.add(
+                            new AutoValue_RepeatedRegexCompilation_RegexUsage(
+                                node,
+                                arguments,
+                                nameHint,
+                                getVariablesInScope(state.withPath(getCurrentPath())))));
+            return super.visitMethodInvocation(node, unused);
+          }
+        }.scan(new TreePath(new TreePath(state.getPath(), method), method.getBody()), null);
+      }
+    }
+    return usages.build();
+  }
+
+  /**
+   * Returns the names of the variables in scope at the given location, including local variables
+   * and inherited fields. The field introduced to replace a usage at this location must not have
+   * any of these names, as it would otherwise be shadowed by, or itself hide, such a variable.
+   */
+  private static ImmutableSet<String> getVariablesInScope(VisitorState state) {
+    return FindIdentifiers.findAllIdents(state).stream()
+        .map(symbol -> symbol.getSimpleName().toString())
+        .collect(toImmutableSet());
+  }
+
+  /**
+   * Returns the source code of the arguments with which {@link Pattern#compile} should be invoked
+   * to obtain the regular expression used by the given method invocation, if it is constant.
+   */
+  private static Optional<String> getCompileArguments(
+      MethodInvocationTree tree, VisitorState state) {
+    List<? extends ExpressionTree> arguments = tree.getArguments();
+    if (PATTERN_COMPILE.matches(tree, state)) {
+      Integer flags =
+          arguments.size() == 1 ? null : ASTHelpers.constValue(arguments.get(1), Integer.class);
+      String regex = ASTHelpers.constValue(arguments.get(0), String.class);
+      if (regex == null || (arguments.size() == 2 && flags == null)) {
+        return Optional.empty();
+      }
+
+      return Optional.of(
+          flags == null
+              ? toStaticExpression(arguments.get(0), regex, state)
+              : String.join(
+                  ", ",
+                  toStaticExpression(arguments.get(0), regex, state),
+                  toStaticExpression(arguments.get(1), flags, state)));
+    }
+
+    if (!STRING_REGEX_METHOD.matches(tree, state)) {
+      return Optional.empty();
+    }
+
+    String regex = ASTHelpers.constValue(arguments.get(0), String.class);
+    if (regex == null
+        || (ASTHelpers.getSymbol(tree).getSimpleName().contentEquals("split")
+            && isSplitFastPath(regex))) {
+      return Optional.empty();
+    }
+
+    return Optional.of(toStaticExpression(arguments.get(0), regex, state));
+  }
+
+  /**
+   * Tells whether {@link String#split(String)} splits the input without compiling the given regular
+   * expression.
+   *
+   * @implNote This method mirrors the condition used by {@link String#split(String, int)}.
+   */
+  private static boolean isSplitFastPath(String regex) {
+    char c = regex.charAt(regex.length() - 1);
+    boolean isSimpleRegex =
+        regex.length() == 1
+            ? SPLIT_FAST_PATH_EXCLUDED_CHARACTERS.indexOf(c) < 0
+            : regex.length() == 2 && regex.charAt(0) == '\\' && !isAsciiLetterOrDigit(c);
+    return isSimpleRegex && (c < Character.MIN_HIGH_SURROGATE || c > Character.MAX_LOW_SURROGATE);
+  }
+
+  private static boolean isAsciiLetterOrDigit(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Returns the source code of the given constant expression, or a literal representation of its
+   * value if the expression references variables by their simple name.
+   *
+   * <p>Such references may not be valid in the initializer of the introduced field, as they may
+   * denote local variables or instance fields, or constitute illegal forward references.
+   */
+  private static String toStaticExpression(ExpressionTree tree, Object value, VisitorState state) {
+    boolean referencesVariable =
+        Boolean.TRUE.equals(
+            new TreeScanner<@Nullable Boolean, @Nullable Void>() {
+              @Override
+              public Boolean visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+                return ASTHelpers.getSymbol(node) instanceof VarSymbol;
+              }
+
+              @Override
+              public Boolean reduce(@Nullable Boolean r1, @Nullable Boolean r2) {
+                return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+              }
+            }.scan(tree, null));
+
+    return referencesVariable
+        ? state.getConstantExpression(value)
+        : SourceCode.treeToString(tree, state);
+  }
+
+  private static boolean isNestedUsage(
+      MethodInvocationTree invocation, Set<MethodInvocationTree> usages, VisitorState state) {
+    int startPosition = ASTHelpers.getStartPosition(invocation);
+    int endPosition = state.getEndPosition(invocation);
+    return usages.stream()
+        .anyMatch(
+            other ->
+                !other.equals(invocation)
+                    && ASTHelpers.getStartPosition(other) <= startPosition
+                    && endPosition <= state.getEndPosition(other));
+  }
+
+  private static String getReplacement(
+      MethodInvocationTree tree, Map<MethodInvocationTree, String> fields, VisitorState state) {
+    String fieldName = requireNonNull(fields.get(tree), "Missing `Pattern` field");
+    if (PATTERN_COMPILE.matches(tree, state)) {
+      return fieldName;
+    }
+
+    String receiver =
+        toSourceWithReplacements(
+            requireNonNull(ASTHelpers.getReceiver(tree), "Missing `String` receiver"),
+            fields,
+            state);
+    List<? extends ExpressionTree> arguments = tree.getArguments();
+    String methodName = ASTHelpers.getSymbol(tree).getSimpleName().toString();
+    return switch (methodName) {
+      case "matches" -> String.format("%s.matcher(%s).matches()", fieldName, receiver);
+      case "split" ->
+          arguments.size() == 1
+              ? String.format("%s.split(%s)", fieldName, receiver)
+              : String.format(
+                  "%s.split(%s, %s)",
+                  fieldName, receiver, toSourceWithReplacements(arguments.get(1), fields, state));
+      default ->
+          String.format(
+              "%s.matcher(%s).%s(%s)",
+              fieldName,
+              receiver,
+              methodName,
+              toSourceWithReplacements(arguments.get(1), fields, state));
+    };
+  }
+
+  /**
+   * Returns the source code of the given tree, with any regular expression usages it contains
+   * replaced by usages of the associated {@link Pattern} field.
+   */
+  private static String toSourceWithReplacements(
+      Tree tree, Map<MethodInvocationTree, String> fields, VisitorState state) {
+    List<MethodInvocationTree> nestedUsages = new ArrayList<>();
+    new TreeScanner<@Nullable Void, @Nullable Void>() {
+      @Override
+      public @Nullable Void visitMethodInvocation(
+          MethodInvocationTree node, @Nullable Void unused) {
+        if (fields.containsKey(node)) {
+          nestedUsages.add(node);
+          return null;
+        }
+        return super.visitMethodInvocation(node, unused);
+      }
+    }.scan(tree, null);
+
+    if (nestedUsages.isEmpty()) {
+      return SourceCode.treeToString(tree, state);
+    }
+
+    CharSequence source = requireNonNull(state.getSourceCode(), "Missing source code");
+    StringBuilder replacement = new StringBuilder();
+    @Var int position = ASTHelpers.getStartPosition(tree);
+    for (MethodInvocationTree usage : nestedUsages) {
+      replacement
+          .append(source, position, ASTHelpers.getStartPosition(usage))
+          .append(getReplacement(usage, fields, state));
+      position = state.getEndPosition(usage);
+    }
+    return replacement.append(source, position, state.getEndPosition(tree)).toString();
+  }
+
+  private static String deriveFieldName(String nameHint, Set<String> fieldNames) {
+    String baseName = nameHint + "_PATTERN";
+    @Var String fieldName = baseName;
+    for (int i = 2; !fieldNames.add(fieldName); i++) {
+      fieldName = baseName + '_' + i;
+    }
+    return fieldName;
+  }
+
+  /** A method invocation that compiles a constant regular expression. */
+  @AutoValue
+  abstract static class RegexUsage {
+    /** The method invocation that compiles the regular expression. */
+    abstract MethodInvocationTree invocation();
+
+    /** The source code of the arguments to pass to {@link Pattern#compile}. */
+    abstract String compileArguments();
+
+    /** The upper snake case name from which to derive the name of the introduced field. */
+    abstract String nameHint();
+
+    /** The names of the variables in scope at the method invocation. */
+    abstract ImmutableSet<String> variablesInScope();
+  }
+}
@@ -0,0 +1,309 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import static com.google.errorprone.BugPattern.LinkType.CUSTOM;
+import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
+import static com.google.errorprone.BugPattern.StandardTags.PERFORMANCE;
+import static com.google.errorprone.matchers.Matchers.isSubtypeOf;
+import static com.google.errorprone.matchers.method.MethodMatchers.instanceMethod;
+import static tech.picnic.errorprone.utils.Documentation.BUG_PATTERNS_BASE_URL;
+
+import com.google.auto.service.AutoService;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.MethodInvocationTreeMatcher;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.matchers.Description;
+import com.google.errorprone.matchers.Matcher;
+import com.google.errorprone.suppliers.Supplier;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.IfTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.code.Type.ArrayType;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.refaster.matchers.RequiresComputation;
+import tech.picnic.errorprone.utils.SourceCode;
+import tech.picnic.errorprone.utils.ThirdPartyLibrary;
+
+/**
+ * A {@link BugChecker} that flags SLF4J log statements at a level that is disabled by default, of
+ * which the arguments require computation even if the statement does not emit anything.
+ *
+ * <p>If the SLF4J 2 fluent logging API is available, then the suggested fix defers the computation
+ * of such arguments using {@code addArgument(Supplier)}. Otherwise the log statement is wrapped in
+ * an {@code isXxxEnabled()} guard.
+ */
+// XXX: The special-casing of Throwable applies only to SLF4J 1.6.0+; see
+// https://www.slf4j.org/faq.html#paramException. That should be documented.
+// XXX: Guards of the form `if (!LOG.isDebugEnabled()) { return; }` are not recognized.
+// XXX: The `RequiresComputation` matcher considers each method invocation to be a non-trivial
+// computation, including e.g. simple getters. Consider introducing an allowlist.
+@AutoService(BugChecker.class)
+@BugPattern(
+    summary =
+        """
+        Avoid computing arguments of SLF4J log statements at a level that is disabled by default, \
+        unless said level is enabled""",
+    link = BUG_PATTERNS_BASE_URL + "Slf4jEagerLogArgument",
+    linkType = CUSTOM,
+    severity = SUGGESTION,
+    tags = PERFORMANCE)
+public final class Slf4jEagerLogArgument extends BugChecker implements MethodInvocationTreeMatcher {
+  private static final long serialVersionUID = 1L;
+  private static final Matcher<ExpressionTree> REQUIRES_COMPUTATION = new RequiresComputation();
+  private static final Matcher<ExpressionTree> SLF4J_MARKER = isSubtypeOf("org.slf4j.Marker");
+  private static final Matcher<ExpressionTree> THROWABLE = isSubtypeOf(Throwable.class);
+  private static final Matcher<ExpressionTree> DISABLED_BY_DEFAULT_LOGGER_INVOCATION =
+      instanceMethod().onDescendantOf("org.slf4j.Logger").namedAnyOf("trace", "debug");
+  private static final Matcher<ExpressionTree> LEVEL_CHECK_INVOCATION =
+      instanceMethod()
+          .onDescendantOf("org.slf4j.Logger")
+          .namedAnyOf(
+              "isTraceEnabled",
+              "isDebugEnabled",
+              "isInfoEnabled",
+              "isWarnEnabled",
+              "isErrorEnabled",
+              "isEnabledForLevel");
+  private static final Supplier<Boolean> FLUENT_API_AVAILABLE =
+      VisitorState.memoize(
+          state -> ThirdPartyLibrary.canIntroduceUsage("org.slf4j.spi.LoggingEventBuilder", state));
+
+  /** Instantiates a new {@link Slf4jEagerLogArgument} instance. */
+  public Slf4jEagerLogArgument() {}
+
+  @Override
+  public Description matchMethodInvocation(MethodInvocationTree tree, VisitorState state) {
+    if (!DISABLED_BY_DEFAULT_LOGGER_INVOCATION.matches(tree, state)) {
+      return Description.NO_MATCH;
+    }
+
+    LogStatement statement = LogStatement.create(tree, state);
+    if (!statement.requiresComputation(state) || isGuarded(state)) {
+      return Description.NO_MATCH;
+    }
+
+    Description.Builder description = buildDescription(tree);
+    suggestFluentApiUsage(statement, state)
+        .or(() -> suggestGuard(statement, state))
+        .ifPresent(description::addFix);
+    return description.build();
+  }
+
+  /**
+   * Tells whether the log statement is evaluated only if a log level check succeeds.
+   *
+   * <p>Any {@code if} statement or conditional expression of which the condition invokes a level
+   * check method is considered a guard, irrespective of the log level being checked.
+   */
+  private static boolean isGuarded(VisitorState state) {
+    for (TreePath path = state.getPath();
+        path.getParentPath() != null;
+        path = path.getParentPath()) {
+      Tree child = path.getLeaf();
+      Tree parent = path.getParentPath().getLeaf();
+      if (parent instanceof ClassTree
+          || parent instanceof LambdaExpressionTree
+          || parent instanceof MethodTree) {
+        return false;
+      }
+
+      if (parent instanceof IfTree ifTree
+          && child.equals(ifTree.getThenStatement())
+          && invokesLevelCheck(ifTree.getCondition(), state)) {
+        return true;
+      }
+
+      if (parent instanceof ConditionalExpressionTree conditional
+          && child.equals(conditional.getTrueExpression())
+          && invokesLevelCheck(conditional.getCondition(), state)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean invokesLevelCheck(ExpressionTree condition, VisitorState state) {
+    return Boolean.TRUE.equals(
+        new TreeScanner<Boolean, @Nullable Void>() {
+          @Override
+          public Boolean visitMethodInvocation(MethodInvocationTree tree, @Nullable Void unused) {
+            return LEVEL_CHECK_INVOCATION.matches(tree, state)
+                || Boolean.TRUE.equals(super.visitMethodInvocation(tree, null));
+          }
+
+          @Override
+          public Boolean reduce(Boolean r1, Boolean r2) {
+            return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+          }
+        }.scan(condition, null));
+  }
+
+  /**
+   * Suggests replacing the log statement with its SLF4J 2 fluent API equivalent, in which the
+   * arguments that require computation are provided by means of a lambda expression.
+   */
+  private static Optional<SuggestedFix> suggestFluentApiUsage(
+      LogStatement statement, VisitorState state) {
+    if (!FLUENT_API_AVAILABLE.get(state)
+        || REQUIRES_COMPUTATION.matches(statement.formatString(), state)
+        || statement.throwable().filter(t -> REQUIRES_COMPUTATION.matches(t, state)).isPresent()) {
+      /* Not all computation can be deferred using the fluent API. */
+      return Optional.empty();
+    }
+
+    StringBuilder replacement =
+        new StringBuilder(statement.receiverPrefix(state))
+            .append(String.format("at%s()", statement.capitalizedLevel()));
+    statement
+        .marker()
+        .ifPresent(
+            m ->
+                replacement.append(
+                    String.format(".addMarker(%s)", SourceCode.treeToString(m, state))));
+
+    for (ExpressionTree argument : statement.arguments()) {
+      if (ASTHelpers.getType(argument) instanceof ArrayType) {
+        /* An array argument may provide the values of multiple placeholders. */
+        return Optional.empty();
+      }
+
+      boolean defer = REQUIRES_COMPUTATION.matches(argument, state);
+      if (defer && referencesNonFinalLocalVariable(argument)) {
+        /* The argument cannot be moved into a lambda expression. */
+        return Optional.empty();
+      }
+
+      String value = SourceCode.treeToString(argument, state);
+      replacement.append(String.format(".addArgument(%s)", defer ? "() -> " + value : value));
+    }
+
+    statement
+        .throwable()
+        .ifPresent(
+            t ->
+                replacement.append(
+                    String.format(".setCause(%s)", SourceCode.treeToString(t, state))));
+    replacement.append(
+        String.format(".log(%s)", SourceCode.treeToString(statement.formatString(), state)));
+
+    return Optional.of(SuggestedFix.replace(statement.expression(), replacement.toString()));
+  }
+
+  /** Suggests wrapping the log statement in a level check. */
+  private static Optional<SuggestedFix> suggestGuard(LogStatement statement, VisitorState state) {
+    TreePath statementPath = state.getPath().getParentPath();
+    if (!(statementPath.getLeaf() instanceof ExpressionStatementTree expressionStatement)
+        || !(statementPath.getParentPath().getLeaf() instanceof BlockTree)) {
+      /* The log statement is not a standalone statement; it cannot trivially be guarded. */
+      return Optional.empty();
+    }
+
+    if (statement.receiver().filter(r -> REQUIRES_COMPUTATION.matches(r, state)).isPresent()
+        || statement.marker().filter(m -> REQUIRES_COMPUTATION.matches(m, state)).isPresent()) {
+      /* Introducing a guard would cause some computation to be performed twice. */
+      return Optional.empty();
+    }
+
+    String condition =
+        String.format(
+            "%sis%sEnabled(%s)",
+            statement.receiverPrefix(state),
+            statement.capitalizedLevel(),
+            statement.marker().map(m -> SourceCode.treeToString(m, state)).orElse(""));
+    return Optional.of(
+        SuggestedFix.replace(
+            expressionStatement,
+            String.format(
+                "if (%s) { %s }", condition, SourceCode.treeToString(expressionStatement, state))));
+  }
+
+  private static boolean referencesNonFinalLocalVariable(ExpressionTree tree) {
+    return Boolean.TRUE.equals(
+        new TreeScanner<Boolean, @Nullable Void>() {
+          @Override
+          public Boolean visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+            Symbol symbol = ASTHelpers.getSymbol(node);
+            return symbol instanceof VarSymbol
+                && symbol.owner instanceof MethodSymbol
+                && !ASTHelpers.isConsideredFinal(symbol);
+          }
+
+          @Override
+          public Boolean reduce(Boolean r1, Boolean r2) {
+            return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+          }
+        }.scan(tree, null));
+  }
+
+  /** Description of an SLF4J log statement. */
+  @AutoValue
+  abstract static class LogStatement {
+    /** The full log statement expression. */
+    abstract MethodInvocationTree expression();
+
+    /** The logger on which the log method is invoked, if explicitly specified. */
+    abstract Optional<ExpressionTree> receiver();
+
+    /** The marker argument, if any. */
+    abstract Optional<ExpressionTree> marker();
+
+    /** The format string argument. */
+    abstract ExpressionTree formatString();
+
+    /** The arguments to be plugged into the format string. */
+    abstract ImmutableList<ExpressionTree> arguments();
+
+    /** The trailing {@link Throwable} argument, if any. */
+    abstract Optional<ExpressionTree> throwable();
+
+    private boolean requiresComputation(VisitorState state) {
+      return REQUIRES_COMPUTATION.matches(formatString(), state)
+          || arguments().stream().anyMatch(arg -> REQUIRES_COMPUTATION.matches(arg, state))
+          || throwable().filter(t -> REQUIRES_COMPUTATION.matches(t, state)).isPresent();
+    }
+
+    private String capitalizedLevel() {
+      String level = ASTHelpers.getSymbol(expression()).getSimpleName().toString();
+      return level.substring(0, 1).toUpperCase(Locale.ROOT) + level.substring(1);
+    }
+
+    private String receiverPrefix(VisitorState state) {
+      return receiver().map(r -> SourceCode.treeToString(r, state) + '.').orElse("");
+    }
+
+    private static LogStatement create(MethodInvocationTree tree, VisitorState state) {
+      List<? extends ExpressionTree> args = tree.getArguments();
+      int lTrim = SLF4J_MARKER.matches(args.get(0), state) ? 1 : 0;
+      int rTrim =
+          args.size() > lTrim + 1 && THROWABLE.matches(args.get(args.size() - 1), state) ? 1 : 0;
+      return new AutoValue_Slf4jEagerLogArgument_LogStatement(
+          tree,
+          Optional.ofNullable(ASTHelpers.getReceiver(tree)),
+          lTrim == 0 ? Optional.empty() : Optional.of(args.get(0)),
+          args.get(lTrim),
+          ImmutableList.copyOf(args.subList(lTrim + 1, args.size() - rTrim)),
+          rTrim == 0 ? Optional.empty() : Optional.of(args.get(args.size() - 1)));
+    }
+  }
+}
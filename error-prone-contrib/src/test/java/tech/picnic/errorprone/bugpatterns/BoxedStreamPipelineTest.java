@@ -0,0 +1,118 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import com.google.errorprone.BugCheckerRefactoringTestHelper;
+import com.google.errorprone.BugCheckerRefactoringTestHelper.TestMode;
+import com.google.errorprone.CompilationTestHelper;
+import org.junit.jupiter.api.Test;
+
+final class BoxedStreamPipelineTest {
+  @Test
+  void identification() {
+    CompilationTestHelper.newInstance(BoxedStreamPipeline.class, getClass())
+        .addSourceLines(
+            "A.java",
+            "import static java.util.stream.Collectors.summingInt;",
+            "import static java.util.stream.Collectors.toList;",
+            "",
+            "import java.util.Comparator;",
+            "import java.util.List;",
+            "import java.util.stream.IntStream;",
+            "",
+            "class A {",
+            "  void m(List<String> strings, List<Integer> integers, List<Long> longs, boolean flag) {",
+            "    long count = integers.stream().count();",
+            "    List<Integer> list = integers.stream().collect(toList());",
+            "    list = integers.stream().map(i -> i * 2).collect(toList());",
+            "    list = integers.stream().sorted(Comparator.reverseOrder()).collect(toList());",
+            "    list = strings.stream().map(String::length).collect(toList());",
+            "    String string = integers.stream().reduce(0, Integer::sum).toString();",
+            "    boolean match = integers.stream().map(i -> i + 1).anyMatch(i -> i.equals(1));",
+            "    match = integers.stream().map(i -> i + 1).anyMatch(i -> i == null);",
+            "    match = integers.stream().map(i -> i + 1).anyMatch((Integer i) -> i > 0);",
+            "    int sum = integers.stream().reduce(0, (a, b) -> a == b ? a : b);",
+            "    sum = integers.stream().reduce(0, (a, b) -> Integer.sum(a, b));",
+            "    sum = strings.stream().map(String::length).reduce(Integer::sum).orElseThrow();",
+            "    sum = integers.stream().collect(summingInt(i -> i + 1));",
+            "    List<String> sorted = strings.stream().sorted().collect(toList());",
+            "    var boxedSum = integers.stream().reduce(0, Integer::sum);",
+            "    Integer nullableSum = flag ? null : integers.stream().reduce(0, Integer::sum);",
+            "    Number number = integers.stream().reduce(0, Integer::sum);",
+            "    consume(integers.stream().reduce(0, Integer::sum));",
+            "    consume(integers.stream().collect(summingInt(i -> i)));",
+            "",
+            "    // BUG: Diagnostic contains:",
+            "    sum = strings.stream().map(String::length).reduce(0, Integer::sum);",
+            "    // BUG: Diagnostic contains:",
+            "    sum = integers.stream().filter(i -> i != null).reduce(0, (a, b) -> a + b);",
+            "    // BUG: Diagnostic contains:",
+            "    sum = integers.stream().collect(summingInt(i -> i));",
+            "    // BUG: Diagnostic contains:",
+            "    list = integers.stream().sorted().collect(toList());",
+            "    // BUG: Diagnostic contains:",
+            "    count = longs.stream().map(l -> l + 1).filter(l -> l % 2 == 0).count();",
+            "    // BUG: Diagnostic contains:",
+            "    match = integers.stream().map(i -> -i).noneMatch(i -> i > 0);",
+            "    // BUG: Diagnostic contains:",
+            "    count = IntStream.range(0, 10).boxed().count();",
+            "    // BUG: Diagnostic contains:",
+            "    long widenedSum = integers.stream().reduce(0, Integer::sum);",
+            "  }",
+            "",
+            "  int sum(List<Integer> integers) {",
+            "    // BUG: Diagnostic contains:",
+            "    return integers.stream().reduce(0, Integer::sum);",
+            "  }",
+            "",
+            "  Integer boxedSum(List<Integer> integers) {",
+            "    return integers.stream().reduce(0, Integer::sum);",
+            "  }",
+            "",
+            "  void consume(int value) {}",
+            "",
+            "  void consume(Integer value) {}",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void replacement() {
+    BugCheckerRefactoringTestHelper.newInstance(BoxedStreamPipeline.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import static java.util.stream.Collectors.summingLong;",
+            "import static java.util.stream.Collectors.toList;",
+            "",
+            "import java.util.List;",
+            "import java.util.stream.IntStream;",
+            "",
+            "class A {",
+            "  void m(List<String> strs, List<Integer> ints, List<Long> lngs, List<Double> dbls) {",
+            "    int sum = strs.stream().map(String::length).reduce(0, Integer::sum);",
+            "    long n = ints.stream().map(i -> i * 2).filter(i -> i > 1).count();",
+            "    long longSum = lngs.stream().collect(summingLong(Long::longValue));",
+            "    Object lengths = strs.stream().map(String::length).sorted().collect(toList());",
+            "    sum = IntStream.range(0, 10).boxed().map(i -> i + 1).reduce(0, (a, b) -> a + b);",
+            "    Object sorted = dbls.stream().sorted().toList();",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import static java.util.stream.Collectors.summingLong;",
+            "import static java.util.stream.Collectors.toList;",
+            "",
+            "import java.util.List;",
+            "import java.util.stream.IntStream;",
+            "",
+            "class A {",
+            "  void m(List<String> strs, List<Integer> ints, List<Long> lngs, List<Double> dbls) {",
+            "    int sum = strs.stream().mapToInt(String::length).reduce(0, Integer::sum);",
+            "    long n = ints.stream().mapToInt(Integer::intValue).map(i -> i * 2).filter(i -> i > 1).count();",
+            "    long longSum = lngs.stream().mapToLong(Long::longValue).sum();",
+            "    Object lengths = strs.stream().mapToInt(String::length).sorted().boxed().collect(toList());",
+            "    sum = IntStream.range(0, 10).map(i -> i + 1).reduce(0, (a, b) -> a + b);",
+            "    Object sorted = dbls.stream().mapToDouble(Double::doubleValue).sorted().boxed().toList();",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+}
@@ -283,4 +283,138 @@ final class EagerStringFormattingTest {
             "}")
         .doTest(TestMode.TEXT_MATCH);
   }
+
+  @Test
+  void identificationOfLocalVariableUsages() {
+    CompilationTestHelper.newInstance(EagerStringFormatting.class, getClass())
+        .expectErrorMessage("DEFER", m -> m.contains("String formatting can be deferred\n"))
+        .expectErrorMessage(
+            "DEFER_MOVED",
+            m ->
+                m.contains(
+                    "String formatting can be deferred (but this requires moving it to where the formatted string is used)"))
+        .addSourceLines(
+            "A.java",
+            "import static com.google.common.base.Preconditions.checkArgument;",
+            "import static java.util.Objects.requireNonNull;",
+            "",
+            "import java.util.List;",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "",
+            "  private final String field = String.format(\"%s\", 0);",
+            "  private int nonFinalField = 0;",
+            "",
+            "  void m(boolean b, int i, List<Integer> list) {",
+            "    String unused = String.format(\"%s\", i);",
+            "",
+            "    String returned = String.format(\"%s\", i);",
+            "    LOG.debug(returned);",
+            "    System.out.println(returned);",
+            "",
+            "    String reassigned = String.format(\"%s\", i);",
+            "    reassigned = \"other\";",
+            "    LOG.debug(reassigned);",
+            "",
+            "    String asPlaceholderArgument = String.format(\"%s\", i);",
+            "    LOG.debug(\"Message: {}\", asPlaceholderArgument);",
+            "",
+            "    String vacuous = String.format(\"%s\", i);",
+            "    requireNonNull(vacuous);",
+            "",
+            "    String inLoop = String.format(\"%s\", i);",
+            "    for (int e : list) {",
+            "      LOG.debug(inLoop);",
+            "    }",
+            "",
+            "    String inLambda = String.format(\"%s\", i);",
+            "    list.forEach(e -> LOG.debug(inLambda));",
+            "",
+            "    // BUG: Diagnostic matches: DEFER",
+            "    String logged = String.format(\"Value: %s\", i);",
+            "    if (b) {",
+            "      LOG.debug(logged);",
+            "    }",
+            "",
+            "    // BUG: Diagnostic matches: DEFER",
+            "    String checked = \"Value: %s, %s\".formatted(i, field);",
+            "    checkArgument(b, checked);",
+            "    requireNonNull(list, checked);",
+            "",
+            "    // BUG: Diagnostic matches: DEFER_MOVED",
+            "    String unstable = String.format(\"Value: %s\", nonFinalField);",
+            "    LOG.debug(unstable);",
+            "",
+            "    // BUG: Diagnostic matches: DEFER_MOVED",
+            "    String customFormat = String.format(\"Value: %d\", i);",
+            "    LOG.debug(customFormat);",
+            "",
+            "    // BUG: Diagnostic matches: DEFER_MOVED",
+            "    String mutableCollection = String.format(\"Values: %s\", list);",
+            "    list.add(i);",
+            "    LOG.debug(mutableCollection);",
+            "",
+            "    StringBuilder builder = new StringBuilder();",
+            "    // BUG: Diagnostic matches: DEFER_MOVED",
+            "    String mutableObject = String.format(\"Value: %s\", builder);",
+            "    builder.append(i);",
+            "    LOG.debug(mutableObject);",
+            "",
+            "    for (int e : list) {",
+            "      // BUG: Diagnostic matches: DEFER",
+            "      String perElement = String.format(\"Value: %s\", e);",
+            "      LOG.trace(perElement);",
+            "    }",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void replacementOfLocalVariableUsages() {
+    BugCheckerRefactoringTestHelper.newInstance(EagerStringFormatting.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import static com.google.common.base.Preconditions.checkArgument;",
+            "import static java.util.Objects.requireNonNull;",
+            "",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "",
+            "  void m(boolean b, int i, String s) {",
+            "    String message = String.format(\"Values: %s, %s\", i, s);",
+            "    if (b) {",
+            "      LOG.debug(message);",
+            "    }",
+            "    checkArgument(b, message);",
+            "    requireNonNull(s, message);",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import static com.google.common.base.Preconditions.checkArgument;",
+            "import static java.util.Objects.requireNonNull;",
+            "",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "",
+            "  void m(boolean b, int i, String s) {",
+            "    if (b) {",
+            "      LOG.debug(\"Values: {}, {}\", i, s);",
+            "    }",
+            "    checkArgument(b, \"Values: %s, %s\", i, s);",
+            "    requireNonNull(s, () -> String.format(\"Values: %s, %s\", i, s));",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
 }
@@ -0,0 +1,171 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import com.google.errorprone.BugCheckerRefactoringTestHelper;
+import com.google.errorprone.BugCheckerRefactoringTestHelper.TestMode;
+import com.google.errorprone.CompilationTestHelper;
+import org.junit.jupiter.api.Test;
+
+final class ReactorOperatorBlockingCallTest {
+  @Test
+  void identification() {
+    CompilationTestHelper.newInstance(ReactorOperatorBlockingCall.class, getClass())
+        .addSourceLines(
+            "A.java",
+            "import java.io.IOException;",
+            "import java.io.InputStream;",
+            "import java.io.UncheckedIOException;",
+            "import java.nio.file.Files;",
+            "import java.nio.file.Path;",
+            "import java.sql.Connection;",
+            "import java.sql.SQLException;",
+            "import java.sql.Statement;",
+            "import java.util.concurrent.CompletableFuture;",
+            "import java.util.stream.Stream;",
+            "import reactor.core.publisher.Flux;",
+            "import reactor.core.publisher.Mono;",
+            "import reactor.core.scheduler.Schedulers;",
+            "",
+            "class A {",
+            "  void m(",
+            "      Flux<Path> flux,",
+            "      Mono<String> mono,",
+            "      CompletableFuture<String> future,",
+            "      Connection connection,",
+            "      Statement statement,",
+            "      InputStream inputStream)",
+            "      throws Exception {",
+            "    Files.size(Path.of(\"foo\"));",
+            "    Stream.of(Path.of(\"foo\")).map(Files::exists);",
+            "    flux.map(Path::getFileName);",
+            "    flux.flatMap(p -> Mono.fromCallable(() -> Files.size(p)));",
+            "    flux.flatMap(p -> Mono.fromCallable(() -> Files.size(p)).subscribeOn(Schedulers.boundedElastic()));",
+            "    flux.doOnNext(p -> new Thread(() -> future.join()).start());",
+            "    mono.map(s -> s + future.getNow(\"\"));",
+            "",
+            "    // BUG: Diagnostic contains:",
+            "    flux.map(Files::exists);",
+            "    // BUG: Diagnostic contains:",
+            "    flux.filter(p -> Files.exists(p));",
+            "    flux.doOnNext(",
+            "        p -> {",
+            "          try {",
+            "            // BUG: Diagnostic contains:",
+            "            Thread.sleep(10);",
+            "          } catch (InterruptedException e) {",
+            "            Thread.currentThread().interrupt();",
+            "          }",
+            "        });",
+            "    // BUG: Diagnostic contains:",
+            "    mono.map(s -> s + future.join());",
+            "    // BUG: Diagnostic contains:",
+            "    mono.flatMap(s -> Mono.just(mono.block()));",
+            "    mono.doOnSuccess(",
+            "        s -> {",
+            "          try {",
+            "            connection.getAutoCommit();",
+            "            // BUG: Diagnostic contains:",
+            "            future.complete(String.valueOf(statement.executeUpdate(s)));",
+            "          } catch (SQLException e) {",
+            "            future.completeExceptionally(e);",
+            "          }",
+            "        });",
+            "    mono.doOnSuccess(",
+            "        s -> {",
+            "          try {",
+            "            // BUG: Diagnostic contains:",
+            "            connection.prepareStatement(s).close();",
+            "          } catch (SQLException e) {",
+            "            future.completeExceptionally(e);",
+            "          }",
+            "        });",
+            "    mono.filter(",
+            "        s -> {",
+            "          try {",
+            "            // BUG: Diagnostic contains:",
+            "            return inputStream.read() > 0;",
+            "          } catch (IOException e) {",
+            "            throw new UncheckedIOException(e);",
+            "          }",
+            "        });",
+            "    flux.flatMap(",
+            "        // BUG: Diagnostic contains:",
+            "        p -> Mono.just(p).map(other -> Files.isDirectory(other)));",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void identificationOfExtraBlockingMethods() {
+    CompilationTestHelper.newInstance(ReactorOperatorBlockingCall.class, getClass())
+        .setArgs(
+            "-XepOpt:ReactorOperatorBlockingCall:ExtraBlockingMethods=A#fetch(java.lang.String)")
+        .addSourceLines(
+            "A.java",
+            "import reactor.core.publisher.Flux;",
+            "",
+            "class A {",
+            "  void m(Flux<String> flux) {",
+            "    flux.map(String::trim);",
+            "    flux.map(s -> fetch(s, s));",
+            "",
+            "    // BUG: Diagnostic contains:",
+            "    flux.map(this::fetch);",
+            "    // BUG: Diagnostic contains:",
+            "    flux.map(s -> fetch(s));",
+            "  }",
+            "",
+            "  String fetch(String key) {",
+            "    return key;",
+            "  }",
+            "",
+            "  String fetch(String key, String defaultValue) {",
+            "    return key;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void replacement() {
+    BugCheckerRefactoringTestHelper.newInstance(ReactorOperatorBlockingCall.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import java.nio.file.Files;",
+            "import java.nio.file.Path;",
+            "import java.util.concurrent.CompletableFuture;",
+            "import reactor.core.publisher.Flux;",
+            "import reactor.core.publisher.Mono;",
+            "",
+            "class A {",
+            "  void m(Flux<Path> flux, Mono<String> mono, CompletableFuture<String> future) {",
+            "    flux.map(p -> Files.exists(p));",
+            "    flux.filter(p -> Files.isDirectory(p));",
+            "    mono.map(s -> s + future.getNow(\"\"));",
+            "    mono.map(s -> s + future.join());",
+            "    mono.doOnNext(s -> future.join());",
+            "    mono.flatMap(s -> Mono.justOrEmpty(future.join()));",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import java.nio.file.Files;",
+            "import java.nio.file.Path;",
+            "import java.util.concurrent.CompletableFuture;",
+            "import reactor.core.publisher.Flux;",
+            "import reactor.core.publisher.Mono;",
+            "import reactor.core.scheduler.Schedulers;",
+            "",
+            "class A {",
+            "  void m(Flux<Path> flux, Mono<String> mono, CompletableFuture<String> future) {",
+            "    flux.concatMap(p -> Mono.fromCallable(() -> Files.exists(p)).subscribeOn(Schedulers.boundedElastic()));",
+            "    flux.filterWhen(p -> Mono.fromCallable(() -> Files.isDirectory(p)).subscribeOn(Schedulers.boundedElastic()));",
+            "    mono.map(s -> s + future.getNow(\"\"));",
+            "    mono.flatMap(s -> Mono.fromCallable(() -> s + future.join()).subscribeOn(Schedulers.boundedElastic()));",
+            "    mono.delayUntil(s -> Mono.fromRunnable(() -> future.join()).subscribeOn(Schedulers.boundedElastic()));",
+            "    mono.flatMap(s -> Mono.justOrEmpty(future.join()));",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+}
@@ -0,0 +1,242 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import com.google.errorprone.BugCheckerRefactoringTestHelper;
+import com.google.errorprone.BugCheckerRefactoringTestHelper.TestMode;
+import com.google.errorprone.CompilationTestHelper;
+import org.junit.jupiter.api.Test;
+
+final class RepeatedRegexCompilationTest {
+  @Test
+  void identification() {
+    CompilationTestHelper.newInstance(RepeatedRegexCompilation.class, getClass())
+        .addSourceLines(
+            "A.java",
+            "import java.util.regex.Pattern;",
+            "",
+            "class A {",
+            "  private static final Pattern PATTERN = Pattern.compile(\"[a-z]+\");",
+            "",
+            "  void m(String s, String regex) {",
+            "    s.matches(regex);",
+            "    s.replaceAll(regex, \"\");",
+            "    Pattern.compile(regex);",
+            "    Pattern.compile(\"[a-z]+\", s.length());",
+            "    s.split(\",\");",
+            "    s.split(\"\\\\.\");",
+            "    s.split(\"\\\\|\", 2);",
+            "    s.replace(\"[a-z]+\", \"\");",
+            "  }",
+            "",
+            "  interface I {",
+            "    default boolean m(String s) {",
+            "      return s.matches(\"[a-z]+\");",
+            "    }",
+            "  }",
+            "",
+            "  static class B {",
+            "    boolean m(String s) {",
+            "      // BUG: Diagnostic contains:",
+            "      return s.matches(\"[a-z]+\");",
+            "    }",
+            "  }",
+            "",
+            "  static class C {",
+            "    String[] m(String s) {",
+            "      // BUG: Diagnostic contains:",
+            "      return s.split(\"\\\\s*,\\\\s*\");",
+            "    }",
+            "  }",
+            "",
+            "  static class D {",
+            "    String[] m(String s) {",
+            "      // BUG: Diagnostic contains:",
+            "      return s.split(\"\\\\d\");",
+            "    }",
+            "  }",
+            "",
+            "  static class E {",
+            "    Pattern m() {",
+            "      // BUG: Diagnostic contains:",
+            "      return Pattern.compile(\"[a-z]+\", Pattern.CASE_INSENSITIVE);",
+            "    }",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void replacement() {
+    BugCheckerRefactoringTestHelper.newInstance(RepeatedRegexCompilation.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import java.util.regex.Pattern;",
+            "",
+            "class A {",
+            "  private static final String SEPARATOR = \"\\\\s*,\\\\s*\";",
+            "",
+            "  boolean isValidName(String s) {",
+            "    return s.matches(\"[a-z]+\") && !s.replaceFirst(\"[a-z]+\", \"\").isEmpty();",
+            "  }",
+            "",
+            "  String[] splitValues(String s) {",
+            "    final String regex = \"[;:]\";",
+            "    s.replaceAll(regex, \"-\");",
+            "    s.split(regex, 3);",
+            "    return s.split(SEPARATOR);",
+            "  }",
+            "",
+            "  Pattern compileName() {",
+            "    return Pattern.compile(\"[a-z]+\", Pattern.CASE_INSENSITIVE);",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import java.util.regex.Pattern;",
+            "",
+            "class A {",
+            "",
+            "  private static final Pattern IS_VALID_NAME_PATTERN = Pattern.compile(\"[a-z]+\");",
+            "",
+            "  private static final Pattern SPLIT_VALUES_PATTERN = Pattern.compile(\"[;:]\");",
+            "",
+            "  private static final Pattern SPLIT_VALUES_PATTERN_2 = Pattern.compile(\"\\\\s*,\\\\s*\");",
+            "",
+            "  private static final Pattern COMPILE_NAME_PATTERN =",
+            "      Pattern.compile(\"[a-z]+\", Pattern.CASE_INSENSITIVE);",
+            "",
+            "  private static final String SEPARATOR = \"\\\\s*,\\\\s*\";",
+            "",
+            "  boolean isValidName(String s) {",
+            "    return IS_VALID_NAME_PATTERN.matcher(s).matches()",
+            "        && !IS_VALID_NAME_PATTERN.matcher(s).replaceFirst(\"\").isEmpty();",
+            "  }",
+            "",
+            "  String[] splitValues(String s) {",
+            "    final String regex = \"[;:]\";",
+            "    SPLIT_VALUES_PATTERN.matcher(s).replaceAll(\"-\");",
+            "    SPLIT_VALUES_PATTERN.split(s, 3);",
+            "    return SPLIT_VALUES_PATTERN_2.split(s);",
+            "  }",
+            "",
+            "  Pattern compileName() {",
+            "    return COMPILE_NAME_PATTERN;",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+
+  @Test
+  void replacementOfChainedAndNestedUsages() {
+    BugCheckerRefactoringTestHelper.newInstance(RepeatedRegexCompilation.class, getClass())
+        .addInputLines(
+            "A.java",
+            "class A {",
+            "  String normalize(String s, String t) {",
+            "    return s.replaceAll(\"a+\", \"b\").replaceAll(\"c+\", \"d\");",
+            "  }",
+            "",
+            "  String substitute(String s, String t) {",
+            "    return s.replaceFirst(\"x+\", t.replaceAll(\"y+\", \"\"));",
+            "  }",
+            "",
+            "  boolean isSplittable(String s) {",
+            "    return s.split(\"\\\\s+\", s.replaceAll(\"\\\\d+\", \"\").length()).length > 1;",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import java.util.regex.Pattern;",
+            "",
+            "class A {",
+            "",
+            "  private static final Pattern NORMALIZE_PATTERN = Pattern.compile(\"c+\");",
+            "",
+            "  private static final Pattern NORMALIZE_PATTERN_2 = Pattern.compile(\"a+\");",
+            "",
+            "  private static final Pattern SUBSTITUTE_PATTERN = Pattern.compile(\"x+\");",
+            "",
+            "  private static final Pattern SUBSTITUTE_PATTERN_2 = Pattern.compile(\"y+\");",
+            "",
+            "  private static final Pattern IS_SPLITTABLE_PATTERN = Pattern.compile(\"\\\\s+\");",
+            "",
+            "  private static final Pattern IS_SPLITTABLE_PATTERN_2 = Pattern.compile(\"\\\\d+\");",
+            "",
+            "  String normalize(String s, String t) {",
+            "    return NORMALIZE_PATTERN.matcher(NORMALIZE_PATTERN_2.matcher(s).replaceAll(\"b\")).replaceAll(\"d\");",
+            "  }",
+            "",
+            "  String substitute(String s, String t) {",
+            "    return SUBSTITUTE_PATTERN.matcher(s).replaceFirst(SUBSTITUTE_PATTERN_2.matcher(t).replaceAll(\"\"));",
+            "  }",
+            "",
+            "  boolean isSplittable(String s) {",
+            "    return IS_SPLITTABLE_PATTERN.split(s, IS_SPLITTABLE_PATTERN_2.matcher(s).replaceAll(\"\").length()).length > 1;",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+
+  @Test
+  void replacementWithSuppressionsAndVariablesInScope() {
+    BugCheckerRefactoringTestHelper.newInstance(RepeatedRegexCompilation.class, getClass())
+        .addInputLines(
+            "B.java", "class B {", "  protected static final String PARSE_PATTERN = \"\";", "}")
+        .expectUnchanged()
+        .addInputLines(
+            "A.java",
+            "class A extends B {",
+            "  String parse(String s) {",
+            "    return s.replaceAll(\"a+\", PARSE_PATTERN);",
+            "  }",
+            "",
+            "  String format(String s) {",
+            "    String FORMAT_PATTERN = \"b\";",
+            "    return s.replaceAll(\"c+\", FORMAT_PATTERN);",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"RepeatedRegexCompilation\")",
+            "  String suppressed(String s) {",
+            "    return s.replaceAll(\"d+\", \"\");",
+            "  }",
+            "",
+            "  String partiallySuppressed(String s) {",
+            "    @SuppressWarnings(\"RepeatedRegexCompilation\")",
+            "    String t = s.replaceAll(\"e+\", \"\");",
+            "    return t.replaceAll(\"f+\", \"\");",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import java.util.regex.Pattern;",
+            "",
+            "class A extends B {",
+            "",
+            "  private static final Pattern PARSE_PATTERN_2 = Pattern.compile(\"a+\");",
+            "",
+            "  private static final Pattern FORMAT_PATTERN_2 = Pattern.compile(\"c+\");",
+            "",
+            "  private static final Pattern PARTIALLY_SUPPRESSED_PATTERN = Pattern.compile(\"f+\");",
+            "",
+            "  String parse(String s) {",
+            "    return PARSE_PATTERN_2.matcher(s).replaceAll(PARSE_PATTERN);",
+            "  }",
+            "",
+            "  String format(String s) {",
+            "    String FORMAT_PATTERN = \"b\";",
+            "    return FORMAT_PATTERN_2.matcher(s).replaceAll(FORMAT_PATTERN);",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"RepeatedRegexCompilation\")",
+            "  String suppressed(String s) {",
+            "    return s.replaceAll(\"d+\", \"\");",
+            "  }",
+            "",
+            "  String partiallySuppressed(String s) {",
+            "    @SuppressWarnings(\"RepeatedRegexCompilation\")",
+            "    String t = s.replaceAll(\"e+\", \"\");",
+            "    return PARTIALLY_SUPPRESSED_PATTERN.matcher(t).replaceAll(\"\");",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+}
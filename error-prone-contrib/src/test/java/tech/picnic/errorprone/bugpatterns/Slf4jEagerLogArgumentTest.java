@@ -0,0 +1,149 @@
+package tech.picnic.errorprone.bugpatterns;
+
+import com.google.errorprone.BugCheckerRefactoringTestHelper;
+import com.google.errorprone.BugCheckerRefactoringTestHelper.TestMode;
+import com.google.errorprone.CompilationTestHelper;
+import org.junit.jupiter.api.Test;
+
+final class Slf4jEagerLogArgumentTest {
+  @Test
+  void identification() {
+    CompilationTestHelper.newInstance(Slf4jEagerLogArgument.class, getClass())
+        .addSourceLines(
+            "A.java",
+            "import java.util.function.Supplier;",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "import org.slf4j.Marker;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "  private static final String CONSTANT = \"constant\";",
+            "",
+            "  void m(int i, int[] array, Marker marker, Supplier<String> supplier) {",
+            "    LOG.trace(\"Without arguments\");",
+            "    LOG.debug(\"With cheap arguments: {}, {}, {}\", i, CONSTANT, -i);",
+            "    LOG.trace(\"With array element: {}\", array[i]);",
+            "    LOG.debug(\"With lambda expression: {}\", (Supplier<String>) () -> toString());",
+            "    LOG.trace(marker, \"With marker and cheap argument: {}\", i);",
+            "    LOG.debug(\"With throwable\", (Throwable) null);",
+            "",
+            "    LOG.info(\"Enabled by default: {}\", toString());",
+            "    LOG.warn(\"Enabled by default: {}\", toString());",
+            "    LOG.error(\"Enabled by default: {}\", toString());",
+            "",
+            "    if (LOG.isDebugEnabled()) {",
+            "      LOG.debug(\"Guarded: {}\", toString());",
+            "    }",
+            "    if (i > 0 && LOG.isTraceEnabled(marker)) {",
+            "      LOG.trace(marker, \"Guarded with marker: {}\", toString());",
+            "    }",
+            "    if (LOG.isDebugEnabled()) LOG.debug(\"Guarded without block: {}\", toString());",
+            "",
+            "    if (i > 0) {",
+            "      // BUG: Diagnostic contains:",
+            "      LOG.debug(\"Not guarded: {}\", toString());",
+            "    }",
+            "    if (LOG.isDebugEnabled()) {",
+            "    } else {",
+            "      // BUG: Diagnostic contains:",
+            "      LOG.debug(\"In else branch: {}\", toString());",
+            "    }",
+            "    if (LOG.isDebugEnabled()) {",
+            "      supplier =",
+            "          () -> {",
+            "            // BUG: Diagnostic contains:",
+            "            LOG.debug(\"In lambda expression: {}\", toString());",
+            "            return \"\";",
+            "          };",
+            "    }",
+            "",
+            "    // BUG: Diagnostic contains:",
+            "    LOG.trace(\"Method invocation: {}\", toString());",
+            "    // BUG: Diagnostic contains:",
+            "    LOG.debug(\"Computed array element: {}\", array[i + 1]);",
+            "    // BUG: Diagnostic contains:",
+            "    LOG.trace(\"String concatenation: \" + i);",
+            "    // BUG: Diagnostic contains:",
+            "    LOG.debug(\"Instance creation\", new RuntimeException());",
+            "    // BUG: Diagnostic contains:",
+            "    LOG.trace(marker, \"With marker: {}\", supplier.get());",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void replacement() {
+    BugCheckerRefactoringTestHelper.newInstance(Slf4jEagerLogArgument.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "import org.slf4j.Marker;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "",
+            "  void m(int i, Marker marker, RuntimeException e) {",
+            "    LOG.trace(\"Values: {}, {}\", i, String.valueOf(i));",
+            "    LOG.debug(marker, \"Value: {}\", toString(), e);",
+            "",
+            "    int nonFinalLocal = i;",
+            "    nonFinalLocal++;",
+            "    LOG.trace(\"Not effectively final: {}\", String.valueOf(nonFinalLocal));",
+            "    LOG.debug(\"Concatenation: \" + i);",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "import org.slf4j.Marker;",
+            "",
+            "class A {",
+            "  private static final Logger LOG = LoggerFactory.getLogger(A.class);",
+            "",
+            "  void m(int i, Marker marker, RuntimeException e) {",
+            "    LOG.atTrace().addArgument(i).addArgument(() -> String.valueOf(i)).log(\"Values: {}, {}\");",
+            "    LOG.atDebug().addMarker(marker).addArgument(() -> toString()).setCause(e).log(\"Value: {}\");",
+            "",
+            "    int nonFinalLocal = i;",
+            "    nonFinalLocal++;",
+            "    if (LOG.isTraceEnabled()) {",
+            "      LOG.trace(\"Not effectively final: {}\", String.valueOf(nonFinalLocal));",
+            "    }",
+            "    if (LOG.isDebugEnabled()) {",
+            "      LOG.debug(\"Concatenation: \" + i);",
+            "    }",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+
+  @Test
+  void identificationWithoutFluentApiOnClasspath() {
+    CompilationTestHelper.newInstance(Slf4jEagerLogArgument.class, getClass())
+        .withClasspath()
+        .addSourceLines(
+            "org/slf4j/Logger.java",
+            "package org.slf4j;",
+            "",
+            "public interface Logger {",
+            "  boolean isDebugEnabled();",
+            "",
+            "  void debug(String format, Object arg);",
+            "}")
+        .addSourceLines(
+            "A.java",
+            "import org.slf4j.Logger;",
+            "",
+            "class A {",
+            "  void m(Logger log, int i) {",
+            "    // BUG: Diagnostic contains: if (log.isDebugEnabled())",
+            "    log.debug(\"Value: {}\", String.valueOf(i));",
+            "  }",
+            "}")
+        .doTest();
+  }
+}
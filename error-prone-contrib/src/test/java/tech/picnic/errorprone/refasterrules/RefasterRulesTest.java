@@ -1,7 +1,10 @@
 package tech.picnic.errorprone.refasterrules;
 
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.function.Predicate.not;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
 import java.util.stream.Stream;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -80,6 +83,13 @@ final class RefasterRulesTest {
           TimeRules.class,
           WebClientRules.class);
 
+  /**
+   * Whether all tested rule collections pass validation, as determined by validating them together
+   * in a single compilation, which is considerably faster than validating them one by one.
+   */
+  private static final Supplier<Boolean> ALL_RULE_COLLECTIONS_VALID =
+      Suppliers.memoize(RefasterRulesTest::validateAllRuleCollections);
+
   // XXX: Create a JUnit extension to automatically discover the rule collections in a given context
   // to make sure the list is exhaustive.
   private static Stream<Arguments> validateRuleCollectionTestCases() {
@@ -93,6 +103,21 @@ final class RefasterRulesTest {
   @MethodSource("validateRuleCollectionTestCases")
   @ParameterizedTest
   void validateRuleCollection(Class<?> clazz) {
-    RefasterRuleCollection.validate(clazz);
+    /* Only if batch validation fails is each rule collection validated separately. */
+    if (!ALL_RULE_COLLECTIONS_VALID.get()) {
+      RefasterRuleCollection.validate(clazz);
+    }
+  }
+
+  private static boolean validateAllRuleCollections() {
+    try {
+      RefasterRuleCollection.validateAll(
+          validateRuleCollectionTestCases()
+              .map(arguments -> (Class<?>) arguments.get()[0])
+              .collect(toImmutableSet()));
+      return true;
+    } catch (AssertionError | RuntimeException e) {
+      return false;
+    }
   }
 }
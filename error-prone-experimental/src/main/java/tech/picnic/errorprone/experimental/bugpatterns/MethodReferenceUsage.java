@@ -4,11 +4,16 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.errorprone.BugPattern.LinkType.CUSTOM;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.BugPattern.StandardTags.STYLE;
+import static java.util.Objects.requireNonNull;
+import static tech.picnic.errorprone.experimental.bugpatterns.MethodReferenceUsage.Validity.INVALID;
+import static tech.picnic.errorprone.experimental.bugpatterns.MethodReferenceUsage.Validity.UNKNOWN;
+import static tech.picnic.errorprone.experimental.bugpatterns.MethodReferenceUsage.Validity.VALID;
 import static tech.picnic.errorprone.utils.Documentation.BUG_PATTERNS_BASE_URL;
 
 import com.google.auto.service.AutoService;
 import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
@@ -17,23 +22,36 @@ import com.google.errorprone.fixes.SuggestedFix;
 import com.google.errorprone.fixes.SuggestedFixes;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
+import com.google.errorprone.util.FindIdentifiers;
 import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.ExpressionStatementTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.ParenthesizedTree;
 import com.sun.source.tree.ReturnTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds.KindSelector;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
 import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import javax.lang.model.element.Name;
+import javax.lang.model.type.TypeKind;
+import org.jspecify.annotations.Nullable;
 
 /**
  * A {@link BugChecker} that flags lambda expressions that can be replaced with method references.
@@ -48,8 +66,9 @@ import javax.lang.model.element.Name;
 // black-and-white. Maybe we can more closely approximate it?
 // XXX: With Java 9's introduction of `Predicate.not`, we could write many lambda expressions to
 // `not(some::reference)`.
-// XXX: This check is extremely inefficient due to its reliance on `SuggestedFixes.compilesWithFix`.
-// Palantir's `LambdaMethodReference` check seems to suffer a similar issue at this time.
+// XXX: In cases that `assessReplacement` cannot decide, this check still falls back to
+// `SuggestedFixes.compilesWithFix`, which is expensive. Extend the type-based analysis to cover
+// more of these cases (e.g. by resolving overloads against the lambda's functional interface type).
 // XXX: Expressions of the form `i -> SomeType.class.isInstance(i)` are not replaced; fix that using
 // a suitable generalization.
 // XXX: Consider folding the `IsInstanceLambdaUsage` check of the `error-prone-contrib` module into
@@ -71,55 +90,56 @@ public final class MethodReferenceUsage extends BugChecker implements LambdaExpr
   public Description matchLambdaExpression(LambdaExpressionTree tree, VisitorState state) {
     /*
      * Lambda expressions can be used in several places where method references cannot, either
-     * because the latter are not syntactically valid or ambiguous. Rather than encoding all these
-     * edge cases we try to compile the code with the suggested fix, to see whether this works.
+     * because the latter are not syntactically valid or ambiguous. Most of these cases are
+     * identified by analyzing the types involved; see `assessReplacement`. Only if this analysis is
+     * inconclusive do we try to compile the code with the suggested fix, to see whether this works.
      */
-    return constructMethodRef(tree, tree.getBody())
-        .map(SuggestedFix.Builder::build)
-        .filter(
-            fix ->
-                SuggestedFixes.compilesWithFix(
-                    fix, state, ImmutableList.of(), /* onlyInSameCompilationUnit= */ true))
+    return constructMethodRef(tree, tree.getBody(), state)
         .map(fix -> describeMatch(tree, fix))
         .orElse(Description.NO_MATCH);
   }
 
   // XXX: Use switch pattern matching once the targeted JDK supports this.
-  private static Optional<SuggestedFix.Builder> constructMethodRef(
-      LambdaExpressionTree lambdaExpr, Tree subTree) {
+  private static Optional<SuggestedFix> constructMethodRef(
+      LambdaExpressionTree lambdaExpr, Tree subTree, VisitorState state) {
     return switch (subTree.getKind()) {
-      case BLOCK -> constructMethodRef(lambdaExpr, (BlockTree) subTree);
+      case BLOCK -> constructMethodRef(lambdaExpr, (BlockTree) subTree, state);
       case EXPRESSION_STATEMENT ->
-          constructMethodRef(lambdaExpr, ((ExpressionStatementTree) subTree).getExpression());
-      case METHOD_INVOCATION -> constructMethodRef(lambdaExpr, (MethodInvocationTree) subTree);
+          constructMethodRef(
+              lambdaExpr, ((ExpressionStatementTree) subTree).getExpression(), state);
+      case METHOD_INVOCATION ->
+          constructMethodRef(lambdaExpr, (MethodInvocationTree) subTree, state);
       case PARENTHESIZED ->
-          constructMethodRef(lambdaExpr, ((ParenthesizedTree) subTree).getExpression());
-      case RETURN -> constructMethodRef(lambdaExpr, ((ReturnTree) subTree).getExpression());
+          constructMethodRef(lambdaExpr, ((ParenthesizedTree) subTree).getExpression(), state);
+      case RETURN -> constructMethodRef(lambdaExpr, ((ReturnTree) subTree).getExpression(), state);
       default -> Optional.empty();
     };
   }
 
-  private static Optional<SuggestedFix.Builder> constructMethodRef(
-      LambdaExpressionTree lambdaExpr, BlockTree subTree) {
+  private static Optional<SuggestedFix> constructMethodRef(
+      LambdaExpressionTree lambdaExpr, BlockTree subTree, VisitorState state) {
     return Optional.of(subTree.getStatements())
         .filter(statements -> statements.size() == 1)
-        .flatMap(statements -> constructMethodRef(lambdaExpr, statements.get(0)));
+        .flatMap(statements -> constructMethodRef(lambdaExpr, statements.get(0), state));
   }
 
   // XXX: Replace nested `Optional` usage.
   @SuppressWarnings("NestedOptionals")
-  private static Optional<SuggestedFix.Builder> constructMethodRef(
-      LambdaExpressionTree lambdaExpr, MethodInvocationTree subTree) {
+  private static Optional<SuggestedFix> constructMethodRef(
+      LambdaExpressionTree lambdaExpr, MethodInvocationTree subTree, VisitorState state) {
     return matchArguments(lambdaExpr, subTree)
-        .flatMap(expectedInstance -> constructMethodRef(lambdaExpr, subTree, expectedInstance));
+        .flatMap(
+            expectedInstance -> constructMethodRef(lambdaExpr, subTree, expectedInstance, state));
   }
 
   // XXX: Review whether to use switch pattern matching once the targeted JDK supports this.
-  private static Optional<SuggestedFix.Builder> constructMethodRef(
+  private static Optional<SuggestedFix> constructMethodRef(
       LambdaExpressionTree lambdaExpr,
       MethodInvocationTree subTree,
-      Optional<Name> expectedInstance) {
+      Optional<Name> expectedInstance,
+      VisitorState state) {
     ExpressionTree methodSelect = subTree.getMethodSelect();
+    MethodSymbol method = ASTHelpers.getSymbol(subTree);
 
     if (methodSelect instanceof IdentifierTree) {
       if (expectedInstance.isPresent()) {
@@ -127,21 +147,39 @@ public final class MethodReferenceUsage extends BugChecker implements LambdaExpr
         return Optional.empty();
       }
 
-      Symbol sym = ASTHelpers.getSymbol(subTree);
-      return ASTHelpers.isStatic(sym)
-          ? constructFix(lambdaExpr, sym.owner, methodSelect)
-          : constructFix(lambdaExpr, "this", methodSelect);
+      if (ASTHelpers.isStatic(method)) {
+        return validate(
+            constructFix(lambdaExpr, method.owner, methodSelect),
+            assessReference(method.owner, state)
+                .and(assessReplacement(lambdaExpr, subTree, method.owner.type, true, state)),
+            state);
+      }
+
+      ClassSymbol enclosingClass = getEnclosingClass(state);
+      if (!enclosingClass.isSubClass(method.owner, state.getTypes())) {
+        /* The method is a member of an enclosing class, which `this` does not refer to. */
+        return Optional.empty();
+      }
+
+      return validate(
+          constructFix(lambdaExpr, "this", methodSelect),
+          assessReplacement(lambdaExpr, subTree, enclosingClass.type, false, state),
+          state);
     }
 
     if (methodSelect instanceof MemberSelectTree memberSelect) {
-      return constructMethodRef(lambdaExpr, memberSelect, expectedInstance);
+      return constructMethodRef(lambdaExpr, subTree, memberSelect, expectedInstance, state);
     }
 
     throw new VerifyException("Unexpected type of expression: " + methodSelect.getKind());
   }
 
-  private static Optional<SuggestedFix.Builder> constructMethodRef(
-      LambdaExpressionTree lambdaExpr, MemberSelectTree subTree, Optional<Name> expectedInstance) {
+  private static Optional<SuggestedFix> constructMethodRef(
+      LambdaExpressionTree lambdaExpr,
+      MethodInvocationTree invocation,
+      MemberSelectTree subTree,
+      Optional<Name> expectedInstance,
+      VisitorState state) {
     if (!(subTree.getExpression() instanceof IdentifierTree identifier)) {
       // XXX: Could be parenthesized. Handle. Also in other classes.
       /*
@@ -151,20 +189,48 @@ public final class MethodReferenceUsage extends BugChecker implements LambdaExpr
       return Optional.empty();
     }
 
+    MethodSymbol method = ASTHelpers.getSymbol(invocation);
+    Type lhsType = ASTHelpers.getType(identifier);
+    if (lhsType == null) {
+      return Optional.empty();
+    }
+
     Name lhs = identifier.getName();
     if (expectedInstance.isEmpty()) {
-      return constructFix(lambdaExpr, lhs, subTree.getIdentifier());
+      /*
+       * The qualifier is either a type, in which case the method must be static, or an
+       * expression, in which case the method must not be static.
+       */
+      Symbol lhsSymbol = ASTHelpers.getSymbol(identifier);
+      if (!(lhsSymbol instanceof ClassSymbol) && !(lhsSymbol instanceof VarSymbol)) {
+        return validate(constructFix(lambdaExpr, lhs, subTree.getIdentifier()), UNKNOWN, state);
+      }
+
+      if (ASTHelpers.isStatic(method) != lhsSymbol instanceof ClassSymbol) {
+        return Optional.empty();
+      }
+
+      return validate(
+          constructFix(lambdaExpr, lhs, subTree.getIdentifier()),
+          assessReplacement(
+              lambdaExpr, invocation, lhsType, lhsSymbol instanceof ClassSymbol, state),
+          state);
     }
 
-    Type lhsType = ASTHelpers.getType(identifier);
-    if (lhsType == null || !expectedInstance.orElseThrow().equals(lhs)) {
+    if (!expectedInstance.orElseThrow().equals(lhs) || ASTHelpers.isStatic(method)) {
       return Optional.empty();
     }
 
     // XXX: Dropping generic type information is in most cases fine or even more likely to yield a
     // valid expression, but in some cases it's necessary to keep them. Maybe return multiple
     // variants?
-    return constructFix(lambdaExpr, lhsType.tsym, subTree.getIdentifier());
+    return validate(
+        constructFix(lambdaExpr, lhsType.tsym, subTree.getIdentifier()),
+        lhsType.getKind() == TypeKind.DECLARED && lhsType.tsym instanceof ClassSymbol
+            ? assessReference(lhsType.tsym, state)
+                .and(assessReplacement(lambdaExpr, invocation, lhsType, true, state))
+            : UNKNOWN,
+        state);
   }
 
   // XXX: Refactor or replace inner `Optional` with a custom type.
@@ -194,6 +260,229 @@ public final class MethodReferenceUsage extends BugChecker implements LambdaExpr
     return tree.getParameters().stream().map(VariableTree::getName).collect(toImmutableList());
   }
 
+  /**
+   * Returns the given fix if it is known to be valid, or if it is not known to be invalid and the
+   * code compiles with the fix applied.
+   *
+   * <p>The latter check requires recompilation of the entire compilation unit, and is therefore
+   * performed only for the (rare) cases in which the type-based analysis is inconclusive.
+   */
+  private static Optional<SuggestedFix> validate(
+      Optional<SuggestedFix.Builder> fix, Validity validity, VisitorState state) {
+    return fix.map(SuggestedFix.Builder::build)
+        .filter(
+            f ->
+                validity == VALID
+                    || (validity == UNKNOWN
+                        && SuggestedFixes.compilesWithFix(
+                            f, state, ImmutableList.of(), /* onlyInSameCompilationUnit= */ true)));
+  }
+
+  /**
+   * Tells whether the given type can be referenced by its simple name from the current location,
+   * possibly after importing it.
+   */
+  private static Validity assessReference(Symbol type, VisitorState state) {
+    if (!(type instanceof ClassSymbol clazz)) {
+      return UNKNOWN;
+    }
+
+    Symbol resolved =
+        FindIdentifiers.findIdent(type.getSimpleName().toString(), state, KindSelector.TYP);
+    if (resolved != null) {
+      /* A type with the same simple name is in scope; this must be the referenced type. */
+      return type.equals(resolved) ? VALID : INVALID;
+    }
+
+    return clazz.isDirectlyOrIndirectlyLocal() || !isAccessible(clazz, state) ? UNKNOWN : VALID;
+  }
+
+  private static boolean isAccessible(ClassSymbol clazz, VisitorState state) {
+    PackageSymbol currentPackage = ASTHelpers.enclosingPackage(getEnclosingClass(state));
+    for (Symbol sym = clazz; sym instanceof ClassSymbol; sym = sym.owner) {
+      if ((sym.flags() & Flags.PUBLIC) == 0
+          && ((sym.flags() & Flags.PRIVATE) != 0
+              || !Objects.equals(ASTHelpers.enclosingPackage(sym), currentPackage))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static ClassSymbol getEnclosingClass(VisitorState state) {
+    return ASTHelpers.getSymbol(
+        requireNonNull(state.findEnclosing(ClassTree.class), "No class enclosing lambda"));
+  }
+
+  /**
+   * Determines, without recompilation, whether a method reference to the method invoked by the
+   * given lambda expression body resolves to the same method, and whether the lambda expression's
+   * target type is unaffected by the replacement.
+   *
+   * <p>A method reference is resolved by searching the qualifier type for methods with a suitable
+   * arity; if the qualifier is a type, then both static methods accepting all of the function's
+   * parameters and instance methods accepting all but the first are considered. This analysis
+   * conservatively reports {@link Validity#UNKNOWN} if such a search may yield any other method
+   * than the one currently invoked. Likewise, unlike an implicitly typed lambda expression, an
+   * exact method reference is pertinent to applicability, such that its introduction may influence
+   * overload resolution of an enclosing method invocation.
+   *
+   * @param lambdaExpr The lambda expression to be replaced.
+   * @param invocation The method invocation that constitutes the lambda expression's body.
+   * @param qualifierType The type in which the method reference's method is searched.
+   * @param typeQualified Whether the method reference is qualified by a type, rather than an
+   *     expression.
+   * @param state The visitor state, pointing at the lambda expression.
+   * @return The validity of the suggested method reference.
+   */
+  private static Validity assessReplacement(
+      LambdaExpressionTree lambdaExpr,
+      MethodInvocationTree invocation,
+      Type qualifierType,
+      boolean typeQualified,
+      VisitorState state) {
+    MethodSymbol method = ASTHelpers.getSymbol(invocation);
+    if (!invocation.getTypeArguments().isEmpty()
+        || method.isVarArgs()
+        || !(qualifierType.tsym instanceof ClassSymbol)) {
+      return UNKNOWN;
+    }
+
+    int arity = lambdaExpr.getParameters().size();
+    ImmutableSet<Integer> arities =
+        typeQualified ? ImmutableSet.of(arity, arity - 1) : ImmutableSet.of(arity);
+    Types types = state.getTypes();
+    if (hasOtherPotentiallyApplicableMethod(
+        method,
+        qualifierType,
+        types.membersClosure(qualifierType, /* skipInterface= */ false)
+            .getSymbolsByName(method.getSimpleName()),
+        arities,
+        types)) {
+      return UNKNOWN;
+    }
+
+    return assessTargetTyping(state);
+  }
+
+  /**
+   * Tells whether the lambda expression's target type is determined independently of its exact
+   * shape.
+   */
+  private static Validity assessTargetTyping(VisitorState state) {
+    TreePath parentPath = state.getPath().getParentPath();
+    Tree parent = parentPath.getLeaf();
+    return switch (parent.getKind()) {
+      case ASSIGNMENT, TYPE_CAST, VARIABLE -> VALID;
+      case RETURN -> isReturnedFromMethod(parentPath) ? VALID : UNKNOWN;
+      case METHOD_INVOCATION -> assessOverloads((MethodInvocationTree) parent, parentPath, state);
+      case NEW_CLASS -> assessOverloads((NewClassTree) parent, state);
+      default -> UNKNOWN;
+    };
+  }
+
+  private static boolean isReturnedFromMethod(TreePath returnPath) {
+    for (TreePath path = returnPath; path != null; path = path.getParentPath()) {
+      Tree.Kind kind = path.getLeaf().getKind();
+      if (kind == Tree.Kind.METHOD || kind == Tree.Kind.LAMBDA_EXPRESSION) {
+        return kind == Tree.Kind.METHOD;
+      }
+    }
+
+    return false;
+  }
+
+  private static Validity assessOverloads(
+      MethodInvocationTree invocation, TreePath invocationPath, VisitorState state) {
+    MethodSymbol method = ASTHelpers.getSymbol(invocation);
+    Type site = getSearchedType(invocation.getMethodSelect(), method, invocationPath, state);
+    if (site == null) {
+      return UNKNOWN;
+    }
+
+    Types types = state.getTypes();
+    return hasOtherPotentiallyApplicableMethod(
+            method,
+            site,
+            types.membersClosure(site, /* skipInterface= */ false)
+                .getSymbolsByName(method.getSimpleName()),
+            ImmutableSet.of(invocation.getArguments().size()),
+            types)
+        ? UNKNOWN
+        : VALID;
+  }
+
+  private static Validity assessOverloads(NewClassTree newClass, VisitorState state) {
+    if (newClass.getClassBody() != null) {
+      return UNKNOWN;
+    }
+
+    MethodSymbol constructor = ASTHelpers.getSymbol(newClass);
+    Type site = constructor.owner.type;
+    return hasOtherPotentiallyApplicableMethod(
+            constructor,
+            site,
+            site.tsym.members().getSymbolsByName(constructor.getSimpleName()),
+            ImmutableSet.of(newClass.getArguments().size()),
+            state.getTypes())
+        ? UNKNOWN
+        : VALID;
+  }
+
+  /**
+   * Returns the type in which the method invoked by the given method select was looked up, or
+   * {@code null} if this cannot be determined.
+   */
+  private static @Nullable Type getSearchedType(
+      ExpressionTree methodSelect, MethodSymbol method, TreePath path, VisitorState state) {
+    if (methodSelect instanceof MemberSelectTree memberSelect) {
+      Type receiverType = ASTHelpers.getType(memberSelect.getExpression());
+      return receiverType != null && receiverType.tsym instanceof ClassSymbol
+          ? receiverType
+          : null;
+    }
+
+    /*
+     * An unqualified method invocation refers to a member of the innermost enclosing class that
+     * has a member by that name.
+     */
+    Types types = state.getTypes();
+    for (TreePath p = path; p != null; p = p.getParentPath()) {
+      if (p.getLeaf() instanceof ClassTree classTree) {
+        ClassSymbol clazz = ASTHelpers.getSymbol(classTree);
+        if (types
+            .membersClosure(clazz.type, /* skipInterface= */ false)
+            .getSymbolsByName(method.getSimpleName())
+            .iterator()
+            .hasNext()) {
+          return clazz.type;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean hasOtherPotentiallyApplicableMethod(
+      MethodSymbol method,
+      Type site,
+      Iterable<Symbol> candidates,
+      ImmutableSet<Integer> arities,
+      Types types) {
+    Type methodType = types.memberType(site, method);
+    for (Symbol candidate : candidates) {
+      if (candidate instanceof MethodSymbol other
+          && !other.equals(method)
+          && (other.isVarArgs() || arities.contains(other.getParameters().size()))
+          && !types.overrideEquivalent(types.memberType(site, other), methodType)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   // XXX: Resolve this suppression.
   @SuppressWarnings("UnqualifiedSuggestedFixImport")
   private static Optional<SuggestedFix.Builder> constructFix(
@@ -216,4 +505,18 @@ public final class MethodReferenceUsage extends BugChecker implements LambdaExpr
       LambdaExpressionTree lambdaExpr, Object target, Object methodName) {
     return Optional.of(SuggestedFix.builder().replace(lambdaExpr, target + "::" + methodName));
   }
+
+  /** The outcome of an analysis of whether a suggested method reference is valid. */
+  enum Validity {
+    /** The method reference is certainly invalid. */
+    INVALID,
+    /** The validity of the method reference cannot be determined without recompilation. */
+    UNKNOWN,
+    /** The method reference is certainly valid. */
+    VALID;
+
+    Validity and(Validity other) {
+      return compareTo(other) <= 0 ? this : other;
+    }
+  }
 }
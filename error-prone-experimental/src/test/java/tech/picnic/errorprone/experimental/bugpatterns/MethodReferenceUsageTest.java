@@ -428,4 +428,63 @@ final class MethodReferenceUsageTest {
             "}")
         .doTest(TestMode.TEXT_MATCH);
   }
+
+  @Test
+  void replacementOfShadowedMembers() {
+    BugCheckerRefactoringTestHelper.newInstance(MethodReferenceUsage.class, getClass())
+        .addInputLines(
+            "A.java",
+            "import java.util.Map;",
+            "import java.util.stream.Stream;",
+            "",
+            "class A {",
+            "  void m(Stream<Integer> s) {",
+            "    s.forEach(v -> ivoid1(v));",
+            "    s.forEach(v -> svoid1(v));",
+            "    new Object() {",
+            "      void n() {",
+            "        s.forEach(v -> ivoid1(v));",
+            "        s.forEach(v -> svoid1(v));",
+            "      }",
+            "    };",
+            "",
+            "    Stream.of((Map<?, ?>) null).map(Map::keySet).map(k -> k.size());",
+            "    Stream.of((Map<?, ?>) null).map(Map::values).map(v -> v.size());",
+            "  }",
+            "",
+            "  void ivoid1(int a) {}",
+            "",
+            "  static void svoid1(int a) {}",
+            "",
+            "  static final class Set {}",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "import java.util.Collection;",
+            "import java.util.Map;",
+            "import java.util.stream.Stream;",
+            "",
+            "class A {",
+            "  void m(Stream<Integer> s) {",
+            "    s.forEach(this::ivoid1);",
+            "    s.forEach(A::svoid1);",
+            "    new Object() {",
+            "      void n() {",
+            "        s.forEach(v -> ivoid1(v));",
+            "        s.forEach(A::svoid1);",
+            "      }",
+            "    };",
+            "",
+            "    Stream.of((Map<?, ?>) null).map(Map::keySet).map(k -> k.size());",
+            "    Stream.of((Map<?, ?>) null).map(Map::values).map(Collection::size);",
+            "  }",
+            "",
+            "  void ivoid1(int a) {}",
+            "",
+            "  static void svoid1(int a) {}",
+            "",
+            "  static final class Set {}",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
 }
@@ -0,0 +1,262 @@
+package tech.picnic.errorprone.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.reverseOrder;
+import static java.util.Map.Entry.comparingByValue;
+import static java.util.stream.Collectors.joining;
+
+import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.errorprone.ErrorProneTimings;
+import com.sun.management.ThreadMXBean;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskEvent.Kind;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.WriterKind;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A compiler {@link Plugin} that measures the cost of individual bug checkers, such that expensive
+ * checks can be identified.
+ *
+ * <p>Profiling is enabled by passing {@code -Xplugin:BugCheckerProfiler
+ * -XreportDirectory=<someDirectory>} to a compilation that is also analyzed by Error Prone. Bug
+ * checkers need not opt in: Error Prone already tracks the time spent by each of them (see {@link
+ * ErrorProneTimings}), and this plugin merely attributes said time to the compilation units being
+ * analyzed.
+ *
+ * <p>Once compilation completes, the time spent by each bug checker on each compilation unit is
+ * written to {@value #REPORT_FILE} in the specified directory, as a JSON array in which the most
+ * expensive entries are listed first. Where the JVM supports it, the number of bytes allocated
+ * while analyzing each compilation unit is likewise written to {@value #ALLOCATION_REPORT_FILE}.
+ * Subsequent compilations that use the same directory overwrite these files.
+ */
+@AutoService(Plugin.class)
+public final class BugCheckerProfiler implements Plugin {
+  @VisibleForTesting static final String REPORT_FILE = "bug-checker-profile.json";
+  @VisibleForTesting static final String ALLOCATION_REPORT_FILE = "bug-checker-allocations.json";
+  @VisibleForTesting static final String REPORT_DIRECTORY_FLAG = "-XreportDirectory";
+  private static final Pattern REPORT_DIRECTORY_FLAG_PATTERN =
+      Pattern.compile(Pattern.quote(REPORT_DIRECTORY_FLAG) + "=(.*)");
+
+  /** Instantiates a new {@link BugCheckerProfiler} instance. */
+  public BugCheckerProfiler() {}
+
+  @Override
+  public String getName() {
+    return getClass().getSimpleName();
+  }
+
+  @Override
+  public void init(JavacTask javacTask, String... args) {
+    checkArgument(args.length == 1, "Precisely one path must be provided");
+
+    javacTask.addTaskListener(
+        new ProfilingTaskListener(
+            ((BasicJavacTask) javacTask).getContext(), getReportDirectory(args[0])));
+  }
+
+  @VisibleForTesting
+  static Path getReportDirectory(String pathArg) {
+    Matcher matcher = REPORT_DIRECTORY_FLAG_PATTERN.matcher(pathArg);
+    checkArgument(
+        matcher.matches(), "'%s' must be of the form '%s=<value>'", pathArg, REPORT_DIRECTORY_FLAG);
+
+    String path = matcher.group(1);
+    try {
+      return Path.of(path);
+    } catch (InvalidPathException e) {
+      throw new IllegalArgumentException(String.format("Invalid path '%s'", path), e);
+    }
+  }
+
+  /**
+   * A {@link TaskListener} that attributes the bug checker timings tracked by Error Prone to the
+   * compilation units being analyzed, and reports the result once compilation completes.
+   *
+   * <p>Error Prone analyzes a compilation unit when the associated {@link Kind#ANALYZE} event
+   * finishes. This listener samples Error Prone's timings at the same moment, so it must be invoked
+   * after Error Prone's listener; hence it moves itself to the end of the listener chain once
+   * compilation starts, by which time all compiler plugins have been initialized.
+   *
+   * <p>Where supported, the number of bytes allocated by the compiler thread is sampled upon each
+   * compilation event. The bytes allocated since the preceding event are attributed to the
+   * compilation unit whose {@link Kind#ANALYZE} event finishes; this covers javac's flow analysis
+   * and Error Prone's analysis of said compilation unit.
+   */
+  // XXX: With the `simple` compile policy all compilation units are attributed before any of them
+  // is flow-analyzed, so the bytes attributed to the first analyzed compilation unit also include
+  // those allocated while attributing the last one.
+  private static final class ProfilingTaskListener implements TaskListener {
+    private final Context context;
+    private final Path reportDirectory;
+    private final @Nullable ThreadMXBean threadMxBean = getAllocationTrackingThreadMxBean();
+    private final Map<StatisticsKey, Duration> statistics = new HashMap<>();
+    private final Map<String, Long> allocatedBytes = new HashMap<>();
+    private ImmutableMap<String, Duration> lastTimings = ImmutableMap.of();
+    private long lastAllocatedBytes;
+
+    ProfilingTaskListener(Context context, Path reportDirectory) {
+      this.context = context;
+      this.reportDirectory = reportDirectory;
+    }
+
+    @Override
+    public void started(TaskEvent taskEvent) {
+      if (taskEvent.getKind() == Kind.COMPILATION) {
+        MultiTaskListener listeners = MultiTaskListener.instance(context);
+        listeners.remove(this);
+        listeners.add(this);
+      }
+
+      sampleAllocatedBytes();
+    }
+
+    @Override
+    public void finished(TaskEvent taskEvent) {
+      long allocated = sampleAllocatedBytes();
+      if (taskEvent.getKind() == Kind.ANALYZE && taskEvent.getSourceFile() != null) {
+        String compilationUnit = taskEvent.getSourceFile().toUri().toString();
+        attributeTimings(compilationUnit);
+        if (threadMxBean != null) {
+          allocatedBytes.merge(compilationUnit, allocated, Long::sum);
+        }
+      } else if (taskEvent.getKind() == Kind.COMPILATION) {
+        writeReport();
+      }
+    }
+
+    /**
+     * Samples the number of bytes allocated by the current thread.
+     *
+     * @return The number of bytes allocated since the previous sample, or zero if this is not
+     *     supported.
+     */
+    private long sampleAllocatedBytes() {
+      if (threadMxBean == null) {
+        return 0;
+      }
+
+      long previous = lastAllocatedBytes;
+      lastAllocatedBytes = threadMxBean.getCurrentThreadAllocatedBytes();
+      return lastAllocatedBytes - previous;
+    }
+
+    private void attributeTimings(String compilationUnit) {
+      ImmutableMap<String, Duration> timings = ErrorProneTimings.instance(context).timings();
+      for (Map.Entry<String, Duration> entry : timings.entrySet()) {
+        Duration elapsed =
+            entry.getValue().minus(lastTimings.getOrDefault(entry.getKey(), Duration.ZERO));
+        if (!elapsed.isZero()) {
+          statistics.merge(
+              new StatisticsKey(entry.getKey(), compilationUnit), elapsed, Duration::plus);
+        }
+      }
+      lastTimings = timings;
+    }
+
+    private void writeReport() {
+      writeReport(REPORT_FILE, getTimingEntries());
+      if (threadMxBean != null) {
+        writeReport(ALLOCATION_REPORT_FILE, getAllocationEntries());
+      }
+    }
+
+    private ImmutableList<String> getTimingEntries() {
+      return statistics.entrySet().stream()
+          .sorted(comparingByValue(reverseOrder()))
+          .map(
+              e ->
+                  String.format(
+                      Locale.ROOT,
+                      "  {\"check\": %s, \"compilationUnit\": %s, \"timeNanos\": %d}",
+                      JsonStrings.quote(e.getKey().checkName),
+                      JsonStrings.quote(e.getKey().compilationUnit),
+                      e.getValue().toNanos()))
+          .collect(toImmutableList());
+    }
+
+    private ImmutableList<String> getAllocationEntries() {
+      return allocatedBytes.entrySet().stream()
+          .sorted(comparingByValue(reverseOrder()))
+          .map(
+              e ->
+                  String.format(
+                      Locale.ROOT,
+                      "  {\"compilationUnit\": %s, \"allocatedBytes\": %d}",
+                      JsonStrings.quote(e.getKey()),
+                      e.getValue()))
+          .collect(toImmutableList());
+    }
+
+    private void writeReport(String fileName, ImmutableList<String> entries) {
+      String json =
+          entries.isEmpty() ? "[]\n" : entries.stream().collect(joining(",\n", "[\n", "\n]\n"));
+
+      try {
+        Files.createDirectories(reportDirectory);
+        Files.writeString(reportDirectory.resolve(fileName), json, UTF_8);
+      } catch (IOException e) {
+        /* A failure to report on the compilation should not cause the compilation to fail. */
+        Log.instance(context)
+            .printRawLines(
+                WriterKind.WARNING,
+                String.format(
+                    "Failed to write bug checker profile to '%s': %s", reportDirectory, e));
+      }
+    }
+  }
+
+  private static @Nullable ThreadMXBean getAllocationTrackingThreadMxBean() {
+    return ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threadMxBean
+            && threadMxBean.isThreadAllocatedMemorySupported()
+            && threadMxBean.isThreadAllocatedMemoryEnabled()
+        ? threadMxBean
+        : null;
+  }
+
+  /** Identifies a bug checker's statistics for a single compilation unit. */
+  private static final class StatisticsKey {
+    private final String checkName;
+    private final String compilationUnit;
+
+    StatisticsKey(String checkName, String compilationUnit) {
+      this.checkName = checkName;
+      this.compilationUnit = compilationUnit;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      return obj instanceof StatisticsKey other
+          && checkName.equals(other.checkName)
+          && compilationUnit.equals(other.compilationUnit);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(checkName, compilationUnit);
+    }
+  }
+}
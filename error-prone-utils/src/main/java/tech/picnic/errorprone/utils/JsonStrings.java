@@ -0,0 +1,36 @@
+package tech.picnic.errorprone.utils;
+
+import java.util.Locale;
+
+/** A collection of utility methods for emitting JSON without depending on a JSON library. */
+public final class JsonStrings {
+  private JsonStrings() {}
+
+  /**
+   * Returns a JSON string literal (i.e., a quoted string) representing the given input.
+   *
+   * <p>Quotation marks, backslashes and control characters are escaped as required by <a
+   * href="https://www.rfc-editor.org/rfc/rfc8259#section-7">RFC 8259</a>; all other characters are
+   * emitted as-is.
+   *
+   * @param value The string of interest.
+   * @return A non-{@code null} JSON string literal.
+   */
+  public static String quote(String value) {
+    StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> literal.append("\\\"");
+        case '\\' -> literal.append("\\\\");
+        case '\b' -> literal.append("\\b");
+        case '\f' -> literal.append("\\f");
+        case '\n' -> literal.append("\\n");
+        case '\r' -> literal.append("\\r");
+        case '\t' -> literal.append("\\t");
+        default -> literal.append(c < ' ' ? String.format(Locale.ROOT, "\\u%04x", (int) c) : c);
+      }
+    }
+    return literal.append('"').toString();
+  }
+}
@@ -0,0 +1,91 @@
+package tech.picnic.errorprone.utils;
+
+import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.picnic.errorprone.utils.BugCheckerProfiler.REPORT_DIRECTORY_FLAG;
+
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.CompilationTestHelper;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.ClassTreeMatcher;
+import com.google.errorprone.matchers.Description;
+import com.sun.source.tree.ClassTree;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+final class BugCheckerProfilerTest {
+  @Test
+  void profile(@TempDir Path reportDirectory) {
+    CompilationTestHelper.newInstance(TestChecker.class, getClass())
+        .setArgs("-Xplugin:BugCheckerProfiler " + REPORT_DIRECTORY_FLAG + '=' + reportDirectory)
+        .addSourceLines(
+            "A.java",
+            "// BUG: Diagnostic contains:",
+            "class A {",
+            "  // BUG: Diagnostic contains:",
+            "  class B {}",
+            "}")
+        .addSourceLines("C.java", "// BUG: Diagnostic contains:", "class C {}")
+        .doTest();
+
+    assertThat(reportDirectory.resolve(BugCheckerProfiler.REPORT_FILE))
+        .content()
+        .containsPattern(
+            "\\{\"check\": \"TestChecker\", \"compilationUnit\": \"[^\"]+/A\\.java\", "
+                + "\"timeNanos\": [1-9]\\d*}")
+        .containsPattern(
+            "\\{\"check\": \"TestChecker\", \"compilationUnit\": \"[^\"]+/C\\.java\", "
+                + "\"timeNanos\": [1-9]\\d*}");
+    assertThat(reportDirectory.resolve(BugCheckerProfiler.ALLOCATION_REPORT_FILE))
+        .content()
+        .containsPattern(
+            "\\{\"compilationUnit\": \"[^\"]+/A\\.java\", \"allocatedBytes\": [1-9]\\d*}")
+        .containsPattern(
+            "\\{\"compilationUnit\": \"[^\"]+/C\\.java\", \"allocatedBytes\": [1-9]\\d*}");
+  }
+
+  @Test
+  void profileWithoutAnalyzedCode(@TempDir Path reportDirectory) {
+    CompilationTestHelper.newInstance(TestChecker.class, getClass())
+        .setArgs("-Xplugin:BugCheckerProfiler " + REPORT_DIRECTORY_FLAG + '=' + reportDirectory)
+        .addSourceLines("package-info.java", "package pkg;")
+        .doTest();
+
+    assertThat(reportDirectory.resolve(BugCheckerProfiler.REPORT_FILE)).content().isEqualTo("[]\n");
+    assertThat(reportDirectory.resolve(BugCheckerProfiler.ALLOCATION_REPORT_FILE))
+        .content()
+        .containsPattern(
+            "\\{\"compilationUnit\": \"[^\"]+/package-info\\.java\", \"allocatedBytes\": \\d+}");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"bar", "foo"})
+  void getReportDirectory(String path) {
+    assertThat(BugCheckerProfiler.getReportDirectory(REPORT_DIRECTORY_FLAG + '=' + path))
+        .isEqualTo(Path.of(path));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "-XreportDirectory", "invalidOption=Test", "nothing"})
+  void getReportDirectoryWithInvalidArgument(String pathArg) {
+    assertThatThrownBy(() -> BugCheckerProfiler.getReportDirectory(pathArg))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'%s' must be of the form '%s=<value>'", pathArg, REPORT_DIRECTORY_FLAG);
+  }
+
+  /** A {@link BugChecker} that flags all classes. */
+  @BugPattern(summary = "Flags all classes", severity = ERROR)
+  public static final class TestChecker extends BugChecker implements ClassTreeMatcher {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Description matchClass(ClassTree tree, VisitorState state) {
+      return describeMatch(tree);
+    }
+  }
+}
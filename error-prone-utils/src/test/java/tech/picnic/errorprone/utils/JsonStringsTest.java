@@ -0,0 +1,30 @@
+package tech.picnic.errorprone.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+final class JsonStringsTest {
+  private static Stream<Arguments> quoteTestCases() {
+    /* { value, expected } */
+    return Stream.of(
+        arguments("", "\"\""),
+        arguments("foo", "\"foo\""),
+        arguments("a\"b", "\"a\\\"b\""),
+        arguments("a\\b", "\"a\\\\b\""),
+        arguments("a/b", "\"a/b\""),
+        arguments("\b\f\n\r\t", "\"\\b\\f\\n\\r\\t\""),
+        arguments("\u0000\u001f", "\"\\u0000\\u001f\""),
+        arguments(" \u007fé€", "\" \u007fé€\""));
+  }
+
+  @MethodSource("quoteTestCases")
+  @ParameterizedTest
+  void quote(String value, String expected) {
+    assertThat(JsonStrings.quote(value)).isEqualTo(expected);
+  }
+}
@@ -18,8 +18,8 @@ validation_error_prone_flags=''
 #   Javadoc has certain closing tags that are removed by Google Java Format.
 validation_build_flags='-Dtest=!MetadataGeneratorUtilTest#metadataFilesGenerationAllFiles,!XdocsJavaDocsTest#allCheckSectionJavaDocs'
 
-if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1:---sync}" != '--sync' ]); then
-  >&2 echo "Usage: ${0} [--sync] [<report_directory>]"
+if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1}" != '--sync' ] && [ "${1}" != '--benchmark' ]); then
+  >&2 echo "Usage: ${0} [--sync|--benchmark] [<report_directory>]"
   exit 1
 fi
 
@@ -13,8 +13,8 @@ patch_error_prone_flags=''
 validation_error_prone_flags=''
 validation_build_flags=''
 
-if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1:---sync}" != '--sync' ]); then
-  >&2 echo "Usage: ${0} [--sync] [<report_directory>]"
+if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1}" != '--sync' ] && [ "${1}" != '--benchmark' ]); then
+  >&2 echo "Usage: ${0} [--sync|--benchmark] [<report_directory>]"
   exit 1
 fi
 
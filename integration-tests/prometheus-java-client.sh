@@ -21,8 +21,8 @@ validation_error_prone_flags=''
 # specified here can then be dropped.
 validation_build_flags='-Dtest=!PushGatewayIT,!SlidingWindowTest#rotate -Dsurefire.failIfNoSpecifiedTests=false'
 
-if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1:---sync}" != '--sync' ]); then
-  >&2 echo "Usage: ${0} [--sync] [<report_directory>]"
+if [ "${#}" -gt 2 ] || ([ "${#}" = 2 ] && [ "${1}" != '--sync' ] && [ "${1}" != '--benchmark' ]); then
+  >&2 echo "Usage: ${0} [--sync|--benchmark] [<report_directory>]"
   exit 1
 fi
 
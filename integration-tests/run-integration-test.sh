@@ -5,6 +5,11 @@
 # This script is not meant to be invoked manually. Instead it should be invoked
 # through one of the top-level integration test scripts, such as
 # `checkstyle.sh`.
+#
+# When invoked with `--benchmark`, the expected changes and warnings are not
+# verified. Instead the project is repeatedly built using several Error Prone
+# configurations, and the wall-clock and CPU time of each build are reported to
+# the specified report directory, which in this mode is mandatory.
 
 set -e -u -o pipefail
 
@@ -12,8 +17,8 @@ integration_test_root="$(cd "$(dirname -- "${0}")" && pwd)"
 error_prone_support_root="${integration_test_root}/.."
 repos_root="${integration_test_root}/.repos"
 
-if [ "${#}" -lt 10 ] || [ "${#}" -gt 12 ] || ([ "${#}" = 12 ] && [ "${11:---sync}" != '--sync' ]); then
-  >&2 echo "Usage: $(basename "${0}") <test_name> <project> <repository> <revision> <additional_build_flags> <additional_source_directories> <shared_error_prone_flags> <patch_error_prone_flags> <validation_error_prone_flags> <validation_build_flags> [--sync] [<report_directory>]"
+if [ "${#}" -lt 10 ] || [ "${#}" -gt 12 ] || ([ "${#}" = 12 ] && [ "${11}" != '--sync' ] && [ "${11}" != '--benchmark' ]); then
+  >&2 echo "Usage: $(basename "${0}") <test_name> <project> <repository> <revision> <additional_build_flags> <additional_source_directories> <shared_error_prone_flags> <patch_error_prone_flags> <validation_error_prone_flags> <validation_build_flags> [--sync|--benchmark] [<report_directory>]"
   exit 1
 fi
 
@@ -27,8 +32,19 @@ shared_error_prone_flags="${7}"
 patch_error_prone_flags="${8}"
 validation_error_prone_flags="${9}"
 validation_build_flags="${10}"
-do_sync="$([ "${#}" = 10 ] || [ "${11:-}" != '--sync' ] || echo 1)"
-report_directory="$([ "${#}" = 10 ] || ([ -z "${do_sync}" ] && echo "${11}") || ([ "${#}" = 11 ] || echo "${12}"))"
+mode="$([ "${#}" = 10 ] || ([ "${11}" != '--sync' ] && [ "${11}" != '--benchmark' ]) || echo "${11}")"
+do_sync="$([ "${mode}" != '--sync' ] || echo 1)"
+do_benchmark="$([ "${mode}" != '--benchmark' ] || echo 1)"
+report_directory="$([ "${#}" = 10 ] || ([ -z "${mode}" ] && echo "${11}") || ([ "${#}" = 11 ] || echo "${12}"))"
+
+# The number of measured builds per benchmarked configuration. Each series of
+# measured builds is preceded by an unmeasured warm-up build.
+benchmark_iterations=3
+
+if [ -n "${do_benchmark}" ] && [ -z "${report_directory}" ]; then
+  >&2 echo 'A report directory must be specified in benchmark mode.'
+  exit 1
+fi
 
 if [ -n "${report_directory}" ]; then
   mkdir -p "${report_directory}"
@@ -65,23 +81,21 @@ shared_build_flags="
 
 format_goal='com.spotify.fmt:fmt-maven-plugin:2.25:format'
 
-error_prone_patch_flags="${shared_error_prone_flags} -XepPatchLocation:IN_PLACE -XepPatchChecks:$(
+error_prone_support_checks="$(
    find "${error_prone_support_root}" \
       -path "*/META-INF/services/com.google.errorprone.bugpatterns.BugChecker" \
       -not -path "*/error-prone-experimental/*" \
       -not -path "*/error-prone-guidelines/*" \
       -print0 \
-    | xargs -0 "${grep_command}" -hoP '[^.]+$' \
-    | paste -s -d ',' -
+    | xargs -0 "${grep_command}" -hoP '[^.]+$'
+)"
+
+error_prone_patch_flags="${shared_error_prone_flags} -XepPatchLocation:IN_PLACE -XepPatchChecks:$(
+  echo "${error_prone_support_checks}" | paste -s -d ',' -
 ) ${patch_error_prone_flags}"
 
 error_prone_validation_flags="${shared_error_prone_flags} -XepDisableAllChecks $(
-   find "${error_prone_support_root}" \
-      -path "*/META-INF/services/com.google.errorprone.bugpatterns.BugChecker" \
-      -not -path "*/error-prone-experimental/*" \
-      -not -path "*/error-prone-guidelines/*" \
-      -print0 \
-    | xargs -0 "${grep_command}" -hoP '[^.]+$' \
+  echo "${error_prone_support_checks}" \
     | "${sed_command}" -r 's,(.*),-Xep:\1:WARN,' \
     | paste -s -d ' ' -
 ) ${validation_error_prone_flags}"
@@ -139,6 +153,84 @@ mvn ${shared_build_flags} "${format_goal}"
 git commit -m 'minor: Reformat using Google Java Format' .
 diff_base="$(git rev-parse HEAD)"
 
+# Build the project using the given Error Prone configuration, and append the
+# wall-clock, user CPU and system CPU time of each measured build to the
+# benchmark report.
+function benchmark_build() {
+  local configuration="${1}"
+  local error_prone_flags="${2}"
+
+  local iteration
+  for iteration in $(seq 0 "${benchmark_iterations}"); do
+    # Builds in patch mode modify the code, so each build starts from the same
+    # state.
+    git reset --hard "${diff_base}"
+
+    local build_log="${benchmark_logs}/${configuration}-${iteration}.txt"
+    local timing
+    echo "Benchmarking configuration '${configuration}', iteration ${iteration}/${benchmark_iterations}..."
+    timing="$(
+      TIMEFORMAT='%R,%U,%S'
+      {
+        time mvn ${shared_build_flags} \
+          clean package \
+          -Derror-prone.configuration-args="${error_prone_flags}" \
+          -DskipTests > "${build_log}" 2>&1
+      } 2>&1
+    )" || (>&2 echo "Build failed; see ${build_log}." && exit 1)
+
+    if [ "${iteration}" -gt 0 ]; then
+      echo "${configuration},${iteration},${timing}" >> "${benchmark_report}"
+    fi
+  done
+}
+
+if [ -n "${do_benchmark}" ]; then
+  # Error Prone cannot generally be removed from the build without modifying
+  # it, so the baseline configuration instead disables all checks. Relative to
+  # this baseline, the other configurations respectively measure the cost of
+  # the stock Error Prone checks, and of the Error Prone Support checks in patch
+  # and in validation mode.
+  benchmark_logs="${report_directory}/${test_name}-benchmark-build-logs"
+  benchmark_report="${report_directory}/${test_name}-benchmark.csv"
+  benchmark_summary="${report_directory}/${test_name}-benchmark-summary.txt"
+  mkdir -p "${benchmark_logs}"
+  echo 'configuration,iteration,wall_seconds,user_seconds,system_seconds' > "${benchmark_report}"
+
+  benchmark_build 'no-checks' "${shared_error_prone_flags} -XepDisableAllChecks"
+  benchmark_build 'error-prone' "${shared_error_prone_flags} $(
+    echo "${error_prone_support_checks}" \
+      | "${sed_command}" -r 's,(.*),-Xep:\1:OFF,' \
+      | paste -s -d ' ' -
+  )"
+  benchmark_build 'error-prone-support-patch' "${error_prone_patch_flags}"
+  benchmark_build 'error-prone-support-validation' "${error_prone_validation_flags}"
+  git reset --hard "${diff_base}"
+
+  # Summarize the mean wall-clock and CPU time of each configuration, also
+  # relative to the first configuration.
+  awk -F ',' '
+    NR > 1 {
+      if (!($1 in count)) {
+        configurations[++n] = $1
+      }
+      count[$1]++
+      wall[$1] += $3
+      cpu[$1] += $4 + $5
+    }
+    END {
+      printf "%-32s %12s %12s %12s %12s\n", "configuration", "wall (s)", "cpu (s)", "wall ratio", "cpu ratio"
+      base = configurations[1]
+      for (i = 1; i <= n; i++) {
+        c = configurations[i]
+        printf "%-32s %12.2f %12.2f %12.2f %12.2f\n", c, wall[c] / count[c], cpu[c] / count[c], (wall[c] / count[c]) / (wall[base] / count[base]), (cpu[c] / count[c]) / (cpu[base] / count[base])
+      }
+    }
+  ' "${benchmark_report}" | tee "${benchmark_summary}"
+
+  exit 0
+fi
+
 # Apply Error Prone Support-suggested changes until a fixed point is reached.
 function apply_patch() {
   local extra_build_args="${1}"
@@ -1,16 +1,31 @@
 package tech.picnic.errorprone.refaster.plugin;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableClassToInstanceMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.VisitorState;
 import com.google.errorprone.refaster.RefasterRuleBuilderScanner;
 import com.google.errorprone.refaster.UTemplater;
 import com.google.errorprone.refaster.annotation.BeforeTemplate;
 import com.google.errorprone.util.ASTHelpers;
 import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.BlockTree;
 import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TaskEvent;
 import com.sun.source.util.TaskEvent.Kind;
 import com.sun.source.util.TaskListener;
@@ -19,29 +34,72 @@ import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Type.ArrayType;
+import com.sun.tools.javac.code.Type.ClassType;
 import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.Context;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 import javax.tools.FileObject;
 import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import org.jspecify.annotations.Nullable;
 import tech.picnic.errorprone.refaster.AnnotatedCompositeCodeTransformer;
+import tech.picnic.errorprone.refaster.RefasterRuleFormat;
+import tech.picnic.errorprone.refaster.RefasterRuleManifest;
 
 /**
  * A variant of {@code com.google.errorprone.refaster.RefasterRuleCompilerAnalyzer} that stores
  * compiled Refaster rules in a {@code .refaster} file next to the compiled {@code .class} file,
  * rather than at a fixed location.
  *
- * <p>This {@link TaskListener} thus supports compilation of multiple Refaster rules.
+ * <p>This {@link TaskListener} thus supports compilation of multiple Refaster rules. Upon
+ * completion of the compilation, a {@link RefasterRuleManifest} that lists all compiled rules is
+ * emitted as well.
+ *
+ * <p>Next to each {@code .refaster} file a {@code .refaster.sha256} file is emitted, containing a
+ * digest of the rule's source code, of any other source code it references, of the code of the
+ * tooling that compiled it and of the compilation's class path. On subsequent incremental
+ * compilations rules whose digest is unchanged are not recompiled.
  */
 final class RefasterRuleCompilerTaskListener implements TaskListener {
+  private static final String RULE_EXTENSION = ".refaster";
+  private static final String DIGEST_EXTENSION = ".refaster.sha256";
+  private static final Supplier<Optional<String>> TOOLING_DIGEST =
+      Suppliers.memoize(
+          () ->
+              digestCodeSources(
+                  ImmutableSet.of(
+                      RefasterRuleCompilerTaskListener.class,
+                      RefasterRuleFormat.class,
+                      RefasterRuleBuilderScanner.class)));
+
   private final Context context;
+  private final Set<String> outputResources = new HashSet<>();
+  private final Supplier<Optional<String>> classPathDigest =
+      Suppliers.memoize(this::computeClassPathDigest);
 
   RefasterRuleCompilerTaskListener(Context context) {
     this.context = context;
@@ -49,27 +107,49 @@ final class RefasterRuleCompilerTaskListener implements TaskListener {
 
   @Override
   public void finished(TaskEvent taskEvent) {
+    if (taskEvent.getKind() == Kind.COMPILATION) {
+      outputManifest();
+      return;
+    }
+
     if (taskEvent.getKind() != Kind.ANALYZE || JavaCompiler.instance(context).errorCount() > 0) {
       return;
     }
 
     ClassTree tree = JavacTrees.instance(context).getTree(taskEvent.getTypeElement());
-    if (tree == null || !containsRefasterRules(tree)) {
+    if (tree == null) {
+      return;
+    }
+
+    ImmutableList<ClassSymbol> ruleClasses = findRuleClasses(tree);
+    if (ruleClasses.isEmpty()) {
       return;
     }
 
-    ImmutableMap<ClassTree, CodeTransformer> rules = compileRefasterRules(tree);
-    for (Map.Entry<ClassTree, CodeTransformer> rule : rules.entrySet()) {
-      try {
-        outputCodeTransformer(rule.getValue(), getOutputFile(taskEvent, rule.getKey()));
-      } catch (IOException e) {
-        throw new UncheckedIOException("Failed to persist compiled Refaster rules", e);
+    try {
+      @Nullable String digest = computeDigest(taskEvent.getCompilationUnit());
+      if (digest != null && isUpToDate(ruleClasses, digest)) {
+        ruleClasses.forEach(this::registerOutputResource);
+        return;
       }
+
+      ImmutableMap<ClassTree, AnnotatedCompositeCodeTransformer> rules = compileRefasterRules(tree);
+      for (Map.Entry<ClassTree, AnnotatedCompositeCodeTransformer> rule : rules.entrySet()) {
+        ClassSymbol symbol = ASTHelpers.getSymbol(rule.getKey());
+        outputCodeTransformer(rule.getValue(), getOutputFile(taskEvent, symbol, RULE_EXTENSION));
+        if (digest != null) {
+          outputDigest(digest, getOutputFile(taskEvent, symbol, DIGEST_EXTENSION));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to persist compiled Refaster rules", e);
     }
   }
 
-  private ImmutableMap<ClassTree, CodeTransformer> compileRefasterRules(ClassTree tree) {
-    ImmutableMap.Builder<ClassTree, CodeTransformer> rules = ImmutableMap.builder();
+  private ImmutableMap<ClassTree, AnnotatedCompositeCodeTransformer> compileRefasterRules(
+      ClassTree tree) {
+    ImmutableMap.Builder<ClassTree, AnnotatedCompositeCodeTransformer> rules =
+        ImmutableMap.builder();
     new TreeScanner<@Nullable Void, ImmutableClassToInstanceMap<Annotation>>() {
       @Override
       public @Nullable Void visitClass(
@@ -79,10 +159,16 @@ final class RefasterRuleCompilerTaskListener implements TaskListener {
         ImmutableList<CodeTransformer> transformers =
             ImmutableList.copyOf(RefasterRuleBuilderScanner.extractRules(node, context));
         if (!transformers.isEmpty()) {
+          VisitorState state = VisitorState.createForUtilityPurposes(context);
           rules.put(
               node,
               AnnotatedCompositeCodeTransformer.create(
-                  toPackageName(symbol), transformers, annotations));
+                  toPackageName(symbol),
+                  transformers,
+                  annotations,
+                  RequiredIdentifiers.extract(node, state),
+                  TemplateAnchors.extract(node, state),
+                  RequiredTypes.extract(node, state)));
         }
 
         return super.visitClass(node, merge(annotations, UTemplater.annotationMap(symbol)));
@@ -91,34 +177,366 @@ final class RefasterRuleCompilerTaskListener implements TaskListener {
     return rules.buildOrThrow();
   }
 
-  private FileObject getOutputFile(TaskEvent taskEvent, ClassTree tree) throws IOException {
-    ClassSymbol symbol = ASTHelpers.getSymbol(tree);
+  /**
+   * Tells whether the {@code .refaster} files of all given Refaster rule classes exist, and were
+   * derived from source code and a compiler version with the given digest.
+   */
+  private boolean isUpToDate(ImmutableList<ClassSymbol> ruleClasses, String digest)
+      throws IOException {
+    JavaFileManager fileManager = context.get(JavaFileManager.class);
+    for (ClassSymbol ruleClass : ruleClasses) {
+      String packageName = toPackageName(ruleClass);
+      String simpleFlatName = toSimpleFlatName(ruleClass);
+      if (fileManager.getFileForInput(
+                  StandardLocation.CLASS_OUTPUT, packageName, simpleFlatName + RULE_EXTENSION)
+              == null
+          || !digest.equals(
+              readDigest(
+                  fileManager.getFileForInput(
+                      StandardLocation.CLASS_OUTPUT,
+                      packageName,
+                      simpleFlatName + DIGEST_EXTENSION)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private FileObject getOutputFile(TaskEvent taskEvent, ClassSymbol symbol, String extension)
+      throws IOException {
+    if (RULE_EXTENSION.equals(extension)) {
+      registerOutputResource(symbol);
+    }
 
     JavaFileManager fileManager = context.get(JavaFileManager.class);
     return fileManager.getFileForOutput(
         StandardLocation.CLASS_OUTPUT,
         toPackageName(symbol),
-        toSimpleFlatName(symbol) + ".refaster",
+        toSimpleFlatName(symbol) + extension,
         taskEvent.getSourceFile());
   }
 
-  private static boolean containsRefasterRules(ClassTree tree) {
-    return Boolean.TRUE.equals(
-        new TreeScanner<Boolean, @Nullable Void>() {
-          @Override
-          public Boolean visitAnnotation(AnnotationTree node, @Nullable Void unused) {
-            Symbol sym = ASTHelpers.getSymbol(node);
-            return (sym != null
-                    && sym.getQualifiedName()
-                        .contentEquals(BeforeTemplate.class.getCanonicalName()))
-                || super.visitAnnotation(node, null);
+  private void registerOutputResource(ClassSymbol symbol) {
+    String packageName = toPackageName(symbol);
+    String fileName = toSimpleFlatName(symbol) + RULE_EXTENSION;
+    outputResources.add(
+        packageName.isEmpty() ? fileName : packageName.replace('.', '/') + '/' + fileName);
+  }
+
+  /**
+   * Emits a {@link RefasterRuleManifest} that lists all compiled Refaster rules in the output
+   * directory.
+   *
+   * <p>As the current compilation may be incremental, resources listed by a previously emitted
+   * manifest are retained, for as long as they exist.
+   */
+  private void outputManifest() {
+    if (outputResources.isEmpty()) {
+      return;
+    }
+
+    JavaFileManager fileManager = context.get(JavaFileManager.class);
+    try {
+      ImmutableSet<String> resources =
+          ImmutableSet.<String>builder()
+              .addAll(getPreviouslyListedResources(fileManager))
+              .addAll(outputResources)
+              .build();
+      FileObject manifest =
+          fileManager.getFileForOutput(
+              StandardLocation.CLASS_OUTPUT, "", RefasterRuleManifest.PATH, null);
+      try (OutputStream output = manifest.openOutputStream()) {
+        RefasterRuleManifest.write(resources, output);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to persist Refaster rule manifest", e);
+    }
+  }
+
+  @SuppressWarnings("java:S1166" /* The caught exception's stack traces are not relevant. */)
+  private static ImmutableSet<String> getPreviouslyListedResources(JavaFileManager fileManager)
+      throws IOException {
+    FileObject manifest =
+        fileManager.getFileForInput(StandardLocation.CLASS_OUTPUT, "", RefasterRuleManifest.PATH);
+    if (manifest == null) {
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet<String> listedResources;
+    try (InputStream input = manifest.openInputStream()) {
+      listedResources = RefasterRuleManifest.read(input);
+    } catch (FileNotFoundException | NoSuchFileException e) {
+      /* There is no previously emitted manifest. */
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet.Builder<String> existingResources = ImmutableSet.builder();
+    for (String resource : listedResources) {
+      if (fileManager.getFileForInput(StandardLocation.CLASS_OUTPUT, "", resource) != null) {
+        existingResources.add(resource);
+      }
+    }
+    return existingResources.build();
+  }
+
+  /**
+   * Returns the symbols of the given class and its nested classes that declare at least one {@link
+   * BeforeTemplate} method.
+   *
+   * <p>As {@link BeforeTemplate} methods are necessarily members of a class, only class and method
+   * declarations are inspected; method bodies and field initializers, which make up the bulk of
+   * most non-rule classes, are skipped.
+   */
+  private static ImmutableList<ClassSymbol> findRuleClasses(ClassTree tree) {
+    ImmutableList.Builder<ClassSymbol> ruleClasses = ImmutableList.builder();
+    new TreeScanner<@Nullable Void, @Nullable Void>() {
+      @Override
+      public @Nullable Void visitClass(ClassTree node, @Nullable Void unused) {
+        if (node.getMembers().stream()
+            .anyMatch(
+                m ->
+                    m instanceof MethodTree method
+                        && method.getModifiers().getAnnotations().stream()
+                            .anyMatch(RefasterRuleCompilerTaskListener::isBeforeTemplate))) {
+          ruleClasses.add(ASTHelpers.getSymbol(node));
+        }
+        return scan(node.getMembers(), null);
+      }
+
+      @Override
+      public @Nullable Void visitMethod(MethodTree node, @Nullable Void unused) {
+        return null;
+      }
+
+      @Override
+      public @Nullable Void visitVariable(VariableTree node, @Nullable Void unused) {
+        return null;
+      }
+
+      @Override
+      public @Nullable Void visitBlock(BlockTree node, @Nullable Void unused) {
+        return null;
+      }
+    }.scan(tree, null);
+    return ruleClasses.build();
+  }
+
+  private static boolean isBeforeTemplate(AnnotationTree annotation) {
+    Symbol symbol = ASTHelpers.getSymbol(annotation.getAnnotationType());
+    return symbol != null
+        && symbol.getQualifiedName().contentEquals(BeforeTemplate.class.getCanonicalName());
+  }
+
+  /**
+   * Computes a digest of the given compilation unit's source code and of the source code it
+   * references, of the code of this plugin and of Error Prone, and of the current compilation's
+   * class path, or returns {@code null} if any of the latter cannot be determined.
+   *
+   * @see #digestReferencedSources(CompilationUnitTree, Hasher)
+   */
+  private @Nullable String computeDigest(CompilationUnitTree compilationUnit) throws IOException {
+    Optional<String> toolingDigest = TOOLING_DIGEST.get();
+    Optional<String> dependencyDigest = classPathDigest.get();
+    if (toolingDigest.isEmpty() || dependencyDigest.isEmpty()) {
+      return null;
+    }
+
+    Hasher hasher =
+        Hashing.sha256()
+            .newHasher()
+            .putString(toolingDigest.orElseThrow(), UTF_8)
+            .putByte((byte) 0)
+            .putString(dependencyDigest.orElseThrow(), UTF_8)
+            .putByte((byte) 0)
+            .putString(compilationUnit.getSourceFile().getCharContent(true), UTF_8);
+    digestReferencedSources(compilationUnit, hasher);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Adds to the given {@link Hasher} the source code of the other source files referenced by the
+   * given compilation unit, as well as the constant values it references.
+   *
+   * <p>A source file is referenced if it declares a type, or a member of a type, that is referenced
+   * by the compilation unit, and if it is part of the current compilation or is found on the source
+   * path. Constant values are included as they may be derived from source files that are referenced
+   * only indirectly. Other source files, such as the sources of Refaster rule collections that are
+   * unrelated to the given compilation unit, are not considered.
+   */
+  private static void digestReferencedSources(CompilationUnitTree compilationUnit, Hasher hasher)
+      throws IOException {
+    Map<URI, JavaFileObject> sourceFiles = new TreeMap<>();
+    new TreeScanner<@Nullable Void, @Nullable Void>() {
+      @Override
+      public @Nullable Void scan(@Nullable Tree tree, @Nullable Void unused) {
+        if (tree instanceof JCTree jcTree && jcTree.type != null) {
+          registerType(jcTree.type);
+          @Nullable Object constantValue = jcTree.type.constValue();
+          if (constantValue != null) {
+            hasher.putString(constantValue.toString(), UTF_8).putByte((byte) 0);
+          }
+        }
+
+        @Nullable Symbol symbol = tree == null ? null : ASTHelpers.getSymbol(tree);
+        if (symbol != null) {
+          registerSymbol(symbol);
+        }
+
+        return super.scan(tree, unused);
+      }
+
+      private void registerType(Type type) {
+        if (type instanceof ArrayType arrayType) {
+          registerType(arrayType.elemtype);
+        } else if (type instanceof ClassType) {
+          registerSymbol(type.tsym);
+          type.getTypeArguments().forEach(this::registerType);
+        }
+      }
+
+      private void registerSymbol(Symbol symbol) {
+        @Nullable ClassSymbol outermostClass = null;
+        for (Symbol owner = symbol; !(owner instanceof PackageSymbol); owner = owner.owner) {
+          if (owner.owner == null) {
+            /* This is a synthetic symbol that is not declared in any source or class file. */
+            return;
+          }
+          if (owner instanceof ClassSymbol classSymbol) {
+            outermostClass = classSymbol;
           }
+        }
 
-          @Override
-          public Boolean reduce(Boolean r1, Boolean r2) {
-            return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+        if (outermostClass != null) {
+          JavaFileObject origin =
+              outermostClass.classfile != null
+                  ? outermostClass.classfile
+                  : outermostClass.sourcefile;
+          if (origin != null
+              && origin.getKind() == JavaFileObject.Kind.SOURCE
+              && !origin.equals(compilationUnit.getSourceFile())) {
+            sourceFiles.putIfAbsent(origin.toUri(), origin);
           }
-        }.scan(tree, null));
+        }
+      }
+    }.scan(compilationUnit, null);
+
+    for (JavaFileObject sourceFile : sourceFiles.values()) {
+      hasher
+          .putString(sourceFile.toUri().toString(), UTF_8)
+          .putByte((byte) 0)
+          .putString(sourceFile.getCharContent(true), UTF_8);
+    }
+  }
+
+  private Optional<String> computeClassPathDigest() {
+    if (!(context.get(JavaFileManager.class) instanceof StandardJavaFileManager fileManager)) {
+      return Optional.empty();
+    }
+
+    Iterable<? extends Path> classPath =
+        fileManager.getLocationAsPaths(StandardLocation.CLASS_PATH);
+    Iterable<? extends Path> classOutput =
+        fileManager.getLocationAsPaths(StandardLocation.CLASS_OUTPUT);
+    try {
+      return Optional.of(
+          digestClassPath(
+              classPath == null ? ImmutableSet.of() : ImmutableSet.copyOf(classPath),
+              classOutput == null ? ImmutableSet.of() : ImmutableSet.copyOf(classOutput)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to compute class path digest", e);
+    }
+  }
+
+  /**
+   * Computes a digest of the code from which the given classes are loaded, or returns an empty
+   * result if the location of any of this code cannot be determined.
+   *
+   * <p>As with {@link #digestClassPath(ImmutableSet, ImmutableSet)}, only the path, size and
+   * modification time of each file are considered.
+   */
+  @VisibleForTesting
+  static Optional<String> digestCodeSources(ImmutableSet<Class<?>> classes) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    try {
+      for (Class<?> clazz : classes) {
+        @Nullable CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+          return Optional.empty();
+        }
+
+        for (Path file : listFiles(Path.of(codeSource.getLocation().toURI()))) {
+          putFileAttributes(file, hasher);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to compute tooling digest", e);
+    } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+      return Optional.empty();
+    }
+    return Optional.of(hasher.putString(Runtime.version().toString(), UTF_8).hash().toString());
+  }
+
+  /**
+   * Computes a digest of the given class path entries, excluding the given output directories.
+   *
+   * <p>As class path entries may be large, only the path, size and modification time of each file
+   * are considered. For JAR files this requires a single file system lookup; directories are
+   * traversed, as their own modification time does not reflect changes to nested files.
+   */
+  @VisibleForTesting
+  static String digestClassPath(ImmutableSet<Path> classPath, ImmutableSet<Path> excludedPaths)
+      throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Path entry : classPath) {
+      if (!excludedPaths.contains(entry)) {
+        for (Path file : listFiles(entry)) {
+          putFileAttributes(file, hasher);
+        }
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putFileAttributes(Path file, Hasher hasher) throws IOException {
+    hasher
+        .putString(file.toString(), UTF_8)
+        .putByte((byte) 0)
+        .putLong(Files.size(file))
+        .putLong(Files.getLastModifiedTime(file).toMillis());
+  }
+
+  /**
+   * Lists the given file if it is a regular file, or else all regular files below it, in a
+   * deterministic order.
+   */
+  private static ImmutableList<Path> listFiles(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      return Files.isRegularFile(path) ? ImmutableList.of(path) : ImmutableList.of();
+    }
+
+    try (Stream<Path> files = Files.walk(path)) {
+      return files.filter(Files::isRegularFile).sorted().collect(toImmutableList());
+    }
+  }
+
+  @SuppressWarnings("java:S1166" /* The caught exception's stack traces are not relevant. */)
+  private static @Nullable String readDigest(@Nullable FileObject file) throws IOException {
+    if (file == null) {
+      return null;
+    }
+
+    try {
+      return file.getCharContent(true).toString().strip();
+    } catch (FileNotFoundException | NoSuchFileException e) {
+      /* There is no previously emitted digest. */
+      return null;
+    }
+  }
+
+  private static void outputDigest(String digest, FileObject target) throws IOException {
+    try (Writer writer = target.openWriter()) {
+      writer.write(digest);
+    }
   }
 
   /** Merges two annotation mappings, preferring the second over the first in case of conflicts. */
@@ -142,10 +560,10 @@ final class RefasterRuleCompilerTaskListener implements TaskListener {
     return lastDot < 0 ? flatName : flatName.substring(lastDot + 1);
   }
 
-  private static void outputCodeTransformer(CodeTransformer codeTransformer, FileObject target)
-      throws IOException {
-    try (ObjectOutput output = new ObjectOutputStream(target.openOutputStream())) {
-      output.writeObject(codeTransformer);
+  private static void outputCodeTransformer(
+      AnnotatedCompositeCodeTransformer codeTransformer, FileObject target) throws IOException {
+    try (OutputStream output = target.openOutputStream()) {
+      RefasterRuleFormat.write(codeTransformer, output);
     }
   }
 }
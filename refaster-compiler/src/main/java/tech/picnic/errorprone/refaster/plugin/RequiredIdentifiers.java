@@ -0,0 +1,158 @@
+package tech.picnic.errorprone.refaster.plugin;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.refaster.Refaster;
+import com.google.errorprone.refaster.annotation.BeforeTemplate;
+import com.google.errorprone.refaster.annotation.Placeholder;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import java.util.Optional;
+import javax.lang.model.element.ElementKind;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Derives the set of identifiers that must be present in a compilation unit for a Refaster rule to
+ * possibly match it.
+ *
+ * <p>Only identifiers that Refaster unifies by name are considered: the names of invoked and
+ * referenced methods, of instantiated types and of referenced non-constant fields. Identifiers that
+ * a matching expression may legitimately omit, such as type names (which may be inferred or
+ * statically imported away), placeholder method invocations and {@link Refaster} pseudo-methods,
+ * are ignored. For {@link Refaster#anyOf} invocations only identifiers required by all alternatives
+ * are retained. Likewise, if a rule has multiple {@link BeforeTemplate}s, then only identifiers
+ * required by all of them are retained.
+ */
+final class RequiredIdentifiers extends TreeScanner<ImmutableSet<String>, @Nullable Void> {
+  private static final String CONSTRUCTOR_NAME = "<init>";
+
+  private final VisitorState state;
+
+  private RequiredIdentifiers(VisitorState state) {
+    this.state = state;
+  }
+
+  /**
+   * Returns the identifiers that any code matched by one of the given rule's {@link
+   * BeforeTemplate}s must contain.
+   *
+   * @param ruleClass The Refaster rule class to analyze; nested classes are not considered.
+   * @param state The {@link VisitorState} used to resolve annotations.
+   * @return A possibly empty set of identifiers; an empty set means that no prefiltering is
+   *     possible.
+   */
+  static ImmutableSet<String> extract(ClassTree ruleClass, VisitorState state) {
+    RequiredIdentifiers scanner = new RequiredIdentifiers(state);
+    return ruleClass.getMembers().stream()
+        .filter(MethodTree.class::isInstance)
+        .map(MethodTree.class::cast)
+        .filter(m -> ASTHelpers.hasAnnotation(m, BeforeTemplate.class.getCanonicalName(), state))
+        .map(m -> scanner.collect(m.getBody()))
+        .reduce(RequiredIdentifiers::intersection)
+        .orElseGet(ImmutableSet::of);
+  }
+
+  private ImmutableSet<String> collect(@Nullable Tree tree) {
+    return Optional.ofNullable(scan(tree, null)).orElseGet(ImmutableSet::of);
+  }
+
+  private ImmutableSet<String> collect(Iterable<? extends Tree> trees) {
+    return Optional.ofNullable(scan(trees, null)).orElseGet(ImmutableSet::of);
+  }
+
+  @Override
+  public ImmutableSet<String> visitMethodInvocation(
+      MethodInvocationTree node, @Nullable Void unused) {
+    MethodSymbol symbol = ASTHelpers.getSymbol(node);
+    if (ASTHelpers.hasAnnotation(symbol, Placeholder.class.getCanonicalName(), state)) {
+      /* Placeholder invocations may match arbitrary expressions. */
+      return ImmutableSet.of();
+    }
+
+    if (symbol.owner.getQualifiedName().contentEquals(Refaster.class.getCanonicalName())) {
+      return symbol.getSimpleName().contentEquals("anyOf")
+          ? node.getArguments().stream()
+              .map(this::collect)
+              .reduce(RequiredIdentifiers::intersection)
+              .orElseGet(ImmutableSet::of)
+          : collect(node.getArguments());
+    }
+
+    return union(
+        ImmutableSet.of(symbol.getSimpleName().toString()),
+        super.visitMethodInvocation(node, null));
+  }
+
+  @Override
+  public ImmutableSet<String> visitNewClass(NewClassTree node, @Nullable Void unused) {
+    String typeName = ASTHelpers.getSymbol(node).owner.getSimpleName().toString();
+    return typeName.isEmpty()
+        ? super.visitNewClass(node, null)
+        : union(ImmutableSet.of(typeName), super.visitNewClass(node, null));
+  }
+
+  @Override
+  public ImmutableSet<String> visitMemberReference(
+      MemberReferenceTree node, @Nullable Void unused) {
+    String name = node.getName().toString();
+    return name.equals(CONSTRUCTOR_NAME)
+        ? super.visitMemberReference(node, null)
+        : union(ImmutableSet.of(name), super.visitMemberReference(node, null));
+  }
+
+  @Override
+  public ImmutableSet<String> visitMemberSelect(MemberSelectTree node, @Nullable Void unused) {
+    return union(fieldName(ASTHelpers.getSymbol(node)), super.visitMemberSelect(node, null));
+  }
+
+  @Override
+  public ImmutableSet<String> visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+    return fieldName(ASTHelpers.getSymbol(node));
+  }
+
+  @Override
+  public ImmutableSet<String> reduce(
+      @Nullable ImmutableSet<String> r1, @Nullable ImmutableSet<String> r2) {
+    return union(r1, r2);
+  }
+
+  /**
+   * Returns the name of the referenced symbol, if it is a field that is not a compile-time
+   * constant.
+   */
+  private static ImmutableSet<String> fieldName(@Nullable Symbol symbol) {
+    return symbol instanceof VarSymbol varSymbol
+            && varSymbol.getKind() == ElementKind.FIELD
+            && varSymbol.getConstValue() == null
+        ? ImmutableSet.of(symbol.getSimpleName().toString())
+        : ImmutableSet.of();
+  }
+
+  private static ImmutableSet<String> union(
+      @Nullable ImmutableSet<String> r1, @Nullable ImmutableSet<String> r2) {
+    if (r1 == null || r1.isEmpty()) {
+      return r2 == null ? ImmutableSet.of() : r2;
+    }
+    if (r2 == null || r2.isEmpty()) {
+      return r1;
+    }
+    return ImmutableSet.copyOf(Sets.union(r1, r2));
+  }
+
+  private static ImmutableSet<String> intersection(
+      ImmutableSet<String> r1, ImmutableSet<String> r2) {
+    return ImmutableSet.copyOf(Sets.intersection(r1, r2));
+  }
+}
@@ -0,0 +1,119 @@
+package tech.picnic.errorprone.refaster.plugin;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.refaster.Refaster;
+import com.google.errorprone.refaster.annotation.AfterTemplate;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Type;
+import java.util.Optional;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeKind;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Derives the set of top-level types that the replacement code suggested by a Refaster rule
+ * references.
+ *
+ * <p>All types, methods and fields referenced by the bodies of the rule's {@link AfterTemplate}s
+ * are considered; for methods and fields, the type of the qualifying expression is recorded, or
+ * their enclosing type if there is no such expression. Types declared by the rule's own compilation
+ * unit, such as placeholder method owners, and the {@link Refaster} API are ignored, as they are
+ * never referenced by the suggested code. Non-public types are ignored as well, as they can only be
+ * referenced indirectly; consider e.g. {@link StringBuilder#length()}, which is declared by a
+ * package-private superclass.
+ */
+final class RequiredTypes extends TreeScanner<@Nullable Void, @Nullable Void> {
+  private static final String REFASTER_PACKAGE_PREFIX = Refaster.class.getPackageName() + '.';
+
+  private final ClassSymbol ruleCollection;
+  private final ImmutableSet.Builder<String> types = ImmutableSet.builder();
+
+  private RequiredTypes(ClassSymbol ruleCollection) {
+    this.ruleCollection = ruleCollection;
+  }
+
+  /**
+   * Returns the fully qualified names of the top-level types referenced by the given rule's {@link
+   * AfterTemplate}s.
+   *
+   * @param ruleClass The Refaster rule class to analyze; nested classes are not considered.
+   * @param state The {@link VisitorState} used to resolve annotations.
+   * @return A possibly empty set of fully qualified type names.
+   */
+  static ImmutableSet<String> extract(ClassTree ruleClass, VisitorState state) {
+    RequiredTypes scanner = new RequiredTypes(ASTHelpers.getSymbol(ruleClass).outermostClass());
+    for (Tree member : ruleClass.getMembers()) {
+      if (member instanceof MethodTree method
+          && ASTHelpers.hasAnnotation(method, AfterTemplate.class.getCanonicalName(), state)) {
+        scanner.scan(method.getBody(), null);
+      }
+    }
+    return scanner.types.build();
+  }
+
+  @Override
+  public @Nullable Void visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+    register(ASTHelpers.getSymbol(node), /* qualifier= */ null);
+    return super.visitIdentifier(node, null);
+  }
+
+  @Override
+  public @Nullable Void visitMemberSelect(MemberSelectTree node, @Nullable Void unused) {
+    register(ASTHelpers.getSymbol(node), node.getExpression());
+    return super.visitMemberSelect(node, null);
+  }
+
+  @Override
+  public @Nullable Void visitMemberReference(MemberReferenceTree node, @Nullable Void unused) {
+    register(ASTHelpers.getSymbol(node), node.getQualifierExpression());
+    return super.visitMemberReference(node, null);
+  }
+
+  private void register(@Nullable Symbol symbol, @Nullable ExpressionTree qualifier) {
+    if (symbol == null) {
+      return;
+    }
+
+    ClassSymbol type =
+        symbol instanceof ClassSymbol classSymbol
+            ? classSymbol
+            : symbol.owner instanceof ClassSymbol owner
+                ? getQualifierType(qualifier).orElse(owner)
+                : null;
+    if (type == null) {
+      /* Local variables, packages and the like don't require any type to be available. */
+      return;
+    }
+
+    ClassSymbol topLevelType = type.outermostClass();
+    String typeName = topLevelType.getQualifiedName().toString();
+    if (!topLevelType.equals(ruleCollection)
+        && topLevelType.getModifiers().contains(Modifier.PUBLIC)
+        && !typeName.startsWith(REFASTER_PACKAGE_PREFIX)) {
+      types.add(typeName);
+    }
+  }
+
+  /**
+   * Returns the class through which a member is accessed, if any.
+   *
+   * <p>This type may differ from the member's owner in case the member is inherited.
+   */
+  private static Optional<ClassSymbol> getQualifierType(@Nullable ExpressionTree qualifier) {
+    Type type = qualifier == null ? null : ASTHelpers.getType(qualifier);
+    return type != null && type.getKind() == TypeKind.DECLARED && type.tsym instanceof ClassSymbol c
+        ? Optional.of(c)
+        : Optional.empty();
+  }
+}
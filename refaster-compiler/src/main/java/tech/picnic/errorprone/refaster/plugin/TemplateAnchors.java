@@ -0,0 +1,105 @@
+package tech.picnic.errorprone.refaster.plugin;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.refaster.Refaster;
+import com.google.errorprone.refaster.annotation.BeforeTemplate;
+import com.google.errorprone.refaster.annotation.Placeholder;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import java.util.List;
+import java.util.Optional;
+import tech.picnic.errorprone.refaster.MatchAnchors;
+
+/**
+ * Derives the {@link MatchAnchors anchors} of the expressions that a Refaster rule may match.
+ *
+ * <p>Anchors are derived only for rules of which each {@link BeforeTemplate} consists of a single
+ * {@code return} statement. For such rules the anchor of each returned expression is determined;
+ * for {@link Refaster#anyOf} invocations the anchors of all alternatives are considered instead. If
+ * the anchor of any such expression cannot be determined, for example because it is a placeholder
+ * method invocation or an expression kind for which no anchor is defined, then the rule may match
+ * trees of any shape.
+ */
+final class TemplateAnchors {
+  private TemplateAnchors() {}
+
+  /**
+   * Returns the anchors of the expressions that the given rule's {@link BeforeTemplate}s may match.
+   *
+   * @param ruleClass The Refaster rule class to analyze; nested classes are not considered.
+   * @param state The {@link VisitorState} used to resolve annotations.
+   * @return A possibly empty set of anchors; an empty set means that the rule may match trees of
+   *     any shape.
+   */
+  static ImmutableSet<String> extract(ClassTree ruleClass, VisitorState state) {
+    ImmutableSet.Builder<String> anchors = ImmutableSet.builder();
+    for (MethodTree method : getBeforeTemplates(ruleClass, state)) {
+      Optional<ImmutableSet<String>> templateAnchors =
+          getReturnedExpression(method.getBody()).flatMap(e -> getAnchors(e, state));
+      if (templateAnchors.isEmpty()) {
+        return ImmutableSet.of();
+      }
+      anchors.addAll(templateAnchors.orElseThrow());
+    }
+    return anchors.build();
+  }
+
+  private static ImmutableList<MethodTree> getBeforeTemplates(
+      ClassTree ruleClass, VisitorState state) {
+    return ruleClass.getMembers().stream()
+        .filter(MethodTree.class::isInstance)
+        .map(MethodTree.class::cast)
+        .filter(m -> ASTHelpers.hasAnnotation(m, BeforeTemplate.class.getCanonicalName(), state))
+        .collect(toImmutableList());
+  }
+
+  private static Optional<ExpressionTree> getReturnedExpression(BlockTree body) {
+    List<? extends StatementTree> statements = body.getStatements();
+    return statements.size() == 1 && statements.get(0) instanceof ReturnTree returnTree
+        ? Optional.ofNullable(returnTree.getExpression())
+        : Optional.empty();
+  }
+
+  private static Optional<ImmutableSet<String>> getAnchors(
+      ExpressionTree expression, VisitorState state) {
+    if (expression instanceof MethodInvocationTree invocation) {
+      MethodSymbol symbol = ASTHelpers.getSymbol(invocation);
+      if (ASTHelpers.hasAnnotation(symbol, Placeholder.class.getCanonicalName(), state)) {
+        /* Placeholder invocations may match arbitrary expressions. */
+        return Optional.empty();
+      }
+
+      if (symbol.owner.getQualifiedName().contentEquals(Refaster.class.getCanonicalName())) {
+        return symbol.getSimpleName().contentEquals("anyOf")
+            ? getAlternativeAnchors(invocation.getArguments(), state)
+            : Optional.empty();
+      }
+    }
+
+    return Optional.ofNullable(MatchAnchors.of(expression)).map(ImmutableSet::of);
+  }
+
+  private static Optional<ImmutableSet<String>> getAlternativeAnchors(
+      List<? extends ExpressionTree> alternatives, VisitorState state) {
+    ImmutableSet.Builder<String> anchors = ImmutableSet.builder();
+    for (ExpressionTree alternative : alternatives) {
+      Optional<ImmutableSet<String>> alternativeAnchors = getAnchors(alternative, state);
+      if (alternativeAnchors.isEmpty()) {
+        return Optional.empty();
+      }
+      anchors.addAll(alternativeAnchors.orElseThrow());
+    }
+    return Optional.of(anchors.build());
+  }
+}
@@ -0,0 +1,131 @@
+package tech.picnic.errorprone.refaster.plugin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.refaster.RefasterRuleBuilderScanner;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.tools.StandardJavaFileManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.picnic.errorprone.refaster.RefasterRuleFormat;
+
+final class RefasterRuleCompilerTaskListenerTest {
+  @Test
+  void digestCodeSources() {
+    assertThat(
+            RefasterRuleCompilerTaskListener.digestCodeSources(
+                ImmutableSet.of(RefasterRuleFormat.class, RefasterRuleBuilderScanner.class)))
+        .isNotEmpty()
+        .isEqualTo(
+            RefasterRuleCompilerTaskListener.digestCodeSources(
+                ImmutableSet.of(RefasterRuleFormat.class, RefasterRuleBuilderScanner.class)))
+        .isNotEqualTo(
+            RefasterRuleCompilerTaskListener.digestCodeSources(
+                ImmutableSet.of(RefasterRuleFormat.class)));
+  }
+
+  @Test
+  void digestClassPath(@TempDir Path directory, @TempDir Path output) throws IOException {
+    Path jar = Files.writeString(directory.resolve("dependency.jar"), "foo", UTF_8);
+    Path classes = Files.createDirectories(directory.resolve("classes"));
+    Path classFile = Files.writeString(classes.resolve("A.class"), "bar", UTF_8);
+    ImmutableSet<Path> classPath = ImmutableSet.of(jar, classes, output);
+
+    String digest = RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of());
+    assertThat(RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of()))
+        .isEqualTo(digest);
+
+    Files.writeString(output.resolve("B.class"), "baz", UTF_8);
+    String digestWithOutput =
+        RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of());
+    assertThat(digestWithOutput).isNotEqualTo(digest);
+    assertThat(RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of(output)))
+        .isNotEqualTo(digestWithOutput)
+        .isEqualTo(
+            RefasterRuleCompilerTaskListener.digestClassPath(
+                ImmutableSet.of(jar, classes), ImmutableSet.of()));
+
+    Files.writeString(classFile, "qux!", UTF_8);
+    String digestWithModifiedClass =
+        RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of());
+    assertThat(digestWithModifiedClass).isNotEqualTo(digestWithOutput);
+
+    Files.writeString(jar, "quux!", UTF_8);
+    assertThat(RefasterRuleCompilerTaskListener.digestClassPath(classPath, ImmutableSet.of()))
+        .isNotEqualTo(digestWithModifiedClass);
+  }
+
+  @Test
+  void digestReferencedSources(@TempDir Path sourceDirectory, @TempDir Path outputDirectory)
+      throws IOException {
+    Path rules =
+        Files.writeString(
+            sourceDirectory.resolve("A.java"),
+            String.join(
+                "\n",
+                "package pkg;",
+                "",
+                "import com.google.errorprone.refaster.annotation.AfterTemplate;",
+                "import com.google.errorprone.refaster.annotation.BeforeTemplate;",
+                "",
+                "final class A {",
+                "  static final class Rule {",
+                "    @BeforeTemplate",
+                "    boolean before(String string) {",
+                "      return string.startsWith(B.PREFIX);",
+                "    }",
+                "",
+                "    @AfterTemplate",
+                "    boolean after(String string) {",
+                "      return string.isEmpty();",
+                "    }",
+                "  }",
+                "}"),
+            UTF_8);
+    Path referencedSource =
+        Files.writeString(
+            sourceDirectory.resolve("B.java"),
+            "package pkg; class B { static final String PREFIX = \"\"; }",
+            UTF_8);
+    Path unreferencedSource =
+        Files.writeString(sourceDirectory.resolve("C.java"), "package pkg; class C {}", UTF_8);
+    Path digestFile = outputDirectory.resolve("pkg/A$Rule.refaster.sha256");
+
+    compile(outputDirectory, rules, referencedSource, unreferencedSource);
+    String digest = Files.readString(digestFile, UTF_8);
+
+    Files.writeString(unreferencedSource, "package pkg; class C { int field; }", UTF_8);
+    compile(outputDirectory, rules, referencedSource, unreferencedSource);
+    assertThat(digestFile).content(UTF_8).isEqualTo(digest);
+
+    Files.writeString(
+        referencedSource, "package pkg; class B { static final String PREFIX = \"foo\"; }", UTF_8);
+    compile(outputDirectory, rules, referencedSource, unreferencedSource);
+    assertThat(digestFile).content(UTF_8).isNotEqualTo(digest);
+  }
+
+  private static void compile(Path outputDirectory, Path... sourceFiles) throws IOException {
+    JavacTool compiler = JavacTool.create();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+      JavacTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              null,
+              ImmutableList.of("-proc:none", "-d", outputDirectory.toString()),
+              null,
+              fileManager.getJavaFileObjects(sourceFiles));
+      task.addTaskListener(
+          new RefasterRuleCompilerTaskListener(((BasicJavacTask) task).getContext()));
+      assertThat(task.call()).isTrue();
+    }
+  }
+}
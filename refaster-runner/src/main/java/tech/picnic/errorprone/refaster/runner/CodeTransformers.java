@@ -1,27 +1,48 @@
 package tech.picnic.errorprone.refaster.runner;
 
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.reflect.ClassPath;
 import com.google.common.reflect.ClassPath.ResourceInfo;
 import com.google.errorprone.CodeTransformer;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import tech.picnic.errorprone.refaster.RefasterRuleFormat;
+import tech.picnic.errorprone.refaster.RefasterRuleManifest;
 
 /**
- * Scans the classpath for {@value #REFASTER_RULE_SUFFIX} files and loads them as {@link
+ * Locates {@value #REFASTER_RULE_SUFFIX} files on the classpath and loads them as {@link
  * CodeTransformer}s.
+ *
+ * <p>Rule names are derived from resource paths; the associated resources are read only once a rule
+ * is actually requested.
  */
 public final class CodeTransformers {
   private static final String REFASTER_RULE_SUFFIX = ".refaster";
+  private static final Supplier<ImmutableListMultimap<String, URL>> RULE_RESOURCES =
+      Suppliers.memoize(CodeTransformers::indexRuleResources);
+  private static final Supplier<ImmutableListMultimap<String, Supplier<Optional<CodeTransformer>>>>
+      CODE_TRANSFORMER_LOADERS = Suppliers.memoize(CodeTransformers::indexCodeTransformers);
   private static final Supplier<ImmutableListMultimap<String, CodeTransformer>>
-      ALL_CODE_TRANSFORMERS = Suppliers.memoize(CodeTransformers::loadAllCodeTransformers);
+      ALL_CODE_TRANSFORMERS = Suppliers.memoize(() -> getCodeTransformers(ruleName -> true));
 
   private CodeTransformers() {}
 
@@ -37,65 +58,219 @@ public final class CodeTransformers {
   }
 
   /**
-   * Scans the classpath for compiled Refaster rules and returns the associated deserialized {@link
-   * CodeTransformer}s, indexed by their name.
+   * Returns the Refaster {@link CodeTransformer}s found on the classpath whose name is accepted by
+   * the given filter.
+   *
+   * <p>Only the resources associated with accepted rule names are read, and each such resource is
+   * read at most once.
    *
+   * @param ruleNameFilter The predicate that selects the Refaster rules of interest.
    * @return A mapping from Refaster rule names to associated {@link CodeTransformer}s.
    */
-  private static ImmutableListMultimap<String, CodeTransformer> loadAllCodeTransformers() {
+  public static ImmutableListMultimap<String, CodeTransformer> getCodeTransformers(
+      Predicate<String> ruleNameFilter) {
     ImmutableListMultimap.Builder<String, CodeTransformer> transformers =
         ImmutableListMultimap.builder();
 
-    for (ResourceInfo resource : getClassPathResources()) {
-      getRefasterRuleName(resource)
-          .ifPresent(
-              ruleName ->
-                  loadCodeTransformer(resource)
-                      .ifPresent(transformer -> transformers.put(ruleName, transformer)));
-    }
+    CODE_TRANSFORMER_LOADERS
+        .get()
+        .forEach(
+            (ruleName, loader) -> {
+              if (ruleNameFilter.test(ruleName)) {
+                loader.get().ifPresent(transformer -> transformers.put(ruleName, transformer));
+              }
+            });
 
     return transformers.build();
   }
 
-  private static ImmutableSet<ResourceInfo> getClassPathResources() {
+  /**
+   * Computes a digest of the compiled Refaster rules found on the classpath whose name is accepted
+   * by the given filter.
+   *
+   * <p>The digest covers the name and content of each such rule, such that it changes whenever one
+   * of these rules is added, removed or recompiled. Computing it requires reading all associated
+   * resources, so this method should be invoked only when needed.
+   *
+   * @param ruleNameFilter The predicate that selects the Refaster rules of interest.
+   * @return A non-{@code null} digest.
+   */
+  public static HashCode getCodeTransformersDigest(Predicate<String> ruleNameFilter) {
+    Hasher hasher = Hashing.sha256().newHasher();
+
+    RULE_RESOURCES
+        .get()
+        .forEach(
+            (ruleName, url) -> {
+              if (ruleNameFilter.test(ruleName)) {
+                hasher.putString(ruleName, UTF_8).putBytes(readResource(url));
+              }
+            });
+
+    return hasher.hash();
+  }
+
+  /**
+   * Locates all compiled Refaster rules on the classpath.
+   *
+   * @return A mapping from Refaster rule names to the locations of the associated resources.
+   */
+  private static ImmutableListMultimap<String, URL> indexRuleResources() {
+    ImmutableListMultimap.Builder<String, URL> resources = ImmutableListMultimap.builder();
+    getRefasterRuleResources()
+        .forEach((resourceName, url) -> resources.put(getRefasterRuleName(resourceName), url));
+    return resources.build();
+  }
+
+  /**
+   * Returns a memoizing loader for each of the {@link CodeTransformer}s associated with the
+   * compiled Refaster rules on the classpath, indexed by rule name.
+   *
+   * @return A mapping from Refaster rule names to associated {@link CodeTransformer} loaders.
+   */
+  private static ImmutableListMultimap<String, Supplier<Optional<CodeTransformer>>>
+      indexCodeTransformers() {
+    ImmutableListMultimap.Builder<String, Supplier<Optional<CodeTransformer>>> loaders =
+        ImmutableListMultimap.builder();
+
+    RULE_RESOURCES
+        .get()
+        .forEach(
+            (ruleName, url) ->
+                loaders.put(ruleName, Suppliers.memoize(() -> loadCodeTransformer(url))));
+
+    return loaders.build();
+  }
+
+  /**
+   * Returns the locations of all compiled Refaster rules on the classpath, indexed by resource
+   * name.
+   *
+   * <p>Rules are located using the {@link RefasterRuleManifest manifests} emitted by the Refaster
+   * rule compiler. Only if no such manifest is present, the full classpath is scanned. As such,
+   * rules compiled by older versions of the compiler, which did not emit a manifest, are located
+   * only if none of the rules on the classpath were compiled by a more recent version.
+   */
+  private static ImmutableListMultimap<String, URL> getRefasterRuleResources() {
+    return getRefasterRuleResources(CodeTransformers.class.getClassLoader());
+  }
+
+  @VisibleForTesting
+  static ImmutableListMultimap<String, URL> getRefasterRuleResources(ClassLoader classLoader) {
+    ImmutableList<URL> manifests = getManifests(classLoader);
+    return manifests.isEmpty()
+        ? scanClassPathResources(classLoader)
+        : getManifestListedResources(manifests);
+  }
+
+  private static ImmutableList<URL> getManifests(ClassLoader classLoader) {
     try {
-      return ClassPath.from(CodeTransformers.class.getClassLoader()).getResources();
+      return ImmutableList.copyOf(
+          Collections.list(classLoader.getResources(RefasterRuleManifest.PATH)));
     } catch (IOException e) {
-      throw new UncheckedIOException("Failed to scan classpath for resources", e);
+      throw new UncheckedIOException("Failed to locate Refaster rule manifests", e);
     }
   }
 
-  private static Optional<String> getRefasterRuleName(ResourceInfo resource) {
-    String resourceName = resource.getResourceName();
-    if (!resourceName.endsWith(REFASTER_RULE_SUFFIX)) {
-      return Optional.empty();
+  private static ImmutableListMultimap<String, URL> getManifestListedResources(
+      ImmutableList<URL> manifests) {
+    ImmutableListMultimap.Builder<String, URL> resources = ImmutableListMultimap.builder();
+    try {
+      for (URL manifest : manifests) {
+        String manifestLocation = manifest.toString();
+        checkState(
+            manifestLocation.endsWith(RefasterRuleManifest.PATH),
+            "Unexpected manifest location '%s'",
+            manifestLocation);
+        String root =
+            manifestLocation.substring(
+                0, manifestLocation.length() - RefasterRuleManifest.PATH.length());
+
+        try (InputStream in = manifest.openStream()) {
+          for (String resourceName : RefasterRuleManifest.read(in)) {
+            if (resourceName.endsWith(REFASTER_RULE_SUFFIX)) {
+              resources.put(resourceName, URI.create(root + resourceName).toURL());
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read Refaster rule manifests", e);
     }
 
+    return resources.build();
+  }
+
+  @SuppressWarnings({
+    "java:S1166" /* The caught exception's stack traces are not relevant. */,
+    "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
+  })
+  private static ImmutableListMultimap<String, URL> scanClassPathResources(
+      ClassLoader classLoader) {
+    ImmutableSet<ResourceInfo> classPathResources;
+    try {
+      classPathResources = ClassPath.from(classLoader).getResources();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to scan classpath for resources", e);
+    }
+
+    ImmutableListMultimap.Builder<String, URL> resources = ImmutableListMultimap.builder();
+    for (ResourceInfo resource : classPathResources) {
+      String resourceName = resource.getResourceName();
+      if (resourceName.endsWith(REFASTER_RULE_SUFFIX)) {
+        try {
+          resources.put(resourceName, resource.url());
+        } catch (NoSuchElementException e) {
+          /*
+           * For some reason we can't load the resource; skip it. This issue has been observed when
+           * executing the code using Maven Surefire, in which case `ResourceInfo` may reference a
+           * path relative to the current working directory, even though the current working
+           * directory is not
+           */
+          // XXX: This appears to be a bug in Guava's ClassPath implementation. Consider migrating
+          // to ClassGraph.
+          // XXX: Should we log this?
+        }
+      }
+    }
+
+    return resources.build();
+  }
+
+  private static String getRefasterRuleName(String resourceName) {
     int lastPathSeparator = resourceName.lastIndexOf('/');
     int beginIndex = lastPathSeparator < 0 ? 0 : (lastPathSeparator + 1);
     int endIndex = resourceName.length() - REFASTER_RULE_SUFFIX.length();
-    return Optional.of(resourceName.substring(beginIndex, endIndex));
+    return resourceName.substring(beginIndex, endIndex);
+  }
+
+  @SuppressWarnings({
+    "java:S1166" /* The caught exception's stack traces are not relevant. */,
+    "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
+  })
+  private static byte[] readResource(URL resource) {
+    try (InputStream in = resource.openStream()) {
+      return in.readAllBytes();
+    } catch (FileNotFoundException e) {
+      /* The resource is listed by a manifest, but no longer exists; see `loadCodeTransformer`. */
+      return new byte[0];
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + resource, e);
+    }
   }
 
   @SuppressWarnings({
     "java:S1166" /* The caught exception's stack traces are not relevant. */,
-    "java:S2147" /* The `catch` clauses have distinct comments. */,
     "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
   })
-  private static Optional<CodeTransformer> loadCodeTransformer(ResourceInfo resource) {
-    try (InputStream in = resource.url().openStream();
-        ObjectInputStream ois = new ObjectInputStream(in)) {
-      @SuppressWarnings("BanSerializableRead" /* Part of the Refaster API. */)
-      CodeTransformer codeTransformer = (CodeTransformer) ois.readObject();
-      return Optional.of(codeTransformer);
-    } catch (NoSuchElementException e) {
+  private static Optional<CodeTransformer> loadCodeTransformer(URL resource) {
+    try (InputStream in = resource.openStream()) {
+      return Optional.of(RefasterRuleFormat.read(in));
+    } catch (FileNotFoundException e) {
       /*
-       * For some reason we can't load the resource; skip it. This issue has been observed when
-       * executing the code using Maven Surefire, in which case `ResourceInfo` may reference a path
-       * relative to the current working directory, even though the current working directory is not
+       * The resource is listed by a manifest, but no longer exists; this may happen after
+       * incremental compilation.
        */
-      // XXX: This appears to be a bug in Guava's ClassPath implementation. Consider migrating to
-      // ClassGraph.
       // XXX: Should we log this?
       return Optional.empty();
     } catch (ClassCastException e) {
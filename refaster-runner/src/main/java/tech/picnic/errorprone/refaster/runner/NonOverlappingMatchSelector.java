@@ -0,0 +1,194 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
+import com.google.errorprone.annotations.Var;
+import com.google.errorprone.fixes.Replacement;
+import com.google.errorprone.matchers.Description;
+import com.sun.tools.javac.tree.EndPosTable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Selects a subset of Refaster rule matches, such that no two selected matches suggest a
+ * replacement of the same part of the source code.
+ *
+ * <p>In the common case all matches are selected. In case of overlap the match that replaces the
+ * largest piece of source code is preferred. In case two matches wish to replace exactly the same
+ * piece of code, preference is given to the match that suggests the shortest replacement.
+ *
+ * <p>This class is public only such that it can be benchmarked; it is not meant to be used outside
+ * of this package.
+ */
+// XXX: This selection logic solves an issue described in
+// https://github.com/google/error-prone/issues/559. Consider contributing it back upstream.
+@VisibleForTesting
+public final class NonOverlappingMatchSelector {
+  private NonOverlappingMatchSelector() {}
+
+  /**
+   * Selects the matches to be reported.
+   *
+   * @param matches The matches from which to select.
+   * @param endPositions The end positions of the compilation unit to which the matches apply.
+   * @return The selected matches, ordered by preference.
+   */
+  public static ImmutableList<Description> select(
+      Iterable<Description> matches, EndPosTable endPositions) {
+    /* Note that the sort is stable, such that equally preferred matches retain their order. */
+    ImmutableList<Candidate> candidates =
+        Streams.stream(matches)
+            .map(match -> Candidate.create(match, endPositions))
+            .sorted(
+                Comparator.<Candidate>comparingInt(c -> c.replacedCodeSize)
+                    .reversed()
+                    .thenComparingInt(c -> c.insertedCodeSize))
+            .collect(toImmutableList());
+
+    IntervalSet replacedSections = new IntervalSet();
+    ImmutableList.Builder<Description> selected = ImmutableList.builder();
+    for (Candidate candidate : candidates) {
+      if (!candidate.overlapsWith(replacedSections)) {
+        /*
+         * This suggested fix does not overlap with any ("larger") replacement seen until now, so
+         * select it.
+         */
+        selected.add(candidate.description);
+        candidate.addTo(replacedSections);
+      }
+    }
+    return selected.build();
+  }
+
+  /** A match, along with the properties of its replacements that determine its selection. */
+  private static final class Candidate {
+    private final Description description;
+    private final int replacedCodeSize;
+    // XXX: It might be nicer to prefer the shortest replacement _post formatting_.
+    private final int insertedCodeSize;
+
+    /** The start and end offsets of all non-empty replacements, in alternating order. */
+    private final int[] replacedRanges;
+
+    private Candidate(
+        Description description, int replacedCodeSize, int insertedCodeSize, int[] replacedRanges) {
+      this.description = description;
+      this.replacedCodeSize = replacedCodeSize;
+      this.insertedCodeSize = insertedCodeSize;
+      this.replacedRanges = replacedRanges;
+    }
+
+    static Candidate create(Description description, EndPosTable endPositions) {
+      ImmutableList<Replacement> replacements =
+          description.fixes.stream()
+              .flatMap(fix -> fix.getReplacements(endPositions).stream())
+              .collect(toImmutableList());
+
+      @Var int replacedCodeSize = 0;
+      @Var int insertedCodeSize = 0;
+      int[] replacedRanges = new int[2 * replacements.size()];
+      @Var int index = 0;
+      for (Replacement replacement : replacements) {
+        replacedCodeSize += replacement.length();
+        insertedCodeSize += replacement.replaceWith().length();
+        if (replacement.length() > 0) {
+          replacedRanges[index++] = replacement.startPosition();
+          replacedRanges[index++] = replacement.endPosition();
+        }
+      }
+
+      return new Candidate(
+          description,
+          replacedCodeSize,
+          insertedCodeSize,
+          index == replacedRanges.length ? replacedRanges : Arrays.copyOf(replacedRanges, index));
+    }
+
+    boolean overlapsWith(IntervalSet intervals) {
+      for (int i = 0; i < replacedRanges.length; i += 2) {
+        if (intervals.overlaps(replacedRanges[i], replacedRanges[i + 1])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void addTo(IntervalSet intervals) {
+      for (int i = 0; i < replacedRanges.length; i += 2) {
+        intervals.add(replacedRanges[i], replacedRanges[i + 1]);
+      }
+    }
+  }
+
+  /**
+   * A set of disjoint, half-open integer intervals, stored as sorted primitive arrays.
+   *
+   * <p>Adjacent and overlapping intervals are coalesced upon insertion, such that overlap with a
+   * given interval can be determined using a single binary search.
+   */
+  static final class IntervalSet {
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    /**
+     * Tells whether the half-open interval {@code [start, end)} overlaps with any interval in this
+     * set.
+     *
+     * @param start The inclusive start of the interval.
+     * @param end The exclusive end of the interval; must be greater than {@code start}.
+     * @return {@code true} iff the intersection with some interval in this set is non-empty.
+     */
+    boolean overlaps(int start, int end) {
+      /* Of the intervals that start before `end`, only the last one may overlap. */
+      int index = indexOfLastStartBefore(end);
+      return index >= 0 && ends[index] > start;
+    }
+
+    /**
+     * Adds the half-open interval {@code [start, end)} to this set.
+     *
+     * @param start The inclusive start of the interval.
+     * @param end The exclusive end of the interval; must be greater than {@code start}.
+     */
+    void add(int start, int end) {
+      /* Determine the range of existing intervals that are connected to the new interval. */
+      @Var int first = indexOfLastStartBefore(start);
+      if (first < 0 || ends[first] < start) {
+        first++;
+      }
+      int last = indexOfLastStartBefore(end + 1);
+
+      if (first > last) {
+        insert(first, start, end);
+      } else {
+        starts[first] = Math.min(start, starts[first]);
+        ends[first] = Math.max(end, ends[last]);
+        System.arraycopy(starts, last + 1, starts, first + 1, size - last - 1);
+        System.arraycopy(ends, last + 1, ends, first + 1, size - last - 1);
+        size -= last - first;
+      }
+    }
+
+    private void insert(int index, int start, int end) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * size);
+        ends = Arrays.copyOf(ends, 2 * size);
+      }
+      System.arraycopy(starts, index, starts, index + 1, size - index);
+      System.arraycopy(ends, index, ends, index + 1, size - index);
+      starts[index] = start;
+      ends[index] = end;
+      size++;
+    }
+
+    /** Returns the index of the last interval that starts before the given offset, if any. */
+    private int indexOfLastStartBefore(int offset) {
+      int index = Arrays.binarySearch(starts, 0, size, offset);
+      return index >= 0 ? index - 1 : -index - 2;
+    }
+  }
+}
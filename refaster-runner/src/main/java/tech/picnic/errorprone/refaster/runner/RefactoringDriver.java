@@ -0,0 +1,419 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.joining;
+
+import com.github.difflib.patch.Patch;
+import com.github.difflib.patch.PatchFailedException;
+import com.github.difflib.unifieddiff.UnifiedDiffFile;
+import com.github.difflib.unifieddiff.UnifiedDiffReader;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.common.util.concurrent.Futures;
+import com.google.errorprone.BugCheckerInfo;
+import com.google.errorprone.ErrorProneJavaCompiler;
+import com.google.errorprone.annotations.Var;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.scanner.BuiltInCheckerSuppliers;
+import com.google.errorprone.scanner.ScannerSupplier;
+import com.sun.tools.javac.file.CacheFSInfo;
+import com.sun.tools.javac.file.FSInfo;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.util.Context;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+/**
+ * A command line tool that applies Refaster rules and other Error Prone checks to a complete source
+ * tree, without the overhead of a full build.
+ *
+ * <p>The source files below the given source roots are split into batches, which are analyzed
+ * concurrently by separate in-process compilations. Source files outside the current batch are
+ * resolved through the source path, and dependencies through the given class path. Each worker
+ * thread reuses a single file manager across all batches it processes, such that class path
+ * archives are indexed only once per thread. All file managers share a single, thread-safe cache of
+ * file system metadata, such as the canonical paths and attributes of class path entries and the
+ * {@code Class-Path} manifest attributes of class path archives, such that this information is
+ * looked up only once per run. Since Error Prone applies patches only once a compilation unit has
+ * been fully compiled, class files are generated, but they are written to a temporary directory
+ * that is removed afterwards. Implicitly compiled source files are neither generated nor analyzed,
+ * such that each source file is analyzed and patched only by the batch it belongs to.
+ *
+ * <p>Patches are never applied while other batches are still running, as those may concurrently
+ * parse the files being patched. Instead each batch writes its patch to a separate directory, and
+ * the resultant patches are applied or concatenated once all batches have completed.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * java [--add-exports and --add-opens flags required by Error Prone] \
+ *   -cp <Error Prone, Error Prone Support and rule jars> \
+ *   tech.picnic.errorprone.refaster.runner.RefactoringDriver \
+ *   [--classpath <classPath>] [--checks <check>[,<check>...]] [--threads <count>] \
+ *   [--batch-size <count>] [--patch-location <IN_PLACE|directory>] \
+ *   <sourceRoot>... [-- <additional javac and Error Prone options>]
+ * }</pre>
+ *
+ * <p>By default only {@link Refaster} is applied, using all rules on the class path of this tool.
+ * When patches are written to a directory rather than applied in place, the patches of all batches
+ * are concatenated into a single {@value #PATCH_FILE} file.
+ */
+// XXX: Source files that are resolved through the source path are attributed by each batch that
+// references them. Consider grouping source files that reference each other into the same batch.
+// XXX: Symbols are not shared across batches: each compilation completes the symbols of the
+// classes it references from scratch, as javac's symbol table is tied to a single compilation and
+// is not thread-safe. Consider sharing a read-only symbol cache, should javac ever support this.
+public final class RefactoringDriver {
+  @VisibleForTesting static final String PATCH_FILE = "error-prone.patch";
+
+  private static final String IN_PLACE = "IN_PLACE";
+  private static final Splitter CHECK_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final Splitter LINE_SPLITTER = Splitter.on('\n');
+  private static final Joiner LINE_JOINER = Joiner.on('\n');
+
+  private final String classPath;
+  private final ImmutableList<Path> sourceRoots;
+  private final ImmutableSet<String> checks;
+  private final ImmutableList<String> additionalOptions;
+  private final int threads;
+  private final int batchSize;
+  private final String patchLocation;
+
+  private RefactoringDriver(
+      String classPath,
+      ImmutableList<Path> sourceRoots,
+      ImmutableSet<String> checks,
+      ImmutableList<String> additionalOptions,
+      int threads,
+      int batchSize,
+      String patchLocation) {
+    this.classPath = classPath;
+    this.sourceRoots = sourceRoots;
+    this.checks = checks;
+    this.additionalOptions = additionalOptions;
+    this.threads = threads;
+    this.batchSize = batchSize;
+    this.patchLocation = patchLocation;
+  }
+
+  /**
+   * Applies the requested checks to the requested source roots.
+   *
+   * @param args The command line arguments; see the class documentation.
+   * @throws IOException If the source roots cannot be traversed, or if patches cannot be written.
+   */
+  @SuppressWarnings("SystemOut" /* The summary is meant for human consumption. */)
+  public static void main(String[] args) throws IOException {
+    RefactoringDriver driver = parse(ImmutableList.copyOf(args));
+    ImmutableList<String> errors = driver.run();
+    errors.forEach(System.err::println);
+    if (!errors.isEmpty()) {
+      System.exit(1);
+    }
+  }
+
+  @VisibleForTesting
+  static RefactoringDriver parse(ImmutableList<String> args) {
+    @Var String classPath = "";
+    ImmutableList.Builder<Path> sourceRoots = ImmutableList.builder();
+    @Var ImmutableSet<String> checks = ImmutableSet.of("Refaster");
+    @Var ImmutableList<String> additionalOptions = ImmutableList.of();
+    @Var int threads = Runtime.getRuntime().availableProcessors();
+    @Var int batchSize = 50;
+    @Var String patchLocation = IN_PLACE;
+
+    Iterator<String> arguments = args.iterator();
+    while (arguments.hasNext()) {
+      String argument = arguments.next();
+      switch (argument) {
+        case "--classpath" -> classPath = getValue(argument, arguments);
+        case "--checks" ->
+            checks = ImmutableSet.copyOf(CHECK_SPLITTER.split(getValue(argument, arguments)));
+        case "--threads" -> threads = getPositiveInteger(argument, arguments);
+        case "--batch-size" -> batchSize = getPositiveInteger(argument, arguments);
+        case "--patch-location" -> patchLocation = getValue(argument, arguments);
+        case "--" -> additionalOptions = ImmutableList.copyOf(arguments);
+        default -> {
+          checkArgument(!argument.startsWith("--"), "Unrecognized option '%s'", argument);
+          sourceRoots.add(Path.of(argument));
+        }
+      }
+    }
+
+    ImmutableList<Path> roots = sourceRoots.build();
+    checkArgument(!roots.isEmpty(), "No source roots specified");
+    checkArgument(!checks.isEmpty(), "No checks specified");
+    return new RefactoringDriver(
+        classPath, roots, checks, additionalOptions, threads, batchSize, patchLocation);
+  }
+
+  private static String getValue(String option, Iterator<String> arguments) {
+    checkArgument(arguments.hasNext(), "Option '%s' requires a value", option);
+    return arguments.next();
+  }
+
+  private static int getPositiveInteger(String option, Iterator<String> arguments) {
+    String value = getValue(option, arguments);
+    int number;
+    try {
+      number = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format("Option '%s' requires an integer, but got '%s'", option, value), e);
+    }
+    checkArgument(number > 0, "Option '%s' must be positive, but is '%s'", option, number);
+    return number;
+  }
+
+  /**
+   * Applies the configured checks to all source files below the configured source roots.
+   *
+   * @return The compilation errors reported for any of the batches; if non-empty, then the
+   *     associated batches were not (fully) patched.
+   * @throws IOException If the source roots cannot be traversed, or if patches cannot be written.
+   */
+  @VisibleForTesting
+  ImmutableList<String> run() throws IOException {
+    ErrorProneJavaCompiler compiler = new ErrorProneJavaCompiler(getScannerSupplier(checks));
+    List<List<Path>> batches = Lists.partition(getSourceFiles(), batchSize);
+    Path patchRoot =
+        patchLocation.equals(IN_PLACE)
+            ? Files.createTempDirectory("refactoring-driver-patches")
+            : Files.createDirectories(Path.of(patchLocation));
+    ImmutableList<Path> patchDirectories = createPatchDirectories(patchRoot, batches.size());
+
+    FSInfo fsInfo = new CacheFSInfo();
+    BlockingQueue<StandardJavaFileManager> fileManagers = new ArrayBlockingQueue<>(threads);
+    for (int i = 0; i < threads; i++) {
+      fileManagers.add(createFileManager(fsInfo));
+    }
+
+    Path classOutput = Files.createTempDirectory("refactoring-driver");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<ImmutableList<String>>> tasks = new ArrayList<>();
+      for (int i = 0; i < batches.size(); i++) {
+        List<Path> batch = batches.get(i);
+        ImmutableList<String> options =
+            getOptions(classOutput, batch, patchDirectories.get(i).toString());
+        tasks.add(() -> analyze(compiler, fileManagers, batch, options));
+      }
+
+      /* Errors in source files shared by multiple batches are reported only once. */
+      ImmutableSet.Builder<String> errors = ImmutableSet.builder();
+      for (Future<ImmutableList<String>> result : executor.invokeAll(tasks)) {
+        errors.addAll(Futures.getUnchecked(result));
+      }
+      if (patchLocation.equals(IN_PLACE)) {
+        applyPatches(patchDirectories);
+      } else {
+        mergePatches(patchRoot, patchDirectories);
+      }
+      return errors.build().asList();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while analyzing source files", e);
+    } finally {
+      executor.shutdownNow();
+      for (StandardJavaFileManager fileManager : fileManagers) {
+        fileManager.close();
+      }
+      MoreFiles.deleteRecursively(classOutput, RecursiveDeleteOption.ALLOW_INSECURE);
+      if (patchLocation.equals(IN_PLACE)) {
+        MoreFiles.deleteRecursively(patchRoot, RecursiveDeleteOption.ALLOW_INSECURE);
+      }
+    }
+  }
+
+  /**
+   * Creates a file manager that uses the given {@link FSInfo}, rather than one that is private to
+   * the file manager.
+   */
+  private static StandardJavaFileManager createFileManager(FSInfo fsInfo) {
+    Context context = new Context();
+    context.put(Locale.class, Locale.ROOT);
+    context.put(FSInfo.class, fsInfo);
+    return new JavacFileManager(context, /* register= */ true, UTF_8);
+  }
+
+  private static ImmutableList<String> analyze(
+      ErrorProneJavaCompiler compiler,
+      BlockingQueue<StandardJavaFileManager> fileManagers,
+      List<Path> batch,
+      ImmutableList<String> options)
+      throws InterruptedException {
+    StandardJavaFileManager fileManager = fileManagers.take();
+    try {
+      DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+      compiler
+          .getTask(
+              /* out= */ null,
+              fileManager,
+              diagnostics,
+              options,
+              /* classes= */ null,
+              fileManager.getJavaFileObjectsFromPaths(batch))
+          .call();
+      return diagnostics.getDiagnostics().stream()
+          .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+          .map(Diagnostic::toString)
+          .collect(toImmutableList());
+    } finally {
+      fileManagers.add(fileManager);
+    }
+  }
+
+  private ImmutableList<String> getOptions(
+      Path classOutput, List<Path> batch, String batchPatchLocation) {
+    return ImmutableList.<String>builder()
+        .add("-d", classOutput.toString())
+        .add("-classpath", classPath)
+        .add(
+            "-sourcepath",
+            sourceRoots.stream().map(Path::toString).collect(joining(File.pathSeparator)))
+        .add(
+            "-implicit:none", "-proc:none", "-XDcompilePolicy=simple", "--should-stop=ifError=FLOW")
+        .add("-XepExcludedPaths:" + getExcludedPathPattern(batch))
+        .add("-XepPatchLocation:" + batchPatchLocation)
+        .add("-XepPatchChecks:" + String.join(",", checks))
+        .addAll(additionalOptions)
+        .build();
+  }
+
+  /**
+   * Returns a regular expression that matches the paths of all source files except those in the
+   * given batch.
+   *
+   * <p>Without such an exclusion Error Prone would also analyze source files that are implicitly
+   * loaded from the source path, which duplicates the work of other batches and may observe those
+   * files while they are being patched.
+   */
+  private static String getExcludedPathPattern(List<Path> batch) {
+    return batch.stream()
+        .map(p -> Pattern.quote(p.toUri().getPath()))
+        .collect(joining("|", "^(?!(?:", ")$).*"));
+  }
+
+  private ImmutableList<Path> getSourceFiles() throws IOException {
+    ImmutableList.Builder<Path> sourceFiles = ImmutableList.builder();
+    for (Path sourceRoot : sourceRoots) {
+      try (Stream<Path> files = Files.walk(sourceRoot)) {
+        sourceFiles.addAll(
+            files
+                .filter(p -> p.getFileName().toString().endsWith(".java"))
+                .filter(Files::isRegularFile)
+                .sorted()
+                .iterator());
+      }
+    }
+    return sourceFiles.build();
+  }
+
+  private static ImmutableList<Path> createPatchDirectories(Path patchRoot, int batchCount)
+      throws IOException {
+    ImmutableList.Builder<Path> patchDirectories = ImmutableList.builder();
+    for (int i = 0; i < batchCount; i++) {
+      patchDirectories.add(Files.createTempDirectory(patchRoot, "batch-"));
+    }
+    return patchDirectories.build();
+  }
+
+  /**
+   * Applies the patches written for each batch to the files they describe.
+   *
+   * <p>Error Prone describes patched files relative to the directory to which the patch is written,
+   * and splits source files into lines in the same way as is done here.
+   */
+  private static void applyPatches(ImmutableList<Path> patchDirectories) throws IOException {
+    for (Path patchDirectory : patchDirectories) {
+      Path batchPatch = patchDirectory.resolve(PATCH_FILE);
+      if (Files.exists(batchPatch)) {
+        try (InputStream patch = Files.newInputStream(batchPatch)) {
+          for (UnifiedDiffFile file : UnifiedDiffReader.parseUnifiedDiff(patch).getFiles()) {
+            applyPatch(patchDirectory.resolve(file.getFromFile()).normalize(), file.getPatch());
+          }
+        }
+      }
+    }
+  }
+
+  private static void applyPatch(Path file, Patch<String> patch) throws IOException {
+    List<String> lines = LINE_SPLITTER.splitToList(Files.readString(file, UTF_8));
+    try {
+      Files.writeString(file, LINE_JOINER.join(patch.applyTo(lines)), UTF_8);
+    } catch (PatchFailedException e) {
+      throw new IOException(String.format("Failed to apply patch to '%s'", file), e);
+    }
+  }
+
+  /**
+   * Concatenates the patches written for each batch, in batch order, and removes the associated
+   * temporary directories.
+   */
+  private static void mergePatches(Path patchRoot, ImmutableList<Path> patchDirectories)
+      throws IOException {
+    StringBuilder patch = new StringBuilder();
+    for (Path patchDirectory : patchDirectories) {
+      Path batchPatch = patchDirectory.resolve(PATCH_FILE);
+      if (Files.exists(batchPatch)) {
+        patch.append(Files.readString(batchPatch, UTF_8));
+        Files.delete(batchPatch);
+      }
+      Files.delete(patchDirectory);
+    }
+    Files.writeString(patchRoot.resolve(PATCH_FILE), patch, UTF_8);
+  }
+
+  private static ScannerSupplier getScannerSupplier(ImmutableSet<String> checks) {
+    ImmutableMap<String, BugCheckerInfo> availableChecks = getAvailableChecks();
+    ImmutableList<BugCheckerInfo> selectedChecks =
+        checks.stream()
+            .map(
+                name -> {
+                  BugCheckerInfo check = availableChecks.get(name);
+                  checkArgument(check != null, "Unknown check '%s'", name);
+                  return check;
+                })
+            .collect(toImmutableList());
+    return ScannerSupplier.fromBugCheckerInfos(selectedChecks);
+  }
+
+  private static ImmutableMap<String, BugCheckerInfo> getAvailableChecks() {
+    return Stream.concat(
+            BuiltInCheckerSuppliers.allChecks().getAllChecks().values().stream(),
+            ServiceLoader.load(BugChecker.class).stream()
+                .map(provider -> BugCheckerInfo.create(provider.type())))
+        .collect(toImmutableMap(BugCheckerInfo::canonicalName, identity(), (a, b) -> b));
+  }
+}
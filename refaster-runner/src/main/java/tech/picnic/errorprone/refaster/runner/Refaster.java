@@ -1,27 +1,19 @@
 package tech.picnic.errorprone.refaster.runner;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.ImmutableRangeSet.toImmutableRangeSet;
 import static com.google.errorprone.BugPattern.LinkType.NONE;
 import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.BugPattern.SeverityLevel.WARNING;
 import static com.google.errorprone.BugPattern.StandardTags.SIMPLIFICATION;
-import static java.util.function.Predicate.not;
 
 import com.google.auto.service.AutoService;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableRangeSet;
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeSet;
-import com.google.common.collect.TreeRangeSet;
 import com.google.errorprone.BugPattern;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.CodeTransformer;
-import com.google.errorprone.CompositeCodeTransformer;
 import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.ErrorProneOptions.Severity;
 import com.google.errorprone.SubContext;
@@ -29,19 +21,20 @@ import com.google.errorprone.VisitorState;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.bugpatterns.BugChecker;
 import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
-import com.google.errorprone.fixes.Replacement;
 import com.google.errorprone.matchers.Description;
+import com.google.errorprone.suppliers.Supplier;
 import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
 import com.sun.tools.javac.tree.EndPosTable;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import com.sun.tools.javac.util.Context;
+import java.nio.file.Path;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 import javax.inject.Inject;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.utils.ThirdPartyLibrary;
 
 /**
  * A {@link BugChecker} that flags code that can be simplified using Refaster rules located on the
@@ -49,7 +42,16 @@ import javax.inject.Inject;
  *
  * <p>This checker locates all {@code *.refaster} classpath resources and assumes that they contain
  * a {@link CodeTransformer}. The set of loaded Refaster rules can be restricted by passing {@code
- * -XepOpt:Refaster:NamePattern=<someRegex>}.
+ * -XepOpt:Refaster:NamePattern=<someRegex>}. The cost of individual rules can be profiled by
+ * passing {@code -XepOpt:Refaster:ProfileReportDirectory=<someDirectory>}; see {@link
+ * RefasterRuleProfiler}. The matches reported for unchanged source files can be reused across
+ * builds by passing {@code -XepOpt:Refaster:CacheDirectory=<someDirectory>}; see {@link
+ * RefasterMatchCache}.
+ *
+ * <p>Rules whose suggestions reference types that are not available in the current compilation,
+ * such as rules that introduce usages of a third-party library that is not on the classpath, are
+ * not applied. Whether a type is available is determined once per compilation, in the same way as
+ * {@link ThirdPartyLibrary#canIntroduceUsage(String, VisitorState)}.
  */
 @AutoService(BugChecker.class)
 @BugPattern(
@@ -58,14 +60,33 @@ import javax.inject.Inject;
     severity = SUGGESTION,
     tags = SIMPLIFICATION)
 @SuppressWarnings("java:S2160" /* Super class equality definition suffices. */)
+// XXX: Rules are matched sequentially. Matching them concurrently against the same compilation unit
+// is not safe, as matching resolves names, symbols and types through the compilation's `Context`,
+// and the associated `Names`, `Symtab` and `Types` instances are not thread-safe.
 public final class Refaster extends BugChecker implements CompilationUnitTreeMatcher {
   /** Flag to pass a pattern that restricts which Refaster rules are loaded. */
   public static final String INCLUDED_RULES_PATTERN_FLAG = "Refaster:NamePattern";
 
+  /**
+   * Flag to pass the directory to which a report on the cost of each applied Refaster rule is
+   * written upon completion of the compilation. By default no such report is produced.
+   */
+  public static final String PROFILE_REPORT_DIRECTORY_FLAG = "Refaster:ProfileReportDirectory";
+
+  /**
+   * Flag to pass the directory in which the matches reported for each compilation unit are cached,
+   * such that they can be replayed by subsequent builds. By default no such cache is used.
+   */
+  public static final String CACHE_DIRECTORY_FLAG = "Refaster:CacheDirectory";
+
   private static final long serialVersionUID = 1L;
 
-  @SuppressWarnings({"java:S1948", "serial"} /* Concrete instance will be `Serializable`. */)
-  private final CodeTransformer codeTransformer;
+  // XXX: None of these fields are serializable. As with other Error Prone checks, instances of
+  // this class are not expected to be serialized in practice, so they are simply excluded.
+  private final transient RefasterRuleSelector ruleSelector;
+  private final transient Supplier<RefasterRuleSelector> supportedRuleSelector;
+  private final transient @Nullable RefasterRuleProfiler profiler;
+  private final transient @Nullable RefasterMatchCache cache;
 
   /** Instantiates a default {@link Refaster} instance. */
   public Refaster() {
@@ -80,54 +101,85 @@ public final class Refaster extends BugChecker implements CompilationUnitTreeMat
   @Inject
   @VisibleForTesting
   public Refaster(ErrorProneFlags flags) {
-    codeTransformer = createCompositeCodeTransformer(flags);
+    profiler =
+        flags
+            .get(PROFILE_REPORT_DIRECTORY_FLAG)
+            .map(directory -> RefasterRuleProfiler.create(Path.of(directory)))
+            .orElse(null);
+    Optional<Predicate<String>> ruleNameFilter =
+        flags.get(INCLUDED_RULES_PATTERN_FLAG).map(p -> Pattern.compile(p).asMatchPredicate());
+    ruleSelector = RefasterRuleSelector.create(getCodeTransformers(ruleNameFilter, profiler));
+    supportedRuleSelector =
+        VisitorState.memoize(
+            state ->
+                ruleSelector.retainSupported(
+                    type -> ThirdPartyLibrary.canIntroduceUsage(type, state)));
+    cache =
+        flags
+            .get(CACHE_DIRECTORY_FLAG)
+            .map(
+                directory ->
+                    RefasterMatchCache.create(
+                        Path.of(directory),
+                        CodeTransformers.getCodeTransformersDigest(
+                            ruleNameFilter.orElse(ruleName -> true))))
+            .orElse(null);
   }
 
   @CanIgnoreReturnValue
   @Override
   public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    /* First, collect all matches. */
-    List<Description> matches = new ArrayList<>();
-    codeTransformer.apply(state.getPath(), new SubContext(state.context), matches::add);
+    if (profiler != null) {
+      profiler.reportOnCompletion(state.context);
+    }
 
-    /* Then apply them. */
-    applyMatches(matches, ((JCCompilationUnit) tree).endPositions, state);
+    EndPosTable endPositions = ((JCCompilationUnit) tree).endPositions;
+    ImmutableList<Description> matches =
+        cache == null
+            ? selectMatches(endPositions, state)
+            : cache.get(
+                state,
+                supportedRuleSelector.get(state).getRetainedRulesDigest(),
+                endPositions,
+                () -> selectMatches(endPositions, state));
+
+    Optional<SeverityLevel> severityOverride = getSeverityOverride(state);
+    for (Description description : matches) {
+      state.reportMatch(augmentDescription(description, severityOverride));
+    }
 
     /* Any matches were already reported by the code above, directly to the `VisitorState`. */
     return Description.NO_MATCH;
   }
 
   /**
-   * Reports a subset of the given matches, such that no two reported matches suggest a replacement
-   * of the same part of the source code.
+   * Collects all matches, and selects a subset of them such that no two selected matches suggest a
+   * replacement of the same part of the source code.
    *
-   * <p>In the common case all matches will be reported. In case of overlap the match that replaces
-   * the largest piece of source code is preferred. In case two matches wish to replace exactly the
-   * same piece of code, preference is given to the match that suggests the shortest replacement.
+   * @see NonOverlappingMatchSelector
    */
-  // XXX: This selection logic solves an issue described in
-  // https://github.com/google/error-prone/issues/559. Consider contributing it back upstream.
-  private void applyMatches(
-      Iterable<Description> allMatches, EndPosTable endPositions, VisitorState state) {
-    ImmutableList<Description> byReplacementSize =
-        ImmutableList.sortedCopyOf(
-            Comparator.<Description>comparingInt(d -> getReplacedCodeSize(d, endPositions))
-                .reversed()
-                .thenComparingInt(d -> getInsertedCodeSize(d, endPositions)),
-            allMatches);
-
-    RangeSet<Integer> replacedSections = TreeRangeSet.create();
-    for (Description description : byReplacementSize) {
-      ImmutableRangeSet<Integer> ranges = getReplacementRanges(description, endPositions);
-      if (ranges.asRanges().stream().noneMatch(replacedSections::intersects)) {
-        /*
-         * This suggested fix does not overlap with any ("larger") replacement seen until now, so
-         * apply it.
-         */
-        state.reportMatch(augmentDescription(description, getSeverityOverride(state)));
-        replacedSections.addAll(ranges);
+  private ImmutableList<Description> selectMatches(EndPosTable endPositions, VisitorState state) {
+    /*
+     * Rules that cannot possibly match this compilation unit or whose suggestions would not compile
+     * are skipped, while other rules are where possible applied only to the subtrees they may
+     * match.
+     */
+    ImmutableList<Description> matches =
+        collectMatches(
+            supportedRuleSelector.get(state).selectApplications(state.getPath()), state.context);
+    return NonOverlappingMatchSelector.select(matches, endPositions);
+  }
+
+  private ImmutableList<Description> collectMatches(
+      ImmutableList<RuleApplication> applications, Context context) {
+    ImmutableList.Builder<Description> matches = ImmutableList.builder();
+    Context subContext = new SubContext(context);
+    for (RuleApplication application : applications) {
+      for (TreePath path : application.paths()) {
+        application.transformer().apply(path, subContext, matches::add);
       }
     }
+    return matches.build();
   }
 
   private Optional<SeverityLevel> getSeverityOverride(VisitorState state) {
@@ -171,45 +223,19 @@ public final class Refaster extends BugChecker implements CompilationUnitTreeMat
         .build();
   }
 
-  private static int getReplacedCodeSize(Description description, EndPosTable endPositions) {
-    return getReplacements(description, endPositions).mapToInt(Replacement::length).sum();
-  }
-
-  // XXX: It might be nicer to prefer the shortest replacement _post formatting_.
-  private static int getInsertedCodeSize(Description description, EndPosTable endPositions) {
-    return getReplacements(description, endPositions).mapToInt(r -> r.replaceWith().length()).sum();
-  }
-
-  private static ImmutableRangeSet<Integer> getReplacementRanges(
-      Description description, EndPosTable endPositions) {
-    return getReplacements(description, endPositions)
-        .map(Replacement::range)
-        .filter(not(Range::isEmpty))
-        .collect(toImmutableRangeSet());
-  }
+  private static ImmutableList<CodeTransformer> getCodeTransformers(
+      Optional<Predicate<String>> ruleNameFilter, @Nullable RefasterRuleProfiler profiler) {
+    ImmutableListMultimap<String, CodeTransformer> transformers =
+        ruleNameFilter
+            .map(CodeTransformers::getCodeTransformers)
+            .orElseGet(CodeTransformers::getAllCodeTransformers);
 
-  private static Stream<Replacement> getReplacements(
-      Description description, EndPosTable endPositions) {
-    return description.fixes.stream().flatMap(fix -> fix.getReplacements(endPositions).stream());
-  }
-
-  private static CodeTransformer createCompositeCodeTransformer(ErrorProneFlags flags) {
-    ImmutableListMultimap<String, CodeTransformer> allTransformers =
-        CodeTransformers.getAllCodeTransformers();
-    return CompositeCodeTransformer.compose(
-        flags
-            .get(INCLUDED_RULES_PATTERN_FLAG)
-            .map(Pattern::compile)
-            .<ImmutableCollection<CodeTransformer>>map(
-                nameFilter -> filterCodeTransformers(allTransformers, nameFilter))
-            .orElseGet(allTransformers::values));
-  }
+    if (profiler == null) {
+      return transformers.values().asList();
+    }
 
-  private static ImmutableList<CodeTransformer> filterCodeTransformers(
-      ImmutableListMultimap<String, CodeTransformer> transformers, Pattern nameFilter) {
     return transformers.entries().stream()
-        .filter(e -> nameFilter.matcher(e.getKey()).matches())
-        .map(Map.Entry::getValue)
+        .map(e -> profiler.instrument(e.getKey(), e.getValue()))
         .collect(toImmutableList());
   }
 }
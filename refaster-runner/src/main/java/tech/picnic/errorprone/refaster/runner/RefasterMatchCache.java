@@ -0,0 +1,435 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.ErrorProneOptions;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.fixes.Fix;
+import com.google.errorprone.fixes.Replacement;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.matchers.Description;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A persistent, on-disk cache of the Refaster rule matches reported for individual compilation
+ * units.
+ *
+ * <p>Entries are keyed by a digest of the compilation unit's source code, the {@link
+ * CodeTransformers#getCodeTransformersDigest(java.util.function.Predicate) set of loaded rules},
+ * the {@link RefasterRuleSelector#getRetainedRulesDigest() subset of those rules} supported by the
+ * classpath, the Error Prone options that influence the reported severity, and the compilation's
+ * environment. The latter comprises the source code of all compilation units that are part of the
+ * same compilation, as well as the class path, module path and source path. As a result, entries
+ * are invalidated when any of the compiled source files is modified, when any rule is added,
+ * removed or upgraded, and when any dependency changes. Entries are never evicted; the cache
+ * directory may be removed at any time.
+ *
+ * <p>As class path entries may be large, JAR files are identified by their path, size and
+ * modification time, while for directories the contents of all files below them are hashed. If the
+ * compilation's environment cannot be determined, the cache is not used.
+ *
+ * <p>Each entry stores the non-overlapping matches selected for the associated compilation unit,
+ * with each suggested fix represented by its resolved replacements and import changes.
+ */
+final class RefasterMatchCache {
+  private static final int FORMAT_VERSION = 1;
+  private static final String IMPORT_PREFIX = "import ";
+  private static final String STATIC_IMPORT_PREFIX = "import static ";
+  private static final ImmutableList<StandardLocation> DEPENDENCY_LOCATIONS =
+      ImmutableList.of(
+          StandardLocation.CLASS_PATH, StandardLocation.MODULE_PATH, StandardLocation.SOURCE_PATH);
+
+  private final Path directory;
+  private final HashCode ruleSetDigest;
+  private final com.google.errorprone.suppliers.Supplier<Optional<HashCode>> environmentDigest =
+      VisitorState.memoize(RefasterMatchCache::computeEnvironmentDigest);
+
+  private RefasterMatchCache(Path directory, HashCode ruleSetDigest) {
+    this.directory = directory;
+    this.ruleSetDigest = ruleSetDigest;
+  }
+
+  /**
+   * Creates a {@link RefasterMatchCache} backed by the given directory.
+   *
+   * @param directory The directory in which to store cache entries; created if absent.
+   * @param ruleSetDigest A digest of the Refaster rules whose matches are cached.
+   * @return A non-{@code null} {@link RefasterMatchCache}.
+   */
+  static RefasterMatchCache create(Path directory, HashCode ruleSetDigest) {
+    return new RefasterMatchCache(directory, ruleSetDigest);
+  }
+
+  /**
+   * Returns the cached matches for the compilation unit currently being analyzed, computing and
+   * storing them if absent.
+   *
+   * <p>Failure to read or write a cache entry is not fatal; in that case the matches are simply
+   * recomputed. The same holds if the compilation unit's source code or the compilation's
+   * environment is unavailable.
+   *
+   * @param state The visitor state associated with the compilation unit of interest.
+   * @param retainedRulesDigest A digest of the subset of Refaster rules applied to the compilation
+   *     unit of interest.
+   * @param endPositions The end positions of the compilation unit of interest.
+   * @param matcher The function that computes the matches to be cached.
+   * @return The matches for the compilation unit under consideration.
+   */
+  ImmutableList<Description> get(
+      VisitorState state,
+      HashCode retainedRulesDigest,
+      EndPosTable endPositions,
+      Supplier<ImmutableList<Description>> matcher) {
+    CharSequence sourceCode = state.getSourceCode();
+    Optional<HashCode> environment = environmentDigest.get(state);
+    if (sourceCode == null || environment.isEmpty()) {
+      return matcher.get();
+    }
+
+    Path entry =
+        directory.resolve(
+            getKey(
+                    sourceCode,
+                    environment.orElseThrow(),
+                    retainedRulesDigest,
+                    state.errorProneOptions())
+                .toString());
+
+    Optional<ImmutableList<Description>> cached = read(entry);
+    if (cached.isPresent()) {
+      return cached.orElseThrow();
+    }
+
+    ImmutableList<Description> matches = matcher.get();
+    write(entry, matches, endPositions);
+    return matches;
+  }
+
+  private HashCode getKey(
+      CharSequence sourceCode,
+      HashCode environment,
+      HashCode retainedRulesDigest,
+      ErrorProneOptions options) {
+    return Hashing.sha256()
+        .newHasher()
+        .putInt(FORMAT_VERSION)
+        .putBytes(ruleSetDigest.asBytes())
+        .putBytes(environment.asBytes())
+        .putBytes(retainedRulesDigest.asBytes())
+        .putBoolean(options.isSuggestionsAsWarnings())
+        .putBoolean(options.isDropErrorsToWarnings())
+        .putString(sourceCode, UTF_8)
+        .hash();
+  }
+
+  /**
+   * Computes a digest of the source code of all compilation units that are part of the current
+   * compilation, and of the class path, module path and source path against which they are
+   * compiled, or returns an empty result if these cannot be determined.
+   */
+  @SuppressWarnings({
+    "java:S1166" /* The caught exception's stack traces are not relevant. */,
+    "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
+  })
+  private static Optional<HashCode> computeEnvironmentDigest(VisitorState state) {
+    if (!(state.context.get(JavaFileManager.class)
+        instanceof StandardJavaFileManager fileManager)) {
+      return Optional.empty();
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher().putString(Runtime.version().toString(), UTF_8);
+    try {
+      ImmutableSet<Path> outputPaths =
+          ImmutableSet.<Path>builder()
+              .addAll(getPaths(fileManager, StandardLocation.CLASS_OUTPUT))
+              .addAll(getPaths(fileManager, StandardLocation.SOURCE_OUTPUT))
+              .build();
+      for (StandardLocation location : DEPENDENCY_LOCATIONS) {
+        hasher.putString(location.getName(), UTF_8);
+        for (Path path : getPaths(fileManager, location)) {
+          if (!outputPaths.contains(path)) {
+            digestPath(path, hasher);
+          }
+        }
+      }
+      for (HashCode sourceDigest : getCompiledSourceDigests(Symtab.instance(state.context))) {
+        hasher.putBytes(sourceDigest.asBytes());
+      }
+    } catch (IOException | UnsupportedOperationException e) {
+      /* The environment cannot be (fully) determined; the cache is not used. */
+      // XXX: Should we log this?
+      return Optional.empty();
+    }
+
+    return Optional.of(hasher.hash());
+  }
+
+  private static ImmutableSet<Path> getPaths(
+      StandardJavaFileManager fileManager, StandardLocation location) {
+    Iterable<? extends Path> paths = fileManager.getLocationAsPaths(location);
+    return paths == null ? ImmutableSet.of() : ImmutableSet.copyOf(paths);
+  }
+
+  /**
+   * Adds the path, size and modification time of the given file, or the relative path and content
+   * of each file below the given directory, to the given {@link Hasher}.
+   */
+  private static void digestPath(Path path, Hasher hasher) throws IOException {
+    hasher.putString(path.toString(), UTF_8).putByte((byte) 0);
+    if (!Files.isDirectory(path)) {
+      if (Files.isRegularFile(path)) {
+        hasher.putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis());
+      }
+      return;
+    }
+
+    ImmutableList<Path> files;
+    try (Stream<Path> paths = Files.walk(path)) {
+      files = paths.filter(Files::isRegularFile).sorted().collect(toImmutableList());
+    }
+    for (Path file : files) {
+      hasher
+          .putString(path.relativize(file).toString(), UTF_8)
+          .putByte((byte) 0)
+          .putBytes(MoreFiles.asByteSource(file).hash(Hashing.sha256()).asBytes());
+    }
+  }
+
+  /**
+   * Returns the digests of the source code of all compilation units that are part of the current
+   * compilation, in a deterministic order.
+   *
+   * <p>These are the source files from which classes were entered without being looked up on the
+   * source path; as all compilation units are entered before any of them is analyzed, this set is
+   * complete by the time the first compilation unit is matched.
+   */
+  private static ImmutableSortedSet<HashCode> getCompiledSourceDigests(Symtab symtab)
+      throws IOException {
+    Set<JavaFileObject> sourceFiles = new HashSet<>();
+    for (ClassSymbol clazz : symtab.getAllClasses()) {
+      if (clazz.classfile == null
+          && clazz.sourcefile != null
+          && clazz.sourcefile.getKind() == JavaFileObject.Kind.SOURCE) {
+        sourceFiles.add(clazz.sourcefile);
+      }
+    }
+
+    ImmutableSortedSet.Builder<HashCode> digests =
+        ImmutableSortedSet.orderedBy(comparing(HashCode::toString));
+    for (JavaFileObject sourceFile : sourceFiles) {
+      digests.add(Hashing.sha256().hashString(sourceFile.getCharContent(true), UTF_8));
+    }
+    return digests.build();
+  }
+
+  @SuppressWarnings({
+    "java:S1166" /* The caught exception's stack traces are not relevant. */,
+    "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
+  })
+  private static Optional<ImmutableList<Description>> read(Path entry) {
+    try (InputStream in = Files.newInputStream(entry)) {
+      return Optional.of(readMatches(new DataInputStream(new BufferedInputStream(in))));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException | IllegalArgumentException e) {
+      /* The entry is corrupt or was written concurrently; it will be overwritten. */
+      // XXX: Should we log this?
+      return Optional.empty();
+    }
+  }
+
+  @SuppressWarnings({
+    "java:S1166" /* The caught exception's stack traces are not relevant. */,
+    "key-to-resolve-AnnotationUseStyle-and-TrailingComment-check-conflict"
+  })
+  private void write(Path entry, ImmutableList<Description> matches, EndPosTable endPositions) {
+    try {
+      Files.createDirectories(directory);
+      Path tempFile = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+          writeMatches(data, matches, endPositions);
+          data.flush();
+        }
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    } catch (IOException e) {
+      /* The cache is best-effort. */
+      // XXX: Should we log this?
+    }
+  }
+
+  private static void writeMatches(
+      DataOutputStream out, ImmutableList<Description> matches, EndPosTable endPositions)
+      throws IOException {
+    out.writeInt(matches.size());
+    for (Description match : matches) {
+      out.writeInt(match.position.getStartPosition());
+      out.writeInt(match.position.getPreferredPosition());
+      out.writeInt(match.position.getEndPosition(endPositions));
+      out.writeUTF(match.checkName);
+      writeNullableString(out, match.getLink());
+      out.writeUTF(match.getRawMessage());
+      out.writeUTF(match.severity().name());
+      out.writeInt(match.fixes.size());
+      for (Fix fix : match.fixes) {
+        writeFix(out, fix, endPositions);
+      }
+    }
+  }
+
+  private static void writeFix(DataOutputStream out, Fix fix, EndPosTable endPositions)
+      throws IOException {
+    out.writeUTF(fix.getShortDescription());
+    ImmutableSet<Replacement> replacements = fix.getReplacements(endPositions);
+    out.writeInt(replacements.size());
+    for (Replacement replacement : replacements) {
+      out.writeInt(replacement.startPosition());
+      out.writeInt(replacement.endPosition());
+      out.writeUTF(replacement.replaceWith());
+    }
+    writeStrings(out, fix.getImportsToAdd());
+    writeStrings(out, fix.getImportsToRemove());
+  }
+
+  private static void writeStrings(DataOutputStream out, ImmutableSet<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static void writeNullableString(DataOutputStream out, @Nullable String string)
+      throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+
+  @SuppressWarnings("RestrictedApi" /* We recreate previously reported `Description`s here. */)
+  private static ImmutableList<Description> readMatches(DataInputStream in) throws IOException {
+    int matchCount = in.readInt();
+    ImmutableList.Builder<Description> matches = ImmutableList.builderWithExpectedSize(matchCount);
+    for (int i = 0; i < matchCount; i++) {
+      DiagnosticPosition position = new CachedPosition(in.readInt(), in.readInt(), in.readInt());
+      Description.Builder match =
+          Description.builder(position, in.readUTF(), readNullableString(in), in.readUTF())
+              .overrideSeverity(SeverityLevel.valueOf(in.readUTF()));
+      int fixCount = in.readInt();
+      for (int j = 0; j < fixCount; j++) {
+        match.addFix(readFix(in));
+      }
+      matches.add(match.build());
+    }
+    return matches.build();
+  }
+
+  private static SuggestedFix readFix(DataInputStream in) throws IOException {
+    SuggestedFix.Builder fix = SuggestedFix.builder().setShortDescription(in.readUTF());
+    int replacementCount = in.readInt();
+    for (int i = 0; i < replacementCount; i++) {
+      fix.replace(in.readInt(), in.readInt(), in.readUTF());
+    }
+    for (String importToAdd : readStrings(in)) {
+      if (importToAdd.startsWith(STATIC_IMPORT_PREFIX)) {
+        fix.addStaticImport(importToAdd.substring(STATIC_IMPORT_PREFIX.length()));
+      } else {
+        fix.addImport(importToAdd.substring(IMPORT_PREFIX.length()));
+      }
+    }
+    for (String importToRemove : readStrings(in)) {
+      if (importToRemove.startsWith(STATIC_IMPORT_PREFIX)) {
+        fix.removeStaticImport(importToRemove.substring(STATIC_IMPORT_PREFIX.length()));
+      } else {
+        fix.removeImport(importToRemove.substring(IMPORT_PREFIX.length()));
+      }
+    }
+    return fix.build();
+  }
+
+  private static ImmutableList<String> readStrings(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    ImmutableList.Builder<String> strings = ImmutableList.builderWithExpectedSize(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings.build();
+  }
+
+  private static @Nullable String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  /** The position of a cached match, expressed in terms of offsets into the source code. */
+  private static final class CachedPosition implements DiagnosticPosition {
+    private final int startPosition;
+    private final int preferredPosition;
+    private final int endPosition;
+
+    CachedPosition(int startPosition, int preferredPosition, int endPosition) {
+      this.startPosition = startPosition;
+      this.preferredPosition = preferredPosition;
+      this.endPosition = endPosition;
+    }
+
+    @Override
+    public @Nullable JCTree getTree() {
+      return null;
+    }
+
+    @Override
+    public int getStartPosition() {
+      return startPosition;
+    }
+
+    @Override
+    public int getPreferredPosition() {
+      return preferredPosition;
+    }
+
+    @Override
+    public int getEndPosition(EndPosTable endPosTable) {
+      return endPosition;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.DescriptionListener;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskEvent.Kind;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.WriterKind;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.refaster.PrefilterableCodeTransformer;
+import tech.picnic.errorprone.utils.JsonStrings;
+
+/**
+ * Records, for each Refaster rule, how often it is applied, how many matches it reports and how
+ * much time is spent applying it.
+ *
+ * <p>Once compilation completes, a report of the collected statistics is written to a given
+ * directory, both in JSON format ({@value #JSON_REPORT_FILE}) and as a human-readable summary
+ * ({@value #SUMMARY_REPORT_FILE}). In both reports the rules on which most time was spent are
+ * listed first. Rules that were never applied are omitted. Each report covers a single compilation:
+ * the collected statistics are reset once it is written.
+ */
+final class RefasterRuleProfiler {
+  @VisibleForTesting static final String JSON_REPORT_FILE = "refaster-profile.json";
+  @VisibleForTesting static final String SUMMARY_REPORT_FILE = "refaster-profile.txt";
+
+  private final Path reportDirectory;
+  private final ConcurrentMap<String, RuleStatistics> statistics = new ConcurrentHashMap<>();
+  private @Nullable Context scheduledContext;
+
+  private RefasterRuleProfiler(Path reportDirectory) {
+    this.reportDirectory = reportDirectory;
+  }
+
+  /**
+   * Creates a {@link RefasterRuleProfiler} that reports to the given directory.
+   *
+   * @param reportDirectory The directory to which to write reports; created if absent.
+   * @return A non-{@code null} {@link RefasterRuleProfiler}.
+   */
+  static RefasterRuleProfiler create(Path reportDirectory) {
+    return new RefasterRuleProfiler(reportDirectory);
+  }
+
+  /**
+   * Wraps the given {@link CodeTransformer} such that its applications are recorded by this
+   * profiler.
+   *
+   * @param ruleName The name of the Refaster rule represented by the given {@link CodeTransformer}.
+   * @param transformer The {@link CodeTransformer} to profile.
+   * @return A {@link CodeTransformer} that behaves identically to the given one.
+   */
+  CodeTransformer instrument(String ruleName, CodeTransformer transformer) {
+    return new ProfilingCodeTransformer(
+        transformer, statistics.computeIfAbsent(ruleName, RuleStatistics::new));
+  }
+
+  /**
+   * Arranges for a report to be written once the compilation associated with the given context
+   * completes, after which the collected statistics are reset. Invoking this method more than once
+   * for the same compilation has no additional effect.
+   *
+   * @param context The compilation context.
+   */
+  void reportOnCompletion(Context context) {
+    if (context != scheduledContext) {
+      scheduledContext = context;
+      MultiTaskListener.instance(context)
+          .add(
+              new TaskListener() {
+                @Override
+                public void finished(TaskEvent taskEvent) {
+                  if (taskEvent.getKind() == Kind.COMPILATION) {
+                    writeReport(context);
+                    statistics.values().forEach(RuleStatistics::reset);
+                    scheduledContext = null;
+                  }
+                }
+              });
+    }
+  }
+
+  private void writeReport(Context context) {
+    ImmutableList<RuleStatistics> appliedRules =
+        statistics.values().stream()
+            .filter(s -> s.invocations.sum() > 0)
+            .sorted(comparingLong((RuleStatistics s) -> s.nanos.sum()).reversed())
+            .collect(toImmutableList());
+
+    try {
+      Files.createDirectories(reportDirectory);
+      Files.writeString(reportDirectory.resolve(JSON_REPORT_FILE), toJson(appliedRules), UTF_8);
+      Files.writeString(
+          reportDirectory.resolve(SUMMARY_REPORT_FILE), toSummary(appliedRules), UTF_8);
+    } catch (IOException e) {
+      /* A failure to report on the compilation should not cause the compilation to fail. */
+      Log.instance(context)
+          .printRawLines(
+              WriterKind.WARNING,
+              String.format(
+                  "Failed to write Refaster rule profile to '%s': %s", reportDirectory, e));
+    }
+  }
+
+  private static String toJson(ImmutableList<RuleStatistics> rules) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < rules.size(); i++) {
+      RuleStatistics rule = rules.get(i);
+      json.append(i == 0 ? "\n" : ",\n")
+          .append(
+              String.format(
+                  Locale.ROOT,
+                  "  {\"rule\": %s, \"invocations\": %d, \"matches\": %d, \"timeNanos\": %d}",
+                  JsonStrings.quote(rule.ruleName),
+                  rule.invocations.sum(),
+                  rule.matches.sum(),
+                  rule.nanos.sum()));
+    }
+    return json.append("\n]\n").toString();
+  }
+
+  private static String toSummary(ImmutableList<RuleStatistics> rules) {
+    StringBuilder summary = new StringBuilder();
+    summary.append(
+        String.format(
+            Locale.ROOT,
+            "Applied %d Refaster rules in %.3f ms, reporting %d matches%n%n",
+            rules.size(),
+            rules.stream().mapToLong(s -> s.nanos.sum()).sum() / 1e6,
+            rules.stream().mapToLong(s -> s.matches.sum()).sum()));
+    summary.append(
+        String.format(
+            Locale.ROOT, "%12s %12s %10s  %s%n", "Time (ms)", "Invocations", "Matches", "Rule"));
+    for (RuleStatistics rule : rules) {
+      summary.append(
+          String.format(
+              Locale.ROOT,
+              "%12.3f %12d %10d  %s%n",
+              rule.nanos.sum() / 1e6,
+              rule.invocations.sum(),
+              rule.matches.sum(),
+              rule.ruleName));
+    }
+    return summary.toString();
+  }
+
+  /** The statistics collected for a single Refaster rule; safe for concurrent use. */
+  private static final class RuleStatistics {
+    private final String ruleName;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    RuleStatistics(String ruleName) {
+      this.ruleName = ruleName;
+    }
+
+    void reset() {
+      invocations.reset();
+      matches.reset();
+      nanos.reset();
+    }
+  }
+
+  /**
+   * A {@link CodeTransformer} that records the applications of its delegate, while retaining said
+   * delegate's {@link PrefilterableCodeTransformer prefiltering} behavior.
+   */
+  private static final class ProfilingCodeTransformer implements PrefilterableCodeTransformer {
+    private final CodeTransformer delegate;
+    private final RuleStatistics statistics;
+
+    ProfilingCodeTransformer(CodeTransformer delegate, RuleStatistics statistics) {
+      this.delegate = delegate;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public void apply(TreePath path, Context context, DescriptionListener listener) {
+      long start = System.nanoTime();
+      try {
+        delegate.apply(
+            path,
+            context,
+            description -> {
+              statistics.matches.increment();
+              listener.onDescribed(description);
+            });
+      } finally {
+        statistics.nanos.add(System.nanoTime() - start);
+        statistics.invocations.increment();
+      }
+    }
+
+    @Override
+    public ImmutableClassToInstanceMap<Annotation> annotations() {
+      return delegate.annotations();
+    }
+
+    @Override
+    public ImmutableSet<String> requiredIdentifiers() {
+      return delegate instanceof PrefilterableCodeTransformer prefilterableTransformer
+          ? prefilterableTransformer.requiredIdentifiers()
+          : ImmutableSet.of();
+    }
+
+    @Override
+    public ImmutableSet<String> anchors() {
+      return delegate instanceof PrefilterableCodeTransformer prefilterableTransformer
+          ? prefilterableTransformer.anchors()
+          : ImmutableSet.of();
+    }
+
+    @Override
+    public ImmutableSet<String> requiredTypes() {
+      return delegate instanceof PrefilterableCodeTransformer prefilterableTransformer
+          ? prefilterableTransformer.requiredTypes()
+          : ImmutableSet.of();
+    }
+
+    @Override
+    public boolean isApplicableTo(Set<String> identifiers) {
+      return !(delegate instanceof PrefilterableCodeTransformer prefilterableTransformer)
+          || prefilterableTransformer.isApplicableTo(identifiers);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSortedSet.toImmutableSortedSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingInt;
+import static java.util.Comparator.naturalOrder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.annotations.Var;
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+import tech.picnic.errorprone.refaster.MatchAnchors;
+import tech.picnic.errorprone.refaster.PrefilterableCodeTransformer;
+
+/**
+ * Selects the subset of Refaster rules that may match a given compilation unit, along with the
+ * subtrees to which they should be applied.
+ *
+ * <p>At compile time each Refaster rule is annotated with the identifiers that must be present in
+ * any code it matches; see {@link PrefilterableCodeTransformer#requiredIdentifiers()}. Where
+ * possible, rules are additionally annotated with the {@link MatchAnchors anchors} of the
+ * expressions they match; see {@link PrefilterableCodeTransformer#anchors()}. This class collects
+ * the identifiers and anchored expressions present in a compilation unit in a single pass, such
+ * that rules that certainly won't match can be skipped, and such that anchored rules are applied
+ * only to the expressions they may match, rather than to the full compilation unit.
+ *
+ * <p>When a Refaster rule is applied to a compilation unit, matches inside declarations that
+ * suppress the rule are skipped. To preserve this behavior, candidate expressions located inside
+ * declarations annotated with {@code @SuppressWarnings} or {@code @SuppressLint} are represented by
+ * the outermost such declaration. Likewise, since Refaster rules are not applied to themselves, all
+ * rules are applied to the full compilation unit if it may define Refaster rules.
+ */
+final class RefasterRuleSelector {
+  private static final String BEFORE_TEMPLATE_IDENTIFIER = "BeforeTemplate";
+  private static final ImmutableSet<String> SUPPRESSION_ANNOTATIONS =
+      ImmutableSet.of("SuppressWarnings", "SuppressLint");
+
+  private final ImmutableList<CodeTransformer> transformers;
+  private final ImmutableList<ImmutableSet<String>> anchors;
+  private final ImmutableSortedSet<String> unavailableTypes;
+
+  private RefasterRuleSelector(
+      ImmutableList<CodeTransformer> transformers, ImmutableSortedSet<String> unavailableTypes) {
+    this.transformers = transformers;
+    this.anchors =
+        transformers.stream().map(RefasterRuleSelector::getAnchors).collect(toImmutableList());
+    this.unavailableTypes = unavailableTypes;
+  }
+
+  /**
+   * Creates a {@link RefasterRuleSelector} that selects from the given {@link CodeTransformer}s.
+   *
+   * @param transformers The candidate {@link CodeTransformer}s.
+   * @return A non-{@code null} {@link RefasterRuleSelector}.
+   */
+  static RefasterRuleSelector create(ImmutableList<CodeTransformer> transformers) {
+    return new RefasterRuleSelector(transformers, ImmutableSortedSet.of());
+  }
+
+  /**
+   * Returns a {@link RefasterRuleSelector} that selects only from those {@link CodeTransformer}s
+   * whose {@link PrefilterableCodeTransformer#requiredTypes() required types} are all available.
+   *
+   * @param isTypeAvailable The predicate that tells whether the type with the given fully qualified
+   *     name is available; it is evaluated at most once per type.
+   * @return A non-{@code null} {@link RefasterRuleSelector}; this instance if no {@link
+   *     CodeTransformer} is dropped.
+   */
+  RefasterRuleSelector retainSupported(Predicate<String> isTypeAvailable) {
+    Map<String, Boolean> availability = new HashMap<>();
+    ImmutableList<CodeTransformer> supported =
+        transformers.stream()
+            .filter(
+                t ->
+                    getRequiredTypes(t).stream()
+                        .allMatch(
+                            type -> availability.computeIfAbsent(type, isTypeAvailable::test)))
+            .collect(toImmutableList());
+    return supported.size() == transformers.size()
+        ? this
+        : new RefasterRuleSelector(
+            supported,
+            availability.entrySet().stream()
+                .filter(e -> !e.getValue())
+                .map(Map.Entry::getKey)
+                .collect(toImmutableSortedSet(naturalOrder())));
+  }
+
+  /**
+   * Returns a digest that identifies the subset of {@link CodeTransformer}s retained by {@link
+   * #retainSupported(Predicate)}, relative to the set of {@link CodeTransformer}s from which this
+   * instance was originally {@link #create(ImmutableList) created}.
+   *
+   * @return A non-{@code null} digest.
+   */
+  HashCode getRetainedRulesDigest() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String type : unavailableTypes) {
+      hasher.putString(type, UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Returns the {@link CodeTransformer}s that may match the given compilation unit, in their
+   * original order, along with the subtrees to which each should be applied.
+   *
+   * @param compilationUnit The path to the compilation unit of interest.
+   * @return The subset of {@link CodeTransformer}s that may produce a match.
+   */
+  ImmutableList<RuleApplication> selectApplications(TreePath compilationUnit) {
+    CandidateCollector collector = new CandidateCollector();
+    collector.scan(compilationUnit, null);
+
+    boolean mayDefineRules = collector.identifiers.contains(BEFORE_TEMPLATE_IDENTIFIER);
+    ImmutableList.Builder<RuleApplication> applications = ImmutableList.builder();
+    for (int i = 0; i < transformers.size(); i++) {
+      CodeTransformer transformer = transformers.get(i);
+      if (isApplicable(transformer, collector.identifiers)) {
+        ImmutableSet<String> ruleAnchors = anchors.get(i);
+        ImmutableList<TreePath> paths =
+            ruleAnchors.isEmpty() || mayDefineRules
+                ? ImmutableList.of(compilationUnit)
+                : collector.getOutermostCandidates(ruleAnchors);
+        if (!paths.isEmpty()) {
+          applications.add(new RuleApplication(transformer, paths));
+        }
+      }
+    }
+    return applications.build();
+  }
+
+  private static boolean isApplicable(CodeTransformer transformer, Set<String> identifiers) {
+    return !(transformer instanceof PrefilterableCodeTransformer prefilterableTransformer)
+        || prefilterableTransformer.isApplicableTo(identifiers);
+  }
+
+  private static ImmutableSet<String> getAnchors(CodeTransformer transformer) {
+    return transformer instanceof PrefilterableCodeTransformer prefilterableTransformer
+        ? prefilterableTransformer.anchors()
+        : ImmutableSet.of();
+  }
+
+  private static ImmutableSet<String> getRequiredTypes(CodeTransformer transformer) {
+    return transformer instanceof PrefilterableCodeTransformer prefilterableTransformer
+        ? prefilterableTransformer.requiredTypes()
+        : ImmutableSet.of();
+  }
+
+  private static boolean isSuppressionAnnotation(AnnotationTree annotation) {
+    Tree type = annotation.getAnnotationType();
+    return switch (type.getKind()) {
+      case IDENTIFIER ->
+          SUPPRESSION_ANNOTATIONS.contains(((IdentifierTree) type).getName().toString());
+      case MEMBER_SELECT ->
+          SUPPRESSION_ANNOTATIONS.contains(((MemberSelectTree) type).getIdentifier().toString());
+      default -> false;
+    };
+  }
+
+  /**
+   * A subtree to which Refaster rules may be applied, identified by its position in a depth-first
+   * traversal of the compilation unit.
+   */
+  private static final class Candidate {
+    private final TreePath path;
+    private final int index;
+    private int lastDescendantIndex;
+
+    Candidate(TreePath path, int index) {
+      this.path = path;
+      this.index = index;
+      this.lastDescendantIndex = index;
+    }
+  }
+
+  /**
+   * Collects the names of all identifiers, member selects and member references in a compilation
+   * unit, as well as the subtrees that may be matched by anchored Refaster rules.
+   */
+  private static final class CandidateCollector
+      extends TreePathScanner<@Nullable Void, @Nullable Void> {
+    private final Set<String> identifiers = new HashSet<>();
+    private final Map<String, List<Candidate>> candidates = new HashMap<>();
+    private int nodeCount = 0;
+    private @Nullable Candidate suppressionScope;
+
+    /**
+     * Returns the outermost candidates with any of the given anchors, in the order in which they
+     * were encountered.
+     */
+    ImmutableList<TreePath> getOutermostCandidates(ImmutableSet<String> anchors) {
+      ImmutableList<Candidate> matchingCandidates =
+          anchors.stream()
+              .flatMap(anchor -> candidates.getOrDefault(anchor, ImmutableList.of()).stream())
+              .sorted(comparingInt(c -> c.index))
+              .collect(toImmutableList());
+
+      ImmutableList.Builder<TreePath> paths = ImmutableList.builder();
+      @Var int lastCoveredIndex = 0;
+      for (Candidate candidate : matchingCandidates) {
+        if (candidate.index > lastCoveredIndex) {
+          paths.add(candidate.path);
+          lastCoveredIndex = candidate.lastDescendantIndex;
+        }
+      }
+      return paths.build();
+    }
+
+    @Override
+    public @Nullable Void scan(@Nullable Tree tree, @Nullable Void unused) {
+      if (tree != null) {
+        nodeCount++;
+      }
+      return super.scan(tree, null);
+    }
+
+    @Override
+    public @Nullable Void visitIdentifier(IdentifierTree node, @Nullable Void unused) {
+      identifiers.add(node.getName().toString());
+      return super.visitIdentifier(node, null);
+    }
+
+    @Override
+    public @Nullable Void visitMemberSelect(MemberSelectTree node, @Nullable Void unused) {
+      identifiers.add(node.getIdentifier().toString());
+      return super.visitMemberSelect(node, null);
+    }
+
+    @Override
+    public @Nullable Void visitMemberReference(MemberReferenceTree node, @Nullable Void unused) {
+      identifiers.add(node.getName().toString());
+      return visitCandidate(node, () -> super.visitMemberReference(node, null));
+    }
+
+    @Override
+    public @Nullable Void visitMethodInvocation(MethodInvocationTree node, @Nullable Void unused) {
+      return visitCandidate(node, () -> super.visitMethodInvocation(node, null));
+    }
+
+    @Override
+    public @Nullable Void visitNewClass(NewClassTree node, @Nullable Void unused) {
+      return visitCandidate(node, () -> super.visitNewClass(node, null));
+    }
+
+    @Override
+    public @Nullable Void visitClass(ClassTree node, @Nullable Void unused) {
+      return visitDeclaration(node.getModifiers(), () -> super.visitClass(node, null));
+    }
+
+    @Override
+    public @Nullable Void visitMethod(MethodTree node, @Nullable Void unused) {
+      return visitDeclaration(node.getModifiers(), () -> super.visitMethod(node, null));
+    }
+
+    @Override
+    public @Nullable Void visitVariable(VariableTree node, @Nullable Void unused) {
+      return visitDeclaration(node.getModifiers(), () -> super.visitVariable(node, null));
+    }
+
+    private @Nullable Void visitCandidate(Tree node, Supplier<@Nullable Void> visitChildren) {
+      String anchor = MatchAnchors.of(node);
+      if (anchor == null) {
+        return visitChildren.get();
+      }
+
+      Candidate candidate =
+          suppressionScope != null ? suppressionScope : new Candidate(getCurrentPath(), nodeCount);
+      candidates.computeIfAbsent(anchor, k -> new ArrayList<>()).add(candidate);
+      visitChildren.get();
+      if (candidate != suppressionScope) {
+        candidate.lastDescendantIndex = nodeCount;
+      }
+      return null;
+    }
+
+    private @Nullable Void visitDeclaration(
+        ModifiersTree modifiers, Supplier<@Nullable Void> visitChildren) {
+      if (suppressionScope != null
+          || modifiers.getAnnotations().stream()
+              .noneMatch(RefasterRuleSelector::isSuppressionAnnotation)) {
+        return visitChildren.get();
+      }
+
+      Candidate scope = new Candidate(getCurrentPath(), nodeCount);
+      suppressionScope = scope;
+      visitChildren.get();
+      scope.lastDescendantIndex = nodeCount;
+      suppressionScope = null;
+      return null;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.CodeTransformer;
+import com.sun.source.util.TreePath;
+
+/**
+ * A Refaster rule, along with the non-overlapping subtrees of a compilation unit to which it should
+ * be applied.
+ */
+final class RuleApplication {
+  private final CodeTransformer transformer;
+  private final ImmutableList<TreePath> paths;
+
+  RuleApplication(CodeTransformer transformer, ImmutableList<TreePath> paths) {
+    this.transformer = transformer;
+    this.paths = paths;
+  }
+
+  /**
+   * Returns the Refaster rule to apply.
+   *
+   * @return A non-{@code null} {@link CodeTransformer}.
+   */
+  CodeTransformer transformer() {
+    return transformer;
+  }
+
+  /**
+   * Returns the paths to which to apply the Refaster rule, in the order in which they are
+   * encountered in a depth-first traversal of the compilation unit.
+   *
+   * @return A non-empty list of paths.
+   */
+  ImmutableList<TreePath> paths() {
+    return paths;
+  }
+}
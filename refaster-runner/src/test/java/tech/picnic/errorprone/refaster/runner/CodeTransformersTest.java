@@ -1,8 +1,21 @@
 package tech.picnic.errorprone.refaster.runner;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.type;
 
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.picnic.errorprone.refaster.PrefilterableCodeTransformer;
+import tech.picnic.errorprone.refaster.RefasterRuleManifest;
 
 final class CodeTransformersTest {
   /**
@@ -16,7 +29,128 @@ final class CodeTransformersTest {
             "FooRules$StringOfSizeZeroRule",
             "FooRules$StringOfSizeZeroVerboseRule",
             "FooRules$StringOfSizeOneRule",
+            "FooRules$StringCopyRule",
+            "FooRules$StringNullToEmptyRule",
+            "FooRules$StringBuilderOfSizeZeroRule",
             "FooRules$ExtraGrouping$StringOfSizeTwoRule",
             "FooRules$ExtraGrouping$StringOfSizeThreeRule");
   }
+
+  @Test
+  void getCodeTransformers() {
+    assertThat(
+            CodeTransformers.getCodeTransformers(name -> name.contains("ExtraGrouping")).keySet())
+        .containsExactlyInAnyOrder(
+            "FooRules$ExtraGrouping$StringOfSizeTwoRule",
+            "FooRules$ExtraGrouping$StringOfSizeThreeRule");
+  }
+
+  @Test
+  void getRefasterRuleResources(@TempDir Path directory) throws IOException {
+    Path listedRoot = Files.createDirectories(directory.resolve("listed"));
+    Files.createDirectories(listedRoot.resolve("META-INF"));
+    Files.writeString(
+        listedRoot.resolve(RefasterRuleManifest.PATH), "pkg/Listed.refaster\n", UTF_8);
+    Files.createDirectories(listedRoot.resolve("pkg"));
+    Files.writeString(listedRoot.resolve("pkg/Unlisted.refaster"), "", UTF_8);
+
+    Path unlistedJar = directory.resolve("unlisted.jar");
+    try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(unlistedJar))) {
+      jar.putNextEntry(new JarEntry("pkg/Scanned.refaster"));
+      jar.closeEntry();
+      jar.putNextEntry(new JarEntry("pkg/Other.class"));
+      jar.closeEntry();
+    }
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(
+            new URL[] {listedRoot.toUri().toURL(), unlistedJar.toUri().toURL()}, null)) {
+      assertThat(CodeTransformers.getRefasterRuleResources(classLoader).asMap())
+          .containsOnlyKeys("pkg/Listed.refaster");
+    }
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(new URL[] {unlistedJar.toUri().toURL()}, null)) {
+      assertThat(CodeTransformers.getRefasterRuleResources(classLoader).asMap())
+          .containsOnlyKeys("pkg/Scanned.refaster");
+    }
+  }
+
+  @Test
+  void getCodeTransformersDigest() {
+    assertThat(CodeTransformers.getCodeTransformersDigest(name -> name.contains("ExtraGrouping")))
+        .isEqualTo(
+            CodeTransformers.getCodeTransformersDigest(name -> name.contains("ExtraGrouping")))
+        .isNotEqualTo(CodeTransformers.getCodeTransformersDigest(name -> true));
+  }
+
+  /**
+   * Verifies that the code transformers compiled from {@link FooRules} are annotated with the
+   * identifiers referenced by their {@code @BeforeTemplate}s.
+   */
+  @Test
+  void requiredIdentifiers() {
+    assertThat(CodeTransformers.getAllCodeTransformers().asMap())
+        .allSatisfy(
+            (name, transformers) ->
+                assertThat(transformers)
+                    .singleElement()
+                    .asInstanceOf(type(PrefilterableCodeTransformer.class))
+                    .extracting(PrefilterableCodeTransformer::requiredIdentifiers)
+                    .isEqualTo(
+                        switch (name) {
+                          case "FooRules$StringCopyRule" -> ImmutableSet.of("toCharArray");
+                          case "FooRules$StringNullToEmptyRule" -> ImmutableSet.of();
+                          case "FooRules$StringBuilderOfSizeZeroRule" ->
+                              ImmutableSet.of("toString", "isEmpty");
+                          default -> ImmutableSet.of("toCharArray", "length");
+                        }));
+  }
+
+  /**
+   * Verifies that the code transformers compiled from {@link FooRules} are annotated with the
+   * anchors of the expressions matched by their {@code @BeforeTemplate}s, if any.
+   */
+  @Test
+  void anchors() {
+    assertThat(CodeTransformers.getAllCodeTransformers().asMap())
+        .allSatisfy(
+            (name, transformers) ->
+                assertThat(transformers)
+                    .singleElement()
+                    .asInstanceOf(type(PrefilterableCodeTransformer.class))
+                    .extracting(PrefilterableCodeTransformer::anchors)
+                    .isEqualTo(
+                        switch (name) {
+                          case "FooRules$StringCopyRule" ->
+                              ImmutableSet.of("METHOD_INVOCATION:valueOf", "NEW_CLASS");
+                          case "FooRules$StringBuilderOfSizeZeroRule" ->
+                              ImmutableSet.of("METHOD_INVOCATION:isEmpty");
+                          default -> ImmutableSet.of();
+                        }));
+  }
+
+  /**
+   * Verifies that the code transformers compiled from {@link FooRules} are annotated with the
+   * top-level types referenced by their {@code @AfterTemplate}s.
+   */
+  @Test
+  void requiredTypes() {
+    assertThat(CodeTransformers.getAllCodeTransformers().asMap())
+        .allSatisfy(
+            (name, transformers) ->
+                assertThat(transformers)
+                    .singleElement()
+                    .asInstanceOf(type(PrefilterableCodeTransformer.class))
+                    .extracting(PrefilterableCodeTransformer::requiredTypes)
+                    .isEqualTo(
+                        switch (name) {
+                          case "FooRules$StringCopyRule" -> ImmutableSet.of();
+                          case "FooRules$StringNullToEmptyRule" ->
+                              ImmutableSet.of("com.google.common.base.Strings");
+                          case "FooRules$StringBuilderOfSizeZeroRule" ->
+                              ImmutableSet.of("java.lang.StringBuilder");
+                          default -> ImmutableSet.of("java.lang.String");
+                        }));
+  }
 }
@@ -4,8 +4,10 @@ import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.BugPattern.SeverityLevel.WARNING;
 
+import com.google.common.base.Strings;
 import com.google.errorprone.refaster.annotation.AfterTemplate;
 import com.google.errorprone.refaster.annotation.BeforeTemplate;
+import org.jspecify.annotations.Nullable;
 import tech.picnic.errorprone.refaster.annotation.Description;
 import tech.picnic.errorprone.refaster.annotation.OnlineDocumentation;
 import tech.picnic.errorprone.refaster.annotation.Severity;
@@ -59,6 +61,55 @@ final class FooRules {
     }
   }
 
+  /**
+   * A simple rule for testing purposes, matching only method invocations and instance creations.
+   */
+  static final class StringCopyRule {
+    @BeforeTemplate
+    String before(String string) {
+      return String.valueOf(string.toCharArray());
+    }
+
+    @BeforeTemplate
+    String before2(String string) {
+      return new String(string.toCharArray());
+    }
+
+    @AfterTemplate
+    String after(String string) {
+      return string;
+    }
+  }
+
+  /** A simple rule for testing purposes, suggesting code that depends on a third-party library. */
+  static final class StringNullToEmptyRule {
+    @BeforeTemplate
+    String before(@Nullable String string) {
+      return string == null ? "" : string;
+    }
+
+    @AfterTemplate
+    String after(@Nullable String string) {
+      return Strings.nullToEmpty(string);
+    }
+  }
+
+  /**
+   * A simple rule for testing purposes, suggesting code that invokes a method inherited from a
+   * non-public type.
+   */
+  static final class StringBuilderOfSizeZeroRule {
+    @BeforeTemplate
+    boolean before(StringBuilder builder) {
+      return builder.toString().isEmpty();
+    }
+
+    @AfterTemplate
+    boolean after(StringBuilder builder) {
+      return builder.length() == 0;
+    }
+  }
+
   /** A nested class with annotations that are inherited by the Refaster rules contained in it. */
   @Description("A custom subgroup description")
   @OnlineDocumentation("https://example.com/rule/${topLevelClassName}#${nestedClassName}")
@@ -0,0 +1,92 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.fixes.SuggestedFix;
+import com.google.errorprone.matchers.Description;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.JCDiagnostic.SimpleDiagnosticPosition;
+import com.sun.tools.javac.util.Position;
+import org.junit.jupiter.api.Test;
+import tech.picnic.errorprone.refaster.runner.NonOverlappingMatchSelector.IntervalSet;
+
+final class NonOverlappingMatchSelectorTest {
+  @Test
+  void select() {
+    Description outer = match(SuggestedFix.replace(10, 20, "x"));
+    Description nested = match(SuggestedFix.replace(12, 15, "y"));
+    Description sameRangeLongerReplacement = match(SuggestedFix.replace(10, 20, "xyz"));
+    Description adjacent = match(SuggestedFix.replace(20, 25, "z"));
+    Description multiReplacementOverlap =
+        match(SuggestedFix.builder().replace(0, 5, "").replace(18, 22, "").build());
+    Description insertion = match(SuggestedFix.replace(15, 15, "inserted"));
+
+    assertThat(
+            NonOverlappingMatchSelector.select(
+                ImmutableList.of(
+                    nested,
+                    sameRangeLongerReplacement,
+                    multiReplacementOverlap,
+                    insertion,
+                    adjacent,
+                    outer),
+                new NoEndPositions()))
+        .containsExactly(outer, adjacent, insertion);
+  }
+
+  @Test
+  void intervalSet() {
+    IntervalSet intervals = new IntervalSet();
+    intervals.add(10, 20);
+    intervals.add(30, 40);
+    intervals.add(20, 25);
+    intervals.add(50, 60);
+    intervals.add(5, 55);
+    intervals.add(70, 80);
+
+    assertThat(intervals.overlaps(0, 5)).isFalse();
+    assertThat(intervals.overlaps(4, 6)).isTrue();
+    assertThat(intervals.overlaps(59, 70)).isTrue();
+    assertThat(intervals.overlaps(60, 70)).isFalse();
+    assertThat(intervals.overlaps(75, 76)).isTrue();
+    assertThat(intervals.overlaps(80, 90)).isFalse();
+  }
+
+  @Test
+  void intervalSetGrowth() {
+    IntervalSet intervals = new IntervalSet();
+    for (int i = 100; i > 0; i--) {
+      intervals.add(2 * i, 2 * i + 1);
+    }
+
+    for (int i = 1; i <= 100; i++) {
+      assertThat(intervals.overlaps(2 * i, 2 * i + 1)).isTrue();
+      assertThat(intervals.overlaps(2 * i + 1, 2 * i + 2)).isFalse();
+    }
+  }
+
+  @SuppressWarnings("RestrictedApi" /* We create a minimal `Description` here. */)
+  private static Description match(SuggestedFix fix) {
+    return Description.builder(new SimpleDiagnosticPosition(0), "Rule", "", "Message")
+        .addFix(fix)
+        .build();
+  }
+
+  /** An {@link EndPosTable} for use with fixes that explicitly specify their end positions. */
+  private static final class NoEndPositions implements EndPosTable {
+    @Override
+    public int getEndPos(JCTree tree) {
+      return Position.NOPOS;
+    }
+
+    @Override
+    public void storeEnd(JCTree tree, int endpos) {}
+
+    @Override
+    public int replaceTree(JCTree oldtree, JCTree newtree) {
+      return Position.NOPOS;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class RefactoringDriverTest {
+  @Test
+  void inPlace(@TempDir Path sourceRoot) throws IOException {
+    Path a = writeSource(sourceRoot, "pkg/A.java", "B.isEmpty(\"foo\".toCharArray().length == 0)");
+    Path b = writeSource(sourceRoot, "pkg/B.java", "\"bar\".toCharArray().length == 1");
+    Path c = writeSource(sourceRoot, "pkg/sub/C.java", "\"baz\".isEmpty()");
+
+    assertThat(
+            RefactoringDriver.parse(
+                    ImmutableList.of("--threads", "2", "--batch-size", "1", sourceRoot.toString()))
+                .run())
+        .isEmpty();
+
+    assertThat(a).content(UTF_8).contains("B.isEmpty(\"foo\".isEmpty())").endsWith("}\n");
+    assertThat(b).content(UTF_8).contains("\"bar\".length() == 1");
+    assertThat(c).content(UTF_8).contains("\"baz\".isEmpty()");
+  }
+
+  @Test
+  void patchDirectory(@TempDir Path sourceRoot, @TempDir Path patchDirectory) throws IOException {
+    Path a = writeSource(sourceRoot, "pkg/A.java", "\"foo\".toCharArray().length == 0");
+    Path b = writeSource(sourceRoot, "pkg/B.java", "\"bar\".toCharArray().length == 1");
+
+    assertThat(
+            RefactoringDriver.parse(
+                    ImmutableList.of(
+                        "--batch-size",
+                        "1",
+                        "--patch-location",
+                        patchDirectory.toString(),
+                        "--checks",
+                        "Refaster",
+                        sourceRoot.toString(),
+                        "--",
+                        "-XepOpt:Refaster:NamePattern=.*SizeZeroRule"))
+                .run())
+        .isEmpty();
+
+    assertThat(a).content(UTF_8).contains("\"foo\".toCharArray().length == 0");
+    assertThat(b).content(UTF_8).contains("\"bar\".toCharArray().length == 1");
+    assertThat(patchDirectory).isDirectoryContaining(p -> p.endsWith(RefactoringDriver.PATCH_FILE));
+    assertThat(patchDirectory.resolve(RefactoringDriver.PATCH_FILE))
+        .content(UTF_8)
+        .contains("+    return \"foo\".isEmpty();")
+        .doesNotContain("bar");
+  }
+
+  @Test
+  void compilationError(@TempDir Path sourceRoot) throws IOException {
+    writeSource(sourceRoot, "pkg/A.java", "undefined()");
+
+    assertThat(RefactoringDriver.parse(ImmutableList.of(sourceRoot.toString())).run())
+        .singleElement()
+        .asString()
+        .contains("A.java");
+  }
+
+  @Test
+  void invalidArguments() {
+    assertThatThrownBy(() -> RefactoringDriver.parse(ImmutableList.of()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("No source roots specified");
+    assertThatThrownBy(() -> RefactoringDriver.parse(ImmutableList.of("--threads", "0", "src")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Option '--threads' must be positive, but is '0'");
+    assertThatThrownBy(() -> RefactoringDriver.parse(ImmutableList.of("--foo", "src")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unrecognized option '--foo'");
+  }
+
+  @Test
+  void unknownCheck(@TempDir Path sourceRoot) {
+    assertThatThrownBy(
+            () ->
+                RefactoringDriver.parse(
+                        ImmutableList.of("--checks", "NoSuchCheck", sourceRoot.toString()))
+                    .run())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unknown check 'NoSuchCheck'");
+  }
+
+  /**
+   * Writes a class with a static method that returns the given expression, such that it may be
+   * referenced from other classes in the same package.
+   */
+  @CanIgnoreReturnValue
+  private static Path writeSource(Path sourceRoot, String fileName, String expression)
+      throws IOException {
+    Path file = sourceRoot.resolve(fileName);
+    String packageName = sourceRoot.relativize(file.getParent()).toString().replace('/', '.');
+    String className = file.getFileName().toString().replace(".java", "");
+    Files.createDirectories(file.getParent());
+    return Files.writeString(
+        file,
+        String.join(
+            "\n",
+            "package " + packageName + ";",
+            "",
+            "public final class " + className + " {",
+            "  public static boolean isEmpty(boolean value) {",
+            "    return " + expression + ";",
+            "  }",
+            "}",
+            ""),
+        UTF_8);
+  }
+}
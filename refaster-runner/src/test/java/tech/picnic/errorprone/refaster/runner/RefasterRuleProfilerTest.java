@@ -0,0 +1,99 @@
+package tech.picnic.errorprone.refaster.runner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.DescriptionListener;
+import com.google.errorprone.FileObjects;
+import com.google.errorprone.matchers.Description;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskEvent.Kind;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.WriterKind;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class RefasterRuleProfilerTest {
+  @Test
+  void reportOnCompletion(@TempDir Path reportDirectory) throws IOException {
+    RefasterRuleProfiler profiler = RefasterRuleProfiler.create(reportDirectory);
+    CodeTransformer transformer = profiler.instrument("FooRule", new ReportingCodeTransformer());
+
+    /* Each compilation is reported on separately, even if the profiler is reused. */
+    for (int applications = 1; applications <= 2; applications++) {
+      JavacTask task = createTask();
+      Context context = ((BasicJavacTask) task).getContext();
+      profiler.reportOnCompletion(context);
+      profiler.reportOnCompletion(context);
+      TreePath path = new TreePath(Iterables.getOnlyElement(task.parse()));
+      for (int i = 0; i < applications; i++) {
+        transformer.apply(path, context, description -> {});
+      }
+      MultiTaskListener.instance(context).finished(new TaskEvent(Kind.COMPILATION));
+
+      assertThat(reportDirectory.resolve(RefasterRuleProfiler.JSON_REPORT_FILE))
+          .content()
+          .contains(
+              String.format(
+                  "{\"rule\": \"FooRule\", \"invocations\": %s, \"matches\": %s,",
+                  applications, applications));
+    }
+  }
+
+  @Test
+  void reportOnCompletionWithUnwritableReportDirectory(@TempDir Path directory) throws IOException {
+    Path reportDirectory = Files.writeString(directory.resolve("file"), "", UTF_8);
+    Context context = ((BasicJavacTask) createTask()).getContext();
+    StringWriter warnings = new StringWriter();
+    Log.instance(context).setWriter(WriterKind.WARNING, new PrintWriter(warnings, true));
+
+    RefasterRuleProfiler.create(reportDirectory).reportOnCompletion(context);
+
+    assertThatCode(
+            () -> MultiTaskListener.instance(context).finished(new TaskEvent(Kind.COMPILATION)))
+        .doesNotThrowAnyException();
+    assertThat(warnings.toString())
+        .startsWith("Failed to write Refaster rule profile to '" + reportDirectory + "'");
+  }
+
+  private static JavacTask createTask() {
+    return JavacTool.create()
+        .getTask(
+            null,
+            null,
+            null,
+            ImmutableList.of(),
+            null,
+            ImmutableList.of(FileObjects.forSourceLines("A.java", "class A {}")));
+  }
+
+  /** A {@link CodeTransformer} that reports a single match each time it is applied. */
+  private static final class ReportingCodeTransformer implements CodeTransformer {
+    @Override
+    public void apply(TreePath path, Context context, DescriptionListener listener) {
+      listener.onDescribed(Description.NO_MATCH);
+    }
+
+    @Override
+    public ImmutableClassToInstanceMap<Annotation> annotations() {
+      return ImmutableClassToInstanceMap.of();
+    }
+  }
+}
@@ -9,15 +9,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.BugCheckerInfo;
 import com.google.errorprone.BugCheckerRefactoringTestHelper;
 import com.google.errorprone.BugCheckerRefactoringTestHelper.TestMode;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.CompilationTestHelper;
+import java.nio.file.Path;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -41,6 +44,8 @@ final class RefasterTest {
           "\\[Refaster Rule\\] FooRules\\.ExtraGrouping\\.StringOfSizeThreeRule: "
               + "A custom description about matching three-char strings\\s+.+\\s+"
               + "\\(see https://example.com/custom\\)");
+  private static final Pattern DIAGNOSTIC_STRING_NULL_TO_EMPTY =
+      Pattern.compile("\\[Refaster Rule\\] FooRules\\.StringNullToEmptyRule: ");
 
   @Test
   void identification() {
@@ -254,4 +259,186 @@ final class RefasterTest {
             "}")
         .doTest(TestMode.TEXT_MATCH);
   }
+
+  @Test
+  void anchoredReplacement() {
+    BugCheckerRefactoringTestHelper.newInstance(Refaster.class, getClass())
+        .addInputLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    return String.valueOf(s.toCharArray()) + new String(s.toCharArray()).trim();",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"StringCopyRule\")",
+            "  String n(String s) {",
+            "    return String.valueOf(s.toCharArray());",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"unused\")",
+            "  String o(String s) {",
+            "    return new String(s.toCharArray());",
+            "  }",
+            "}")
+        .addOutputLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    return s + s.trim();",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"StringCopyRule\")",
+            "  String n(String s) {",
+            "    return String.valueOf(s.toCharArray());",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"unused\")",
+            "  String o(String s) {",
+            "    return s;",
+            "  }",
+            "}")
+        .doTest(TestMode.TEXT_MATCH);
+  }
+
+  @Test
+  void unsupportedReplacement() {
+    CompilationTestHelper.newInstance(Refaster.class, getClass())
+        .withClasspath(Strings.class)
+        .matchAllDiagnostics()
+        .expectErrorMessage("StringNullToEmptyRule", DIAGNOSTIC_STRING_NULL_TO_EMPTY.asPredicate())
+        .addSourceLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    // BUG: Diagnostic matches: StringNullToEmptyRule",
+            "    return s == null ? \"\" : s;",
+            "  }",
+            "}")
+        .doTest();
+
+    CompilationTestHelper.newInstance(Refaster.class, getClass())
+        .withClasspath()
+        .expectNoDiagnostics()
+        .addSourceLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    return s == null ? \"\" : s;",
+            "  }",
+            "}")
+        .doTest();
+  }
+
+  @Test
+  void profiling(@TempDir Path reportDirectory) {
+    CompilationTestHelper.newInstance(Refaster.class, getClass())
+        .setArgs("-XepOpt:Refaster:ProfileReportDirectory=" + reportDirectory)
+        .matchAllDiagnostics()
+        .expectErrorMessage("StringOfSizeZeroRule", DIAGNOSTIC_STRING_OF_SIZE_ZERO.asPredicate())
+        .addSourceLines(
+            "A.java",
+            "class A {",
+            "  void m() {",
+            "    // BUG: Diagnostic matches: StringOfSizeZeroRule",
+            "    boolean b1 = \"foo\".toCharArray().length == 0;",
+            "    // BUG: Diagnostic matches: StringOfSizeZeroRule",
+            "    boolean b2 = \"bar\".toCharArray().length == 0;",
+            "  }",
+            "}")
+        .addSourceLines("B.java", "class B {}")
+        .doTest();
+
+    assertThat(reportDirectory.resolve(RefasterRuleProfiler.JSON_REPORT_FILE))
+        .content()
+        .contains(
+            "{\"rule\": \"FooRules$StringOfSizeZeroRule\", \"invocations\": 1, \"matches\": 2");
+    assertThat(reportDirectory.resolve(RefasterRuleProfiler.SUMMARY_REPORT_FILE))
+        .content()
+        .startsWith("Applied ")
+        .containsPattern("\\s1\\s+2\\s+FooRules\\$StringOfSizeZeroRule\\s");
+  }
+
+  @Test
+  void cachedReplacement(@TempDir Path cacheDirectory) {
+    for (int i = 0; i < 2; i++) {
+      BugCheckerRefactoringTestHelper.newInstance(Refaster.class, getClass())
+          .setArgs("-XepOpt:Refaster:CacheDirectory=" + cacheDirectory)
+          .addInputLines(
+              "A.java",
+              "class A {",
+              "  void m() {",
+              "    boolean b1 = \"foo\".toCharArray().length == 0;",
+              "    boolean b2 = \"bar\".toCharArray().length == 1;",
+              "  }",
+              "}")
+          .addOutputLines(
+              "A.java",
+              "class A {",
+              "  void m() {",
+              "    boolean b1 = \"foo\".isEmpty();",
+              "    boolean b2 = \"bar\".length() == 1;",
+              "  }",
+              "}")
+          .doTest(TestMode.TEXT_MATCH);
+    }
+
+    assertThat(cacheDirectory.toFile().list()).hasSize(1);
+  }
+
+  @Test
+  void cachedReplacementWithModifiedCompilationUnit(@TempDir Path cacheDirectory) {
+    for (String value : ImmutableList.of("foo", "bar")) {
+      CompilationTestHelper.newInstance(Refaster.class, getClass())
+          .setArgs("-XepOpt:Refaster:CacheDirectory=" + cacheDirectory)
+          .matchAllDiagnostics()
+          .expectErrorMessage("StringOfSizeZeroRule", DIAGNOSTIC_STRING_OF_SIZE_ZERO.asPredicate())
+          .addSourceLines(
+              "A.java",
+              "class A {",
+              "  void m() {",
+              "    // BUG: Diagnostic matches: StringOfSizeZeroRule",
+              "    boolean b = B.VALUE.toCharArray().length == 0;",
+              "  }",
+              "}")
+          .addSourceLines(
+              "B.java", "class B {", "  static final String VALUE = \"" + value + "\";", "}")
+          .doTest();
+    }
+
+    /* Entries for `A.java` are not reused, as `B.java` was modified. */
+    assertThat(cacheDirectory.toFile().list()).hasSize(4);
+  }
+
+  @Test
+  void cachedUnsupportedReplacement(@TempDir Path cacheDirectory) {
+    CompilationTestHelper.newInstance(Refaster.class, getClass())
+        .setArgs("-XepOpt:Refaster:CacheDirectory=" + cacheDirectory)
+        .withClasspath(Strings.class)
+        .matchAllDiagnostics()
+        .expectErrorMessage("StringNullToEmptyRule", DIAGNOSTIC_STRING_NULL_TO_EMPTY.asPredicate())
+        .addSourceLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    // BUG: Diagnostic matches: StringNullToEmptyRule",
+            "    return s == null ? \"\" : s;",
+            "  }",
+            "}")
+        .doTest();
+
+    CompilationTestHelper.newInstance(Refaster.class, getClass())
+        .setArgs("-XepOpt:Refaster:CacheDirectory=" + cacheDirectory)
+        .withClasspath()
+        .expectNoDiagnostics()
+        .addSourceLines(
+            "A.java",
+            "class A {",
+            "  String m(String s) {",
+            "    return s == null ? \"\" : s;",
+            "  }",
+            "}")
+        .doTest();
+
+    assertThat(cacheDirectory.toFile().list()).hasSize(2);
+  }
 }
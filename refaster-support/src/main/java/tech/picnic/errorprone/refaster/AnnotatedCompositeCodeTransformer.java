@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
 import static com.google.errorprone.BugPattern.SeverityLevel.SUGGESTION;
 import static com.google.errorprone.BugPattern.SeverityLevel.WARNING;
+import static java.util.Objects.requireNonNullElse;
 import static tech.picnic.errorprone.refaster.annotation.OnlineDocumentation.NESTED_CLASS_URL_PLACEHOLDER;
 import static tech.picnic.errorprone.refaster.annotation.OnlineDocumentation.TOP_LEVEL_CLASS_URL_PLACEHOLDER;
 
@@ -12,6 +13,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Comparators;
 import com.google.common.collect.ImmutableClassToInstanceMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.errorprone.BugPattern.SeverityLevel;
 import com.google.errorprone.CodeTransformer;
@@ -36,9 +38,18 @@ import tech.picnic.errorprone.refaster.annotation.Severity;
  * <p>The content is augmented based on custom {@link tech.picnic.errorprone.refaster.annotation
  * annotations} available on the matching {@link CodeTransformer} or on this {@link
  * CompositeCodeTransformer} as a fallback, if any.
+ *
+ * <p>Instances serialized by older versions of this class, which lack some of the properties
+ * introduced since, remain deserializable; any such missing properties default to an empty set.
  */
 @AutoValue
-public abstract class AnnotatedCompositeCodeTransformer implements CodeTransformer, Serializable {
+public abstract class AnnotatedCompositeCodeTransformer
+    implements PrefilterableCodeTransformer, Serializable {
+  /*
+   * This value must not be changed, as that would prevent rules compiled by older versions of this
+   * class from being loaded. Any newly introduced properties should be defaulted by
+   * `#readResolve()` instead.
+   */
   private static final long serialVersionUID = 1L;
   private static final Splitter CLASS_NAME_SPLITTER = Splitter.on('.').limit(2);
 
@@ -52,6 +63,15 @@ public abstract class AnnotatedCompositeCodeTransformer implements CodeTransform
   @SuppressWarnings("java:S3038" /* All AutoValue properties must be specified explicitly. */)
   public abstract ImmutableClassToInstanceMap<Annotation> annotations();
 
+  @Override
+  public abstract ImmutableSet<String> requiredIdentifiers();
+
+  @Override
+  public abstract ImmutableSet<String> anchors();
+
+  @Override
+  public abstract ImmutableSet<String> requiredTypes();
+
   /**
    * Creates an instance of an {@link AnnotatedCompositeCodeTransformer}.
    *
@@ -64,7 +84,94 @@ public abstract class AnnotatedCompositeCodeTransformer implements CodeTransform
       String packageName,
       ImmutableList<CodeTransformer> transformers,
       ImmutableClassToInstanceMap<Annotation> annotations) {
-    return new AutoValue_AnnotatedCompositeCodeTransformer(packageName, transformers, annotations);
+    return create(packageName, transformers, annotations, ImmutableSet.of());
+  }
+
+  /**
+   * Creates an instance of an {@link AnnotatedCompositeCodeTransformer} that is applicable only to
+   * compilation units that contain all of the given identifiers.
+   *
+   * @param packageName The package in which the wrapped {@link CodeTransformer}s reside.
+   * @param transformers The {@link CodeTransformer}s to which to delegate.
+   * @param annotations The annotations that are applicable to this {@link CodeTransformer}.
+   * @param requiredIdentifiers The identifiers that must be present in a compilation unit for any
+   *     of the given {@link CodeTransformer}s to match it.
+   * @return A non-{@code null} {@link AnnotatedCompositeCodeTransformer}.
+   */
+  public static AnnotatedCompositeCodeTransformer create(
+      String packageName,
+      ImmutableList<CodeTransformer> transformers,
+      ImmutableClassToInstanceMap<Annotation> annotations,
+      ImmutableSet<String> requiredIdentifiers) {
+    return create(packageName, transformers, annotations, requiredIdentifiers, ImmutableSet.of());
+  }
+
+  /**
+   * Creates an instance of an {@link AnnotatedCompositeCodeTransformer} that is applicable only to
+   * compilation units that contain all of the given identifiers, and within those only to trees
+   * with one of the given anchors.
+   *
+   * @param packageName The package in which the wrapped {@link CodeTransformer}s reside.
+   * @param transformers The {@link CodeTransformer}s to which to delegate.
+   * @param annotations The annotations that are applicable to this {@link CodeTransformer}.
+   * @param requiredIdentifiers The identifiers that must be present in a compilation unit for any
+   *     of the given {@link CodeTransformer}s to match it.
+   * @param anchors The {@link MatchAnchors anchors} of the trees that any of the given {@link
+   *     CodeTransformer}s may match, or an empty set if this is unknown.
+   * @return A non-{@code null} {@link AnnotatedCompositeCodeTransformer}.
+   */
+  public static AnnotatedCompositeCodeTransformer create(
+      String packageName,
+      ImmutableList<CodeTransformer> transformers,
+      ImmutableClassToInstanceMap<Annotation> annotations,
+      ImmutableSet<String> requiredIdentifiers,
+      ImmutableSet<String> anchors) {
+    return create(
+        packageName, transformers, annotations, requiredIdentifiers, anchors, ImmutableSet.of());
+  }
+
+  /**
+   * Creates an instance of an {@link AnnotatedCompositeCodeTransformer} that is applicable only to
+   * compilation units that contain all of the given identifiers, within those only to trees with
+   * one of the given anchors, and only in compilations in which all of the given types are
+   * available.
+   *
+   * @param packageName The package in which the wrapped {@link CodeTransformer}s reside.
+   * @param transformers The {@link CodeTransformer}s to which to delegate.
+   * @param annotations The annotations that are applicable to this {@link CodeTransformer}.
+   * @param requiredIdentifiers The identifiers that must be present in a compilation unit for any
+   *     of the given {@link CodeTransformer}s to match it.
+   * @param anchors The {@link MatchAnchors anchors} of the trees that any of the given {@link
+   *     CodeTransformer}s may match, or an empty set if this is unknown.
+   * @param requiredTypes The fully qualified names of the top-level types referenced by the
+   *     replacement code suggested by the given {@link CodeTransformer}s.
+   * @return A non-{@code null} {@link AnnotatedCompositeCodeTransformer}.
+   */
+  public static AnnotatedCompositeCodeTransformer create(
+      String packageName,
+      ImmutableList<CodeTransformer> transformers,
+      ImmutableClassToInstanceMap<Annotation> annotations,
+      ImmutableSet<String> requiredIdentifiers,
+      ImmutableSet<String> anchors,
+      ImmutableSet<String> requiredTypes) {
+    return new AutoValue_AnnotatedCompositeCodeTransformer(
+        packageName, transformers, annotations, requiredIdentifiers, anchors, requiredTypes);
+  }
+
+  /**
+   * Replaces this deserialized instance with an equivalent instance in which all properties absent
+   * from the serialized form are defaulted to an empty set.
+   *
+   * @return A non-{@code null} {@link AnnotatedCompositeCodeTransformer}.
+   */
+  final Object readResolve() {
+    return create(
+        packageName(),
+        transformers(),
+        annotations(),
+        requireNonNullElse(requiredIdentifiers(), ImmutableSet.of()),
+        requireNonNullElse(anchors(), ImmutableSet.of()),
+        requireNonNullElse(requiredTypes(), ImmutableSet.of()));
   }
 
   @Override
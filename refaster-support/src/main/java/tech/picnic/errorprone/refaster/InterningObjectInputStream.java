@@ -0,0 +1,62 @@
+package tech.picnic.errorprone.refaster;
+
+import com.google.common.collect.Interner;
+import com.google.errorprone.refaster.StringName;
+import com.google.errorprone.refaster.UExpression;
+import com.google.errorprone.refaster.UType;
+import com.google.errorprone.refaster.UTypeVar;
+import com.sun.source.tree.IdentifierTree;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * An {@link ObjectInputStream} that canonicalizes the names, types and identifiers referenced by
+ * deserialized Refaster rules.
+ *
+ * <p>Many Refaster rules reference the same types and members, such as {@code java.lang.String} or
+ * {@code org.assertj.core.api.Assertions#assertThat}. By passing such immutable objects through a
+ * shared {@link Interner}, rules deserialized from separate streams share a single copy of each.
+ *
+ * <p>{@link UTypeVar}s are mutable, may be part of a reference cycle, and their {@link
+ * UTypeVar#equals(Object)} method does not terminate for recursively bounded type variables. Hence
+ * they are never interned. Because a type variable may be referenced by any composite type or
+ * identifier read after its class descriptor, composite objects are interned only until the first
+ * {@link UTypeVar} is encountered.
+ */
+final class InterningObjectInputStream extends ObjectInputStream {
+  private static final String TYPE_VARIABLE_CLASS_NAME = UTypeVar.class.getName();
+
+  private final Interner<Object> interner;
+  private boolean typeVariableEncountered = false;
+
+  InterningObjectInputStream(InputStream in, Interner<Object> interner) throws IOException {
+    super(in);
+    this.interner = interner;
+    enableResolveObject(true);
+  }
+
+  @Override
+  protected Class<?> resolveClass(ObjectStreamClass desc)
+      throws IOException, ClassNotFoundException {
+    if (desc.getName().equals(TYPE_VARIABLE_CLASS_NAME)) {
+      typeVariableEncountered = true;
+    }
+    return super.resolveClass(desc);
+  }
+
+  @Override
+  protected Object resolveObject(Object obj) {
+    return isInternable(obj) ? interner.intern(obj) : obj;
+  }
+
+  private boolean isInternable(Object obj) {
+    if (obj instanceof String || obj instanceof StringName) {
+      return true;
+    }
+
+    return !typeVariableEncountered
+        && (obj instanceof UType || (obj instanceof UExpression && obj instanceof IdentifierTree));
+  }
+}
@@ -0,0 +1,58 @@
+package tech.picnic.errorprone.refaster;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CodeTransformer;
+import com.google.errorprone.DescriptionListener;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.util.Context;
+import java.lang.annotation.Annotation;
+import java.util.function.Supplier;
+
+/**
+ * A {@link PrefilterableCodeTransformer} that defers creation of the {@link CodeTransformer} it
+ * delegates to until it is first needed.
+ */
+final class LazyCodeTransformer implements PrefilterableCodeTransformer {
+  private final ImmutableSet<String> requiredIdentifiers;
+  private final ImmutableSet<String> anchors;
+  private final ImmutableSet<String> requiredTypes;
+  private final Supplier<CodeTransformer> delegate;
+
+  LazyCodeTransformer(
+      ImmutableSet<String> requiredIdentifiers,
+      ImmutableSet<String> anchors,
+      ImmutableSet<String> requiredTypes,
+      Supplier<CodeTransformer> delegateFactory) {
+    this.requiredIdentifiers = requiredIdentifiers;
+    this.anchors = anchors;
+    this.requiredTypes = requiredTypes;
+    this.delegate = Suppliers.memoize(delegateFactory::get);
+  }
+
+  @Override
+  public ImmutableSet<String> requiredIdentifiers() {
+    return requiredIdentifiers;
+  }
+
+  @Override
+  public ImmutableSet<String> anchors() {
+    return anchors;
+  }
+
+  @Override
+  public ImmutableSet<String> requiredTypes() {
+    return requiredTypes;
+  }
+
+  @Override
+  public void apply(TreePath path, Context context, DescriptionListener listener) {
+    delegate.get().apply(path, context, listener);
+  }
+
+  @Override
+  public ImmutableClassToInstanceMap<Annotation> annotations() {
+    return delegate.get().annotations();
+  }
+}
@@ -0,0 +1,48 @@
+package tech.picnic.errorprone.refaster;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Utility class that classifies syntax trees by their shape, such that Refaster rules need only be
+ * applied to trees that may match their {@code @BeforeTemplate}s.
+ *
+ * <p>Each anchor combines a tree's {@link Tree.Kind kind} with, where applicable, the simple name
+ * of the method it references. Trees for which no anchor is defined may match any Refaster rule.
+ *
+ * @see PrefilterableCodeTransformer#anchors()
+ */
+public final class MatchAnchors {
+  private MatchAnchors() {}
+
+  /**
+   * Returns the anchor of the given tree, if any.
+   *
+   * @param tree The tree of interest.
+   * @return The tree's anchor, or {@code null} if no anchor is defined for trees of this kind.
+   */
+  public static @Nullable String of(Tree tree) {
+    return switch (tree.getKind()) {
+      case METHOD_INVOCATION -> {
+        String methodName = getMethodName(((MethodInvocationTree) tree).getMethodSelect());
+        yield methodName == null ? null : "METHOD_INVOCATION:" + methodName;
+      }
+      case MEMBER_REFERENCE -> "MEMBER_REFERENCE:" + ((MemberReferenceTree) tree).getName();
+      case NEW_CLASS -> "NEW_CLASS";
+      default -> null;
+    };
+  }
+
+  private static @Nullable String getMethodName(ExpressionTree methodSelect) {
+    return switch (methodSelect.getKind()) {
+      case IDENTIFIER -> ((IdentifierTree) methodSelect).getName().toString();
+      case MEMBER_SELECT -> ((MemberSelectTree) methodSelect).getIdentifier().toString();
+      default -> null;
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package tech.picnic.errorprone.refaster;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.errorprone.CodeTransformer;
+import java.util.Set;
+
+/**
+ * A {@link CodeTransformer} that can cheaply tell whether it may match a given compilation unit,
+ * without inspecting the compilation unit's syntax tree, and that can optionally tell which
+ * subtrees of a compilation unit it may match and which types its suggestions depend on.
+ */
+public interface PrefilterableCodeTransformer extends CodeTransformer {
+  /**
+   * Returns the identifiers that must occur in a compilation unit for this {@link CodeTransformer}
+   * to match it.
+   *
+   * <p>An empty set indicates that no such constraint is known.
+   *
+   * @return A non-{@code null} set of method, type and field names.
+   */
+  ImmutableSet<String> requiredIdentifiers();
+
+  /**
+   * Tells whether this {@link CodeTransformer} may match a compilation unit that contains the given
+   * identifiers.
+   *
+   * @param identifiers The identifiers present in the compilation unit of interest.
+   * @return {@code false} iff it is certain that this {@link CodeTransformer} does not match.
+   */
+  default boolean isApplicableTo(Set<String> identifiers) {
+    return identifiers.containsAll(requiredIdentifiers());
+  }
+
+  /**
+   * Returns the {@link MatchAnchors anchors} of the trees that this {@link CodeTransformer} may
+   * match.
+   *
+   * <p>An empty set indicates that this {@link CodeTransformer} may match trees of any shape.
+   *
+   * @return A non-{@code null} set of anchors, as computed by {@link MatchAnchors#of}.
+   */
+  default ImmutableSet<String> anchors() {
+    return ImmutableSet.of();
+  }
+
+  /**
+   * Returns the fully qualified names of the top-level types that the replacement code suggested by
+   * this {@link CodeTransformer} references.
+   *
+   * <p>If any of these types is not available in a given compilation, then this {@link
+   * CodeTransformer} should not be applied to it, as its suggestions would not compile.
+   *
+   * @return A non-{@code null} set of fully qualified type names.
+   */
+  default ImmutableSet<String> requiredTypes() {
+    return ImmutableSet.of();
+  }
+}
@@ -0,0 +1,177 @@
+package tech.picnic.errorprone.refaster;
+
+import static java.io.ObjectStreamConstants.STREAM_MAGIC;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.errorprone.CodeTransformer;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Reads and writes compiled Refaster rules.
+ *
+ * <p>Compiled rules are stored in a versioned binary format, consisting of a small header that
+ * describes the rule, followed by the serialized rule itself. When a rule is read, only the header
+ * is decoded; the rule itself is deserialized only once it is first applied. As a result, rules
+ * that are {@link PrefilterableCodeTransformer#isApplicableTo never applicable} are never
+ * deserialized.
+ *
+ * <p>The format is laid out as follows:
+ *
+ * <ol>
+ *   <li>The magic number {@code 0x52465354} (i.e. {@code "RFST"}).
+ *   <li>The format version, as a single unsigned byte.
+ *   <li>The number of {@link PrefilterableCodeTransformer#requiredIdentifiers() required
+ *       identifiers}, followed by each identifier in modified UTF-8.
+ *   <li>Since version 2: the number of {@link PrefilterableCodeTransformer#anchors() anchors},
+ *       followed by each anchor in modified UTF-8.
+ *   <li>Since version 3: the number of {@link PrefilterableCodeTransformer#requiredTypes() required
+ *       types}, followed by each type name in modified UTF-8.
+ *   <li>The size of the rule payload in bytes, followed by the payload: a Java-serialized {@link
+ *       CodeTransformer}.
+ * </ol>
+ *
+ * <p>For backward compatibility, resources that contain just a Java-serialized {@link
+ * CodeTransformer} are also supported.
+ *
+ * <p>Upon deserialization, the names, types and identifiers referenced by a rule are canonicalized
+ * using an {@link Interner} that is by default shared across all rules, such that rules that
+ * reference the same types don't each retain a copy of them.
+ */
+public final class RefasterRuleFormat {
+  private static final int MAGIC = 0x52_46_53_54;
+  private static final int VERSION = 3;
+  private static final int MIN_SUPPORTED_VERSION = 1;
+  private static final Interner<Object> INTERNER = Interners.newWeakInterner();
+
+  private RefasterRuleFormat() {}
+
+  /**
+   * Writes the given Refaster rule to the given output stream.
+   *
+   * @param transformer The Refaster rule to be written.
+   * @param out The stream to write to; it is not closed by this method.
+   * @throws IOException If the rule cannot be serialized or written.
+   */
+  public static void write(AnnotatedCompositeCodeTransformer transformer, OutputStream out)
+      throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(payload)) {
+      output.writeObject(transformer);
+    }
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    writeStrings(transformer.requiredIdentifiers(), data);
+    writeStrings(transformer.anchors(), data);
+    writeStrings(transformer.requiredTypes(), data);
+    data.writeInt(payload.size());
+    payload.writeTo(data);
+    data.flush();
+  }
+
+  /**
+   * Reads a Refaster rule from the given input stream.
+   *
+   * @param in The stream to read from.
+   * @return A {@link CodeTransformer} that, unless the stream uses the legacy format, defers
+   *     deserialization of the rule until it is first applied.
+   * @throws IOException If the stream cannot be read or is not in a supported format.
+   * @throws ClassNotFoundException If the stream uses the legacy format and references a class that
+   *     cannot be loaded.
+   */
+  public static CodeTransformer read(InputStream in) throws IOException, ClassNotFoundException {
+    return read(in, INTERNER);
+  }
+
+  /**
+   * Reads a Refaster rule from the given input stream, canonicalizing the objects it references
+   * using the given {@link Interner}.
+   *
+   * @param in The stream to read from.
+   * @param interner The {@link Interner} used to canonicalize the names, types and identifiers
+   *     referenced by the rule.
+   * @return A {@link CodeTransformer} that, unless the stream uses the legacy format, defers
+   *     deserialization of the rule until it is first applied.
+   * @throws IOException If the stream cannot be read or is not in a supported format.
+   * @throws ClassNotFoundException If the stream uses the legacy format and references a class that
+   *     cannot be loaded.
+   */
+  public static CodeTransformer read(InputStream in, Interner<Object> interner)
+      throws IOException, ClassNotFoundException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    data.mark(Integer.BYTES);
+    int magic = data.readInt();
+    if (magic >>> Short.SIZE == Short.toUnsignedInt(STREAM_MAGIC)) {
+      data.reset();
+      return deserialize(data, interner);
+    }
+
+    if (magic != MAGIC) {
+      throw new IOException(
+          String.format(Locale.ROOT, "Unrecognized Refaster rule format '0x%08x'", magic));
+    }
+
+    int version = data.readUnsignedByte();
+    if (version < MIN_SUPPORTED_VERSION || version > VERSION) {
+      throw new IOException(
+          String.format("Unsupported Refaster rule format version '%s'", version));
+    }
+
+    ImmutableSet<String> requiredIdentifiers = readStrings(data);
+    ImmutableSet<String> anchors = version >= 2 ? readStrings(data) : ImmutableSet.of();
+    ImmutableSet<String> requiredTypes = version >= 3 ? readStrings(data) : ImmutableSet.of();
+    byte[] payload = new byte[data.readInt()];
+    data.readFully(payload);
+    return new LazyCodeTransformer(
+        requiredIdentifiers, anchors, requiredTypes, () -> deserialize(payload, interner));
+  }
+
+  private static CodeTransformer deserialize(byte[] payload, Interner<Object> interner) {
+    try {
+      return deserialize(new ByteArrayInputStream(payload), interner);
+    } catch (ClassNotFoundException | IOException e) {
+      throw new IllegalStateException("Can't deserialize Refaster rule", e);
+    }
+  }
+
+  private static CodeTransformer deserialize(InputStream in, Interner<Object> interner)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream input = new InterningObjectInputStream(in, interner)) {
+      @SuppressWarnings("BanSerializableRead" /* Part of the Refaster API. */)
+      CodeTransformer codeTransformer = (CodeTransformer) input.readObject();
+      return codeTransformer;
+    }
+  }
+
+  private static void writeStrings(ImmutableSet<String> strings, DataOutput out)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static ImmutableSet<String> readStrings(DataInput in) throws IOException {
+    int size = in.readInt();
+    ImmutableSet.Builder<String> strings = ImmutableSet.builderWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings.build();
+  }
+}
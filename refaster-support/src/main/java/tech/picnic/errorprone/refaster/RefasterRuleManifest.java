@@ -0,0 +1,66 @@
+package tech.picnic.errorprone.refaster;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.CharStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Reads and writes the manifest that lists the compiled Refaster rules contained in a classpath
+ * entry.
+ *
+ * <p>The manifest is a UTF-8 encoded text file located at {@value #PATH}. Each line holds the path
+ * of a compiled Refaster rule resource, relative to the root of the classpath entry that contains
+ * the manifest. Blank lines and lines starting with {@code #} are ignored.
+ *
+ * <p>The presence of such manifests allows compiled Refaster rules to be located without scanning
+ * all classpath resources.
+ */
+public final class RefasterRuleManifest {
+  /** The location of the manifest, relative to the root of a classpath entry. */
+  public static final String PATH = "META-INF/refaster-rules.txt";
+
+  private static final String COMMENT_PREFIX = "#";
+
+  private RefasterRuleManifest() {}
+
+  /**
+   * Writes a manifest that lists the given Refaster rule resources.
+   *
+   * @param resourcePaths The paths of the compiled Refaster rule resources to be listed.
+   * @param out The stream to write to; it is not closed by this method.
+   * @throws IOException If the manifest cannot be written.
+   */
+  public static void write(Collection<String> resourcePaths, OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, UTF_8);
+    writer.write(COMMENT_PREFIX + " Generated by the Refaster rule compiler.\n");
+    for (String resourcePath : ImmutableSortedSet.copyOf(resourcePaths)) {
+      writer.write(resourcePath);
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Reads the Refaster rule resources listed by a manifest.
+   *
+   * @param in The stream to read from.
+   * @return The listed resource paths, in order of occurrence.
+   * @throws IOException If the manifest cannot be read.
+   */
+  public static ImmutableSet<String> read(InputStream in) throws IOException {
+    return CharStreams.readLines(new InputStreamReader(in, UTF_8)).stream()
+        .map(String::strip)
+        .filter(line -> !line.isEmpty() && !line.startsWith(COMMENT_PREFIX))
+        .collect(toImmutableSet());
+  }
+}
@@ -0,0 +1,66 @@
+package tech.picnic.errorprone.refaster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.errorprone.refaster.StringName;
+import com.google.errorprone.refaster.UClassType;
+import com.google.errorprone.refaster.UType;
+import com.google.errorprone.refaster.UTypeVar;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import org.junit.jupiter.api.Test;
+
+final class InterningObjectInputStreamTest {
+  @Test
+  void namesAndTypes() throws ClassNotFoundException, IOException {
+    Interner<Object> interner = Interners.newStrongInterner();
+    ImmutableList<Object> value =
+        ImmutableList.of(
+            StringName.of("foo"),
+            UClassType.create("java.util.List", UClassType.create("java.lang.String")));
+
+    ImmutableList<?> first = roundTrip(value, interner);
+    ImmutableList<?> second = roundTrip(value, interner);
+
+    assertThat(first).isEqualTo(value).isEqualTo(second).isNotSameAs(second);
+    assertThat(first.get(0)).isSameAs(second.get(0));
+    assertThat(first.get(1)).isSameAs(second.get(1));
+  }
+
+  @Test
+  void typeVariables() throws ClassNotFoundException, IOException {
+    Interner<Object> interner = Interners.newStrongInterner();
+    UTypeVar typeVar = UTypeVar.create("T");
+    typeVar.setUpperBound(UClassType.create("java.lang.Comparable", typeVar));
+    ImmutableList<UType> value = ImmutableList.of(typeVar, UClassType.create("java.util.List"));
+
+    ImmutableList<?> first = roundTrip(value, interner);
+    ImmutableList<?> second = roundTrip(value, interner);
+
+    assertThat(first.get(0)).isNotSameAs(second.get(0));
+    assertThat(first.get(1)).isEqualTo(second.get(1)).isNotSameAs(second.get(1));
+    assertThat(((UTypeVar) first.get(0)).getName()).isSameAs(((UTypeVar) second.get(0)).getName());
+  }
+
+  private static ImmutableList<?> roundTrip(Serializable value, Interner<Object> interner)
+      throws ClassNotFoundException, IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(out)) {
+      output.writeObject(value);
+    }
+
+    try (ObjectInputStream input =
+        new InterningObjectInputStream(new ByteArrayInputStream(out.toByteArray()), interner)) {
+      @SuppressWarnings("BanSerializableRead" /* The input is trusted. */)
+      ImmutableList<?> result = (ImmutableList<?>) input.readObject();
+      return result;
+    }
+  }
+}
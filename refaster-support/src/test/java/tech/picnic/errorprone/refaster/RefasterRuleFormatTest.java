@@ -0,0 +1,120 @@
+package tech.picnic.errorprone.refaster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.InstanceOfAssertFactories.type;
+
+import com.google.common.collect.ImmutableClassToInstanceMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+import com.google.errorprone.CodeTransformer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import org.junit.jupiter.api.Test;
+
+final class RefasterRuleFormatTest {
+  private static final AnnotatedCompositeCodeTransformer RULE =
+      AnnotatedCompositeCodeTransformer.create(
+          "com.example",
+          ImmutableList.of(),
+          ImmutableClassToInstanceMap.of(),
+          ImmutableSet.of("foo", "bar"),
+          ImmutableSet.of("METHOD_INVOCATION:foo", "NEW_CLASS"),
+          ImmutableSet.of("com.example.Foo"));
+
+  @Test
+  void roundTrip() throws ClassNotFoundException, IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RefasterRuleFormat.write(RULE, out);
+
+    CodeTransformer transformer = read(out.toByteArray());
+
+    assertThat(transformer)
+        .asInstanceOf(type(PrefilterableCodeTransformer.class))
+        .satisfies(
+            t -> assertThat(t.requiredIdentifiers()).containsExactly("foo", "bar"),
+            t -> assertThat(t.isApplicableTo(ImmutableSet.of("bar", "baz", "foo"))).isTrue(),
+            t -> assertThat(t.isApplicableTo(ImmutableSet.of("foo", "baz"))).isFalse(),
+            t -> assertThat(t.anchors()).containsExactly("METHOD_INVOCATION:foo", "NEW_CLASS"),
+            t -> assertThat(t.requiredTypes()).containsExactly("com.example.Foo"),
+            t -> assertThat(t.annotations()).isEqualTo(RULE.annotations()));
+  }
+
+  @Test
+  void versionOne() throws ClassNotFoundException, IOException {
+    byte[] payload = readLegacyRule();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataOutputStream data = new DataOutputStream(out)) {
+      data.writeBytes("RFST");
+      data.writeByte(1);
+      data.writeInt(1);
+      data.writeUTF("foo");
+      data.writeInt(payload.length);
+      data.write(payload);
+    }
+
+    assertThat(read(out.toByteArray()))
+        .asInstanceOf(type(PrefilterableCodeTransformer.class))
+        .satisfies(
+            t -> assertThat(t.requiredIdentifiers()).containsExactly("foo"),
+            t -> assertThat(t.anchors()).isEmpty(),
+            t -> assertThat(t.requiredTypes()).isEmpty(),
+            t -> assertThat(t.annotations()).isEmpty());
+  }
+
+  @Test
+  void legacyFormat() throws ClassNotFoundException, IOException {
+    assertThat(read(readLegacyRule()))
+        .asInstanceOf(type(AnnotatedCompositeCodeTransformer.class))
+        .satisfies(
+            t -> assertThat(t.packageName()).isEqualTo("tech.picnic.errorprone.refaster.runner"),
+            t -> assertThat(t.transformers()).hasSize(1),
+            t -> assertThat(t.requiredIdentifiers()).isEmpty(),
+            t -> assertThat(t.anchors()).isEmpty(),
+            t -> assertThat(t.requiredTypes()).isEmpty());
+  }
+
+  @Test
+  void legacyFormatOfCurrentVersion() throws ClassNotFoundException, IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(out)) {
+      output.writeObject(RULE);
+    }
+
+    assertThat(read(out.toByteArray())).isEqualTo(RULE);
+  }
+
+  @Test
+  void unrecognizedFormat() {
+    assertThatThrownBy(() -> read(new byte[] {1, 2, 3, 4}))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Unrecognized Refaster rule format '0x01020304'");
+  }
+
+  @Test
+  void unsupportedVersion() {
+    assertThatThrownBy(() -> read(new byte[] {'R', 'F', 'S', 'T', 4}))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Unsupported Refaster rule format version '4'");
+  }
+
+  /**
+   * Returns a Refaster rule that was serialized by a version of {@link
+   * AnnotatedCompositeCodeTransformer} that predates {@link RefasterRuleFormat}, and which thus
+   * lacks all properties related to prefiltering.
+   */
+  private static byte[] readLegacyRule() throws IOException {
+    return Resources.toByteArray(
+        Resources.getResource(
+            RefasterRuleFormatTest.class, "RefasterRuleFormatTest-legacy-rule.ser"));
+  }
+
+  private static CodeTransformer read(byte[] bytes) throws ClassNotFoundException, IOException {
+    return RefasterRuleFormat.read(new ByteArrayInputStream(bytes));
+  }
+}
@@ -0,0 +1,36 @@
+package tech.picnic.errorprone.refaster;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+final class RefasterRuleManifestTest {
+  @Test
+  void roundTrip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RefasterRuleManifest.write(ImmutableSet.of("b/Foo.refaster", "a/Bar.refaster"), out);
+
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(
+            """
+            # Generated by the Refaster rule compiler.
+            a/Bar.refaster
+            b/Foo.refaster
+            """);
+    assertThat(RefasterRuleManifest.read(new ByteArrayInputStream(out.toByteArray())))
+        .containsExactly("a/Bar.refaster", "b/Foo.refaster");
+  }
+
+  @Test
+  void readIgnoresBlankLinesAndComments() throws IOException {
+    byte[] manifest = "# Comment\n\n  a/Bar.refaster  \n#b/Foo.refaster\n".getBytes(UTF_8);
+
+    assertThat(RefasterRuleManifest.read(new ByteArrayInputStream(manifest)))
+        .containsExactly("a/Bar.refaster");
+  }
+}
@@ -1,5 +1,6 @@
 package tech.picnic.errorprone.refaster.test;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
@@ -8,6 +9,8 @@ import static com.google.errorprone.BugPattern.LinkType.NONE;
 import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Comparator.naturalOrder;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
 import static tech.picnic.errorprone.refaster.runner.Refaster.INCLUDED_RULES_PATTERN_FLAG;
 
 import com.google.common.collect.ImmutableListMultimap;
@@ -16,6 +19,7 @@ import com.google.common.collect.ImmutableRangeMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
@@ -44,6 +48,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -62,6 +67,9 @@ import tech.picnic.errorprone.refaster.runner.Refaster;
  * rule collection class. Their names are derived from the rule collection class by suffixing {@code
  * TestInput.java} and {@code TestOutput.java}, respectively. Each test method's name must be
  * derived from the rule that modifies said method by prefixing {@code test}.
+ *
+ * <p>Multiple rule collections can be validated in a single compilation using {@link
+ * #validateAll(Iterable)}.
  */
 // XXX: This check currently only validates that one `Refaster.anyOf` branch in one
 // `@BeforeTemplate` method is covered by a test. Review how we can make sure that _all_
@@ -75,10 +83,11 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
   private static final long serialVersionUID = 1L;
   private static final String RULE_COLLECTION_FLAG = "RefasterRuleCollection:RuleCollection";
   private static final String TEST_METHOD_NAME_PREFIX = "test";
+  private static final String TEST_INPUT_SUFFIX = "TestInput.java";
+  private static final String TEST_OUTPUT_SUFFIX = "TestOutput.java";
 
-  private final String ruleCollectionUnderTest;
-  private final ImmutableSortedSet<String> rulesUnderTest;
-  private final Refaster delegate;
+  private final ImmutableMap<String, Refaster> delegates;
+  private final ImmutableMap<String, ImmutableSortedSet<String>> rulesUnderTest;
 
   /**
    * Instantiates a {@link RefasterRuleCollection} instance.
@@ -87,19 +96,20 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
    */
   @Inject
   RefasterRuleCollection(ErrorProneFlags flags) {
-    ruleCollectionUnderTest = getRuleCollectionUnderTest(flags);
-    delegate = createRefasterChecker(ruleCollectionUnderTest);
-    rulesUnderTest = getRulesUnderTest(ruleCollectionUnderTest);
+    ImmutableSet<String> ruleCollectionsUnderTest = getRuleCollectionsUnderTest(flags);
+    delegates = Maps.toMap(ruleCollectionsUnderTest, RefasterRuleCollection::createRefasterChecker);
+    rulesUnderTest =
+        Maps.toMap(ruleCollectionsUnderTest, RefasterRuleCollection::getRulesUnderTest);
   }
 
-  private static String getRuleCollectionUnderTest(ErrorProneFlags flags) {
-    return flags
-        .get(RULE_COLLECTION_FLAG)
-        .orElseThrow(
-            () ->
-                new IllegalStateException(
-                    String.format(
-                        "Error Prone flag `%s` must be specified", RULE_COLLECTION_FLAG)));
+  private static ImmutableSet<String> getRuleCollectionsUnderTest(ErrorProneFlags flags) {
+    ImmutableSet<String> ruleCollections =
+        ImmutableSet.copyOf(flags.getListOrEmpty(RULE_COLLECTION_FLAG));
+    checkState(
+        !ruleCollections.isEmpty(),
+        "Error Prone flag `%s` must be specified",
+        RULE_COLLECTION_FLAG);
+    return ruleCollections;
   }
 
   private static Refaster createRefasterChecker(String ruleCollectionUnderTest) {
@@ -110,8 +120,9 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
   }
 
   private static ImmutableSortedSet<String> getRulesUnderTest(String ruleCollectionUnderTest) {
-    return CodeTransformers.getAllCodeTransformers().keySet().stream()
-        .filter(k -> k.startsWith(ruleCollectionUnderTest))
+    return CodeTransformers.getCodeTransformers(k -> k.startsWith(ruleCollectionUnderTest))
+        .keySet()
+        .stream()
         .map(k -> k.replace(ruleCollectionUnderTest + '$', ""))
         .collect(toImmutableSortedSet(naturalOrder()));
   }
@@ -128,24 +139,88 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
    * @param clazz The Refaster rule collection under test.
    */
   public static void validate(Class<?> clazz) {
-    String className = clazz.getSimpleName();
-    String inputResource = className + "TestInput.java";
-    String outputResource = className + "TestOutput.java";
-
-    BugCheckerRefactoringTestHelper.newInstance(RefasterRuleCollection.class, clazz)
-        .setArgs(
-            "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
-            "-XepOpt:" + RULE_COLLECTION_FLAG + '=' + className)
-        .addInputLines(inputResource, loadResource(clazz, inputResource))
-        .addOutputLines(outputResource, loadResource(clazz, outputResource))
-        .doTest(TestMode.TEXT_MATCH);
+    validateAll(ImmutableSet.of(clazz));
+  }
+
+  /**
+   * Verifies that all Refaster rules in the given collection classes are covered by precisely one
+   * test method, defined explicitly for the purpose of exercising that rule.
+   *
+   * <p>The test input files of all given rule collections are compiled together, which is
+   * considerably faster than validating each rule collection separately. If validation fails, then
+   * each rule collection is validated separately, such that the reported failures identify the
+   * offending rule collections.
+   *
+   * @param classes The Refaster rule collections under test; their simple names must be unique.
+   * @see #validate(Class)
+   */
+  public static void validateAll(Iterable<? extends Class<?>> classes) {
+    ImmutableSet<Class<?>> ruleCollections = ImmutableSet.copyOf(classes);
+    checkArgument(!ruleCollections.isEmpty(), "No rule collections specified");
+    if (ruleCollections.size() == 1) {
+      doValidate(ruleCollections);
+      return;
+    }
+
+    try {
+      doValidate(ruleCollections);
+    } catch (AssertionError | RuntimeException e) {
+      Map<String, Throwable> failures = new LinkedHashMap<>();
+      for (Class<?> clazz : ruleCollections) {
+        try {
+          doValidate(ImmutableSet.of(clazz));
+        } catch (AssertionError | RuntimeException ruleCollectionFailure) {
+          failures.put(clazz.getSimpleName(), ruleCollectionFailure);
+        }
+      }
+
+      if (failures.isEmpty()) {
+        throw e;
+      }
+
+      AssertionError failure =
+          new AssertionError(
+              "Validation failed for the following rule collection(s): "
+                  + String.join(", ", failures.keySet()));
+      failures.values().forEach(failure::addSuppressed);
+      throw failure;
+    }
+  }
+
+  private static void doValidate(ImmutableSet<Class<?>> ruleCollections) {
+    Class<?> contextClass = ruleCollections.iterator().next();
+    checkArgument(
+        ruleCollections.stream().map(Class::getSimpleName).distinct().count()
+            == ruleCollections.size(),
+        "Rule collection names must be unique");
+
+    BugCheckerRefactoringTestHelper testHelper =
+        BugCheckerRefactoringTestHelper.newInstance(RefasterRuleCollection.class, contextClass)
+            .setArgs(
+                "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+                "-XepOpt:"
+                    + RULE_COLLECTION_FLAG
+                    + '='
+                    + ruleCollections.stream().map(Class::getSimpleName).collect(joining(",")));
+    for (Class<?> clazz : ruleCollections) {
+      String className = clazz.getSimpleName();
+      String inputResource = className + TEST_INPUT_SUFFIX;
+      String outputResource = className + TEST_OUTPUT_SUFFIX;
+      testHelper =
+          testHelper
+              .addInputLines(inputResource, loadResource(clazz, inputResource))
+              .addOutputLines(outputResource, loadResource(clazz, outputResource));
+    }
+    testHelper.doTest(TestMode.TEXT_MATCH);
   }
 
   @Override
   public Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
-    reportIncorrectClassName(tree, state);
+    String ruleCollectionUnderTest = getRuleCollectionUnderTest(tree);
+    reportIncorrectClassName(tree, ruleCollectionUnderTest, state);
 
     List<Description> matches = new ArrayList<>();
+    Refaster delegate = requireNonNull(delegates.get(ruleCollectionUnderTest), "Missing delegate");
     delegate.matchCompilationUnit(
         tree,
         VisitorState.createForCustomFindingCollection(new SubContext(state.context), matches::add)
@@ -155,13 +230,39 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
         indexRuleMatches(matches, ((JCCompilationUnit) tree).endPositions);
 
     matches.forEach(state::reportMatch);
-    reportMissingMatches(tree, indexedMatches, state);
+    reportMissingMatches(
+        tree,
+        requireNonNull(rulesUnderTest.get(ruleCollectionUnderTest), "Missing rules under test"),
+        indexedMatches,
+        state);
     reportUnexpectedMatches(tree, indexedMatches, state);
 
     return Description.NO_MATCH;
   }
 
-  private void reportIncorrectClassName(CompilationUnitTree tree, VisitorState state) {
+  /**
+   * Derives the name of the rule collection exercised by the given test input file from the name
+   * of said file.
+   */
+  private String getRuleCollectionUnderTest(CompilationUnitTree tree) {
+    String fileName =
+        getSubstringAfterFinalDelimiter('/', ((JCCompilationUnit) tree).sourcefile.getName());
+    checkState(
+        fileName.endsWith(TEST_INPUT_SUFFIX),
+        "Test input file name '%s' does not end with '%s'",
+        fileName,
+        TEST_INPUT_SUFFIX);
+    String ruleCollection = fileName.substring(0, fileName.length() - TEST_INPUT_SUFFIX.length());
+    checkState(
+        delegates.containsKey(ruleCollection),
+        "Rule collection '%s' is not listed by Error Prone flag `%s`",
+        ruleCollection,
+        RULE_COLLECTION_FLAG);
+    return ruleCollection;
+  }
+
+  private void reportIncorrectClassName(
+      CompilationUnitTree tree, String ruleCollectionUnderTest, VisitorState state) {
     String expectedClassName = ruleCollectionUnderTest + "Test";
 
     for (Tree typeDeclaration : tree.getTypeDecls()) {
@@ -203,6 +304,7 @@ public final class RefasterRuleCollection extends BugChecker implements Compilat
 
   private void reportMissingMatches(
       CompilationUnitTree tree,
+      ImmutableSortedSet<String> rulesUnderTest,
       ImmutableRangeMap<Integer, String> indexedMatches,
       VisitorState state) {
     ImmutableSet<String> rulesWithoutMatch =
@@ -1,7 +1,9 @@
 package tech.picnic.errorprone.refaster.test;
 
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.params.provider.MethodSource;
 
 /**
  * Validates {@link RefasterRuleCollection} error reporting.
@@ -14,18 +16,28 @@ import org.junit.jupiter.params.provider.ValueSource;
  * normally not present.
  */
 final class RefasterRuleCollectionTest {
+  private static final ImmutableSet<Class<?>> RULE_COLLECTIONS =
+      ImmutableSet.of(
+          MatchInWrongMethodRules.class,
+          MethodWithoutPrefixRules.class,
+          MisnamedTestClassRules.class,
+          MissingTestAndWrongTestRules.class,
+          PartialTestMatchRules.class,
+          RuleWithoutTestRules.class,
+          ValidRules.class);
+
+  private static ImmutableSet<Class<?>> verifyRefasterRuleCollectionsTestCases() {
+    return RULE_COLLECTIONS;
+  }
+
+  @MethodSource("verifyRefasterRuleCollectionsTestCases")
   @ParameterizedTest
-  @ValueSource(
-      classes = {
-        MatchInWrongMethodRules.class,
-        MethodWithoutPrefixRules.class,
-        MisnamedTestClassRules.class,
-        MissingTestAndWrongTestRules.class,
-        PartialTestMatchRules.class,
-        RuleWithoutTestRules.class,
-        ValidRules.class
-      })
   void verifyRefasterRuleCollections(Class<?> clazz) {
     RefasterRuleCollection.validate(clazz);
   }
+
+  @Test
+  void verifyRefasterRuleCollectionsInBatch() {
+    RefasterRuleCollection.validateAll(RULE_COLLECTIONS);
+  }
 }